@@ -7,11 +7,17 @@
  */
 package databank.config;
 
+import static databank.dao.ListDataDaoImpl.DEFAULT_SPECIALTIES_TTL;
+import static databank.dao.ListDataDaoImpl.SPECIALTIES_TTL_PARAM_NAME;
+import static databank.servlet.StatementCountFilter.MAX_STATEMENTS_PARAM_NAME;
+import static databank.servlet.StatementCountFilter.SLOW_QUERY_MS_PARAM_NAME;
 import static jakarta.faces.application.ProjectStage.PROJECT_STAGE_PARAM_NAME;
 import static jakarta.faces.application.ViewHandler.FACELETS_REFRESH_PERIOD_PARAM_NAME;
 import static jakarta.faces.application.ViewHandler.FACELETS_SKIP_COMMENTS_PARAM_NAME;
+import static jakarta.faces.push.PushContext.ENABLE_WEBSOCKET_ENDPOINT_PARAM_NAME;
 import static jakarta.faces.validator.BeanValidator.ENABLE_VALIDATE_WHOLE_BEAN_PARAM_NAME;
 
+import databank.metrics.RequestStatements;
 import jakarta.faces.annotation.FacesConfig;
 import jakarta.faces.annotation.FacesConfig.Version;
 import jakarta.faces.application.ProjectStage;
@@ -85,5 +91,11 @@ public class FacesConfigAndServletContextListener implements ServletContextListe
 		sc.setInitParameter(PROJECT_STAGE_PARAM_NAME, ProjectStage.Development.name());
 		sc.setInitParameter(ENABLE_VALIDATE_WHOLE_BEAN_PARAM_NAME, Boolean.TRUE.toString());
         sc.setInitParameter(FACELETS_SKIP_COMMENTS_PARAM_NAME, Boolean.TRUE.toString());
+		//Websocket endpoint of f:websocket, pushing physician changes to the views
+		sc.setInitParameter(ENABLE_WEBSOCKET_ENDPOINT_PARAM_NAME, Boolean.TRUE.toString());
+		//DataBank defaults, unless the server already sets them
+		sc.setInitParameter(SPECIALTIES_TTL_PARAM_NAME, String.valueOf(DEFAULT_SPECIALTIES_TTL.toSeconds()));
+		sc.setInitParameter(SLOW_QUERY_MS_PARAM_NAME, String.valueOf(RequestStatements.DEFAULT_SLOW_QUERY_MILLIS));
+		sc.setInitParameter(MAX_STATEMENTS_PARAM_NAME, String.valueOf(RequestStatements.DEFAULT_MAX_STATEMENTS));
 	}
 }
@@ -14,4 +14,9 @@ public interface ListDataDao {
 
 	public List<String> readAllSpecialties();
 
+	/**
+	 * Drops any cached specialties, so the next read gets them from the database.
+	 */
+	public void invalidateSpecialties();
+
 }
\ No newline at end of file
@@ -1,33 +1,55 @@
 package databank.dao;
 
 import java.io.Serializable;
-import java.util.ArrayList;
+import java.time.Duration;
+import java.util.Collections;
 import java.util.List;
-import jakarta.annotation.PostConstruct;
-import jakarta.annotation.PreDestroy;
-import jakarta.annotation.Resource;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import jakarta.enterprise.context.ApplicationScoped;
-import jakarta.faces.context.ExternalContext;
-import jakarta.inject.Inject;
+import jakarta.enterprise.context.Initialized;
+import jakarta.enterprise.event.Observes;
 import jakarta.inject.Named;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.servlet.ServletContext;
+import databank.metrics.Timed;
 
 /**
  * Implementation of the ListDataDao interface for reading list data from the database.
  * Provides methods to read a list of specialties.
+ * <p>
+ * The specialties are cached for the whole application: they are read when the application
+ * starts and again once the cached list is older than the time-to-live given by the
+ * {@value #SPECIALTIES_TTL_PARAM_NAME} context parameter (in seconds, 0 to keep the list until
+ * it is invalidated). While one caller refreshes the list, the others keep getting the
+ * previous one, so rendering a form never waits for the database.
+ * </p>
  * 
  * @author Robin Phillis
  * @version 1.0
  * @since 11/10/2024
  */
+@Timed
 @Named
 @ApplicationScoped
 public class ListDataDaoImpl implements ListDataDao, Serializable {
     /** Explicitly set serialVersionUID */
     private static final long serialVersionUID = 1L;
 
+    private static final Logger LOG = LogManager.getLogger();
+
+    /** Context parameter holding the time-to-live of the cached specialties, in seconds */
+    public static final String SPECIALTIES_TTL_PARAM_NAME = "databank.SPECIALTIES_TTL";
+
+    /** Time-to-live of the cached specialties unless configured */
+    public static final Duration DEFAULT_SPECIALTIES_TTL = Duration.ofMinutes(5);
+
+    /** How soon reading the specialties is tried again after it failed */
+    private static final Duration RETRY_AFTER_FAILURE = Duration.ofSeconds(10);
+
     /** SQL query to read all specialties from the database */
     private static final String READ_ALL_SPECIALTIES = "SELECT specialty FROM specialties";
 
@@ -35,39 +57,122 @@ public class ListDataDaoImpl implements ListDataDao, Serializable {
     @PersistenceContext(name = "PU_DataBank")
     protected EntityManager entityManager;
 
-    /** The ExternalContext for logging purposes */
-    @Inject
-    protected ExternalContext externalContext;
+    /** Time-to-live of the cached specialties, zero for no expiry */
+    protected Duration specialtiesTtl = DEFAULT_SPECIALTIES_TTL;
+
+    /** The cached specialties, immutable, null until read or once invalidated */
+    protected volatile List<String> specialties;
+
+    /** When the cached specialties expire, in {@link System#nanoTime()} */
+    protected volatile long specialtiesExpireAt;
+
+    /** Held by the caller reading the specialties from the database */
+    private final ReentrantLock specialtiesLock = new ReentrantLock();
 
     /**
-     * Logs a message to the servlet context.
-     * 
-     * @param msg the message to log
+     * Reads the time-to-live of the specialties and preloads them when the application starts.
+     *
+     * @param servletContext the context of the application starting.
      */
-    private void logMsg(String msg) 
+    public void preload(@Observes @Initialized(ApplicationScoped.class) ServletContext servletContext)
     {
-        ((ServletContext) externalContext.getContext()).log(msg);
+        String ttl = servletContext.getInitParameter(SPECIALTIES_TTL_PARAM_NAME);
+        if (ttl != null) {
+            try {
+                specialtiesTtl = Duration.ofSeconds(Math.max(0, Long.parseLong(ttl.trim())));
+            } catch (NumberFormatException e) {
+                LOG.warn("ignoring {} = {}, not a number of seconds", SPECIALTIES_TTL_PARAM_NAME, ttl);
+            }
+        }
+        LOG.debug("preloading specialties, time-to-live = {}", specialtiesTtl);
+        readAllSpecialties();
     }
 
     /**
-     * Reads all specialties from the database and returns them as a list of strings.
+     * Gets all specialties from the cache, reading them from the database when the cache is
+     * empty or expired.
      * 
-     * @return a list of specialties as strings, or an empty list if an exception occurs
+     * @return an immutable list of specialties, or an empty list if they could not be read
      */
-    @SuppressWarnings("unchecked")
     @Override
     public List<String> readAllSpecialties() 
     {
-        logMsg("reading all specialties");
-        List<String> specialties = new ArrayList<>();
+        List<String> cached = specialties;
+        if (cached != null && !isExpired()) {
+            return cached;
+        }
+        if (cached == null) {
+            specialtiesLock.lock();
+        } else if (!specialtiesLock.tryLock()) {
+            // another caller is refreshing the list, the expired one will do meanwhile
+            return cached;
+        }
+        try {
+            if (specialties == cached) {
+                specialties = loadSpecialties(cached);
+            }
+            return specialties;
+        } finally {
+            specialtiesLock.unlock();
+        }
+    }
+
+    /**
+     * Drops the cached specialties, so they are read from the database when next needed.
+     */
+    @Override
+    public void invalidateSpecialties() 
+    {
+        LOG.debug("invalidating the cached specialties");
+        specialties = null;
+    }
+
+    /**
+     * Checks if the cached specialties are past their time-to-live.
+     *
+     * @return true if they should be read again.
+     */
+    private boolean isExpired() 
+    {
+        return System.nanoTime() - specialtiesExpireAt >= 0;
+    }
+
+    /**
+     * Reads all specialties from the database and sets when they expire.
+     * 
+     * @param previous the specialties cached so far, kept if reading fails, may be null
+     * @return an immutable list of specialties
+     */
+    @SuppressWarnings("unchecked")
+    private List<String> loadSpecialties(List<String> previous) 
+    {
+        LOG.debug("reading all specialties");
         try 
         {
-            specialties = (List<String>) entityManager.createNativeQuery(READ_ALL_SPECIALTIES).getResultList();
+            List<String> loaded = ((List<String>) entityManager.createNativeQuery(READ_ALL_SPECIALTIES).getResultList())
+                .stream().filter(Objects::nonNull).toList();
+            specialtiesExpireAt = expiry(specialtiesTtl);
+            LOG.debug("cached {} specialties", loaded.size());
+            return loaded;
         }
         catch (Exception e) 
         {
-            logMsg("something went wrong: " + e.getLocalizedMessage());
+            LOG.error("something went wrong reading the specialties: {}", e.getLocalizedMessage());
+            specialtiesExpireAt = expiry(specialtiesTtl.isZero() || specialtiesTtl.compareTo(RETRY_AFTER_FAILURE) > 0
+                ? RETRY_AFTER_FAILURE : specialtiesTtl);
+            return previous != null ? previous : Collections.emptyList();
         }
-        return specialties;
+    }
+
+    /**
+     * Gets the expiry of something cached now.
+     *
+     * @param ttl the time-to-live, zero for none.
+     * @return the expiry, in {@link System#nanoTime()}.
+     */
+    private static long expiry(Duration ttl) 
+    {
+        // 'no expiry' is a century away
+        return System.nanoTime() + (ttl.isZero() ? Duration.ofDays(36500) : ttl).toNanos();
     }
 }
@@ -7,8 +7,11 @@
  */
 package databank.dao;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
+import databank.model.PhysicianChange;
 import databank.model.PhysicianPojo;
 
 /**
@@ -18,9 +21,18 @@ public interface PhysicianDao {
 
 	List<PhysicianPojo> readAllPhysicians();
 
+	List<PhysicianPojo> readPhysicians(Integer afterId, int limit, PhysicianSort sort);
+
+	List<PhysicianPojo> searchPhysicians(PhysicianFilter filter, PhysicianSortColumn orderBy, boolean ascending,
+			PhysicianPojo after, int limit);
+
+	List<PhysicianChange> readPhysiciansChangedSince(LocalDateTime since, int afterId, int limit);
+
 	// C
 	PhysicianPojo createPhysician(PhysicianPojo physician);
 
+	List<PhysicianPojo> createPhysicians(List<PhysicianPojo> physicians);
+
 	// R
 	PhysicianPojo readPhysicianById(int physicianId);
 
@@ -30,4 +42,6 @@ public interface PhysicianDao {
 	// D
 	void deletePhysicianById(int physicianId);
 
+	int deletePhysicians(Collection<PhysicianPojo> physicians);
+
 }
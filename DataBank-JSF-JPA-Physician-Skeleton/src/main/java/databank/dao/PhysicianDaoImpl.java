@@ -8,8 +8,11 @@
 package databank.dao;
 
 import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
+import jakarta.ejb.EJB;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Named;
 import jakarta.persistence.EntityManager;
@@ -18,7 +21,10 @@ import jakarta.persistence.TypedQuery;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import databank.metrics.Timed;
+import databank.model.PhysicianChange;
 import databank.model.PhysicianPojo;
+import databank.service.PhysicianService;
 
 
 /**
@@ -32,22 +38,47 @@ import databank.model.PhysicianPojo;
  * TODO 05 - Inject the service class using EJB.<br>
  * TODO 06 - Call all the methods of service class from each appropriate method here.
  */
+@Timed
 @Named
 @ApplicationScoped
 public class PhysicianDaoImpl implements PhysicianDao, Serializable {
 
+	@EJB
+	protected PhysicianService physicianService;
+
 	@Override
 	public List<PhysicianPojo> readAllPhysicians() {
 		// TODO Auto-generated method stub
 		return null;
 	}
 
+	@Override
+	public List<PhysicianPojo> readPhysicians(Integer afterId, int limit, PhysicianSort sort) {
+		return physicianService.readPhysicians(afterId, limit, sort);
+	}
+
+	@Override
+	public List<PhysicianPojo> searchPhysicians(PhysicianFilter filter, PhysicianSortColumn orderBy, boolean ascending,
+			PhysicianPojo after, int limit) {
+		return physicianService.searchPhysicians(filter, orderBy, ascending, after, limit);
+	}
+
+	@Override
+	public List<PhysicianChange> readPhysiciansChangedSince(LocalDateTime since, int afterId, int limit) {
+		return physicianService.readPhysiciansChangedSince(since, afterId, limit);
+	}
+
 	@Override
 	public PhysicianPojo createPhysician(PhysicianPojo physician) {
 		// TODO Auto-generated method stub
 		return null;
 	}
 
+	@Override
+	public List<PhysicianPojo> createPhysicians(List<PhysicianPojo> physicians) {
+		return physicianService.createPhysicians(physicians);
+	}
+
 	@Override
 	public PhysicianPojo readPhysicianById(int physicianId) {
 		// TODO Auto-generated method stub
@@ -65,6 +96,11 @@ public class PhysicianDaoImpl implements PhysicianDao, Serializable {
 		// TODO Auto-generated method stub
 		
 	}
+
+	@Override
+	public int deletePhysicians(Collection<PhysicianPojo> physicians) {
+		return physicianService.deletePhysicians(physicians);
+	}
 	/** explicitly set serialVersionUID */
 	/*private static final long serialVersionUID = 1L;
 
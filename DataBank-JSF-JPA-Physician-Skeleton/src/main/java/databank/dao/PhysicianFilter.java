@@ -0,0 +1,147 @@
+package databank.dao;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Criteria the physician list is filtered by. Names match by prefix, the specialty exactly
+ * and the creation date within an inclusive range; blank criteria are ignored.
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 11/10/2024
+ */
+public class PhysicianFilter implements Serializable {
+    /** Explicitly set serialVersionUID */
+    private static final long serialVersionUID = 1L;
+
+    /** Start of the last name. */
+    protected String lastName;
+
+    /** Start of the first name. */
+    protected String firstName;
+
+    /** The specialty. */
+    protected String specialty;
+
+    /** First creation date. */
+    protected LocalDate createdFrom;
+
+    /** Last creation date. */
+    protected LocalDate createdTo;
+
+    /**
+     * Checks if no criteria are set.
+     *
+     * @return true if every physician matches.
+     */
+    public boolean isEmpty() {
+        return isBlank(lastName) && isBlank(firstName) && isBlank(specialty) && createdFrom == null && createdTo == null;
+    }
+
+    /**
+     * Checks if a criterion is unset.
+     *
+     * @param criterion the criterion.
+     * @return true if it is null or blank.
+     */
+    public static boolean isBlank(String criterion) {
+        return criterion == null || criterion.isBlank();
+    }
+
+    /**
+     * Gets the start of the last name.
+     *
+     * @return the last name prefix.
+     */
+    public String getLastName() {
+        return lastName;
+    }
+
+    /**
+     * Sets the start of the last name.
+     *
+     * @param lastName the new last name prefix.
+     */
+    public void setLastName(String lastName) {
+        this.lastName = lastName;
+    }
+
+    /**
+     * Gets the start of the first name.
+     *
+     * @return the first name prefix.
+     */
+    public String getFirstName() {
+        return firstName;
+    }
+
+    /**
+     * Sets the start of the first name.
+     *
+     * @param firstName the new first name prefix.
+     */
+    public void setFirstName(String firstName) {
+        this.firstName = firstName;
+    }
+
+    /**
+     * Gets the specialty.
+     *
+     * @return the specialty.
+     */
+    public String getSpecialty() {
+        return specialty;
+    }
+
+    /**
+     * Sets the specialty.
+     *
+     * @param specialty the new specialty.
+     */
+    public void setSpecialty(String specialty) {
+        this.specialty = specialty;
+    }
+
+    /**
+     * Gets the first creation date.
+     *
+     * @return the first date, may be null.
+     */
+    public LocalDate getCreatedFrom() {
+        return createdFrom;
+    }
+
+    /**
+     * Sets the first creation date.
+     *
+     * @param createdFrom the new first date.
+     */
+    public void setCreatedFrom(LocalDate createdFrom) {
+        this.createdFrom = createdFrom;
+    }
+
+    /**
+     * Gets the last creation date.
+     *
+     * @return the last date, may be null.
+     */
+    public LocalDate getCreatedTo() {
+        return createdTo;
+    }
+
+    /**
+     * Sets the last creation date.
+     *
+     * @param createdTo the new last date.
+     */
+    public void setCreatedTo(LocalDate createdTo) {
+        this.createdTo = createdTo;
+    }
+
+    @Override
+    public String toString() {
+        return "PhysicianFilter [lastName = " + lastName + ", firstName = " + firstName + ", specialty = " + specialty
+            + ", createdFrom = " + createdFrom + ", createdTo = " + createdTo + "]";
+    }
+}
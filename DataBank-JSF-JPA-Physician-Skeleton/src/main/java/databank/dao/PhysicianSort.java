@@ -0,0 +1,59 @@
+package databank.dao;
+
+import databank.model.PhysicianPojo;
+
+/**
+ * Sort orders of a page of physicians read with keyset pagination.
+ * Each order names the query that reads the page after a given key, so a page
+ * costs an index range scan of the page size no matter how deep it is.
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 11/10/2024
+ */
+public enum PhysicianSort {
+
+    /** Oldest physicians first. */
+    ID_ASCENDING(PhysicianPojo.PHYSICIAN_FIND_PAGE_ASC, 0),
+
+    /** Newest physicians first. */
+    ID_DESCENDING(PhysicianPojo.PHYSICIAN_FIND_PAGE_DESC, Integer.MAX_VALUE);
+
+    /** Name of the query reading the page after a key. */
+    private final String queryName;
+
+    /** Key before the first row, used for the first page. */
+    private final int firstKey;
+
+    PhysicianSort(String queryName, int firstKey) {
+        this.queryName = queryName;
+        this.firstKey = firstKey;
+    }
+
+    /**
+     * Gets the name of the query reading the page after a key.
+     *
+     * @return the named query.
+     */
+    public String getQueryName() {
+        return queryName;
+    }
+
+    /**
+     * Gets the key before the first row.
+     *
+     * @return the key to read the first page after.
+     */
+    public int getFirstKey() {
+        return firstKey;
+    }
+
+    /**
+     * Gets the opposite order.
+     *
+     * @return the reversed sort.
+     */
+    public PhysicianSort reversed() {
+        return this == ID_ASCENDING ? ID_DESCENDING : ID_ASCENDING;
+    }
+}
@@ -0,0 +1,61 @@
+package databank.dao;
+
+import java.util.function.Function;
+import databank.model.PhysicianPojo;
+
+/**
+ * Columns the physician list can be sorted by. Pages are read with keyset pagination on
+ * the column and the ID, so each column is backed by an index starting with it; InnoDB adds
+ * the primary key to every secondary index, which makes it an index on (column, id).
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 11/10/2024
+ */
+public enum PhysicianSortColumn {
+
+    /** Sort by ID, the order physicians were added in. */
+    ID("id", PhysicianPojo::getId),
+
+    /** Sort by last name. */
+    LAST_NAME("lastName", PhysicianPojo::getLastName),
+
+    /** Sort by first name. */
+    FIRST_NAME("firstName", PhysicianPojo::getFirstName),
+
+    /** Sort by specialty. */
+    SPECIALTY("specialty", PhysicianPojo::getSpecialty),
+
+    /** Sort by creation date. */
+    CREATED("created", PhysicianPojo::getCreated);
+
+    /** Name of the entity attribute. */
+    private final String attribute;
+
+    /** Reads the attribute of a physician. */
+    private final Function<PhysicianPojo, Comparable<?>> getter;
+
+    PhysicianSortColumn(String attribute, Function<PhysicianPojo, Comparable<?>> getter) {
+        this.attribute = attribute;
+        this.getter = getter;
+    }
+
+    /**
+     * Gets the name of the entity attribute sorted by.
+     *
+     * @return the attribute name.
+     */
+    public String getAttribute() {
+        return attribute;
+    }
+
+    /**
+     * Gets the value sorted by of a physician.
+     *
+     * @param physician the physician.
+     * @return the value of the column, may be null.
+     */
+    public Comparable<?> valueOf(PhysicianPojo physician) {
+        return getter.apply(physician);
+    }
+}
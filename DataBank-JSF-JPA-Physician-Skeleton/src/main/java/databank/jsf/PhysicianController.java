@@ -2,8 +2,12 @@
 package databank.jsf;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
 import jakarta.enterprise.context.SessionScoped;
 import jakarta.faces.annotation.ManagedProperty;
@@ -13,13 +17,25 @@ import jakarta.inject.Inject;
 import jakarta.inject.Named;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import databank.service.PhysicianNameIndex;
 import databank.service.PhysicianService;
+import databank.service.PhysicianSnapshot;
+import databank.service.PhysicianSnapshots;
 import databank.dao.ListDataDao;
+import databank.dao.PhysicianFilter;
+import databank.dao.PhysicianSort;
+import databank.dao.PhysicianSortColumn;
 import databank.model.PhysicianPojo;
 
 /**
  * Controller class for managing a collection of {@link PhysicianPojo} objects in the JSF front-end.
  * This class handles C-R-U-D operations through interaction with the service layer.
+ * <p>
+ * Pages are read from the {@link PhysicianSnapshots shared snapshot} rather than the database,
+ * and a session keeps only the version of the snapshot its page came from, its place in the
+ * list and copies of the physicians it is editing. The page itself is not kept across
+ * passivation; it is rebuilt from the current snapshot.
+ * </p>
  * @Author Robin Phillis
  * @version 1.0
  * @since 11/10/2024
@@ -39,6 +55,28 @@ public class PhysicianController implements Serializable {
     /** Message key for out-of-date refresh error. */
     public static final String PHYSICIAN_OUTOFDATE_REFRESH_BUNDLE_MSG = "outOfDate";
 
+    /** Request parameter holding the comma-separated IDs of the physicians changed elsewhere. */
+    public static final String PHYSICIAN_IDS_PARAM = "physicianIds";
+
+    /** Client ID of the table of physicians. */
+    public static final String TABLE_CLIENT_ID = "physiciansList:physicianTable";
+
+    /** IDs of the cells of a row showing fields that can be edited. */
+    protected static final List<String> ROW_CELL_IDS =
+        List.of("lastName_cell", "firstName_cell", "phoneNumber_cell", "email_cell", "specialty_cell");
+
+    /** Client ID of the refresh button, highlighted when the page is outdated. */
+    public static final String REFRESH_BUTTON_CLIENT_ID = TABLE_CLIENT_ID + ":refreshButton";
+
+    /** Client ID of the global messages. */
+    public static final String MESSAGES_CLIENT_ID = "messages";
+
+    /** Maximum number of names suggested while typing a filter. */
+    public static final int SUGGESTION_LIMIT = 10;
+
+    /** Number of physicians shown per page unless changed. */
+    public static final int DEFAULT_PAGE_SIZE = 25;
+
     /** Injected FacesContext for managing JSF context operations. */
     @Inject
     protected FacesContext facesContext;
@@ -47,6 +85,14 @@ public class PhysicianController implements Serializable {
     @Inject
     protected PhysicianService physicianService;
 
+    /** Snapshot of the physicians shared by every session. */
+    @Inject
+    protected PhysicianSnapshots physicianSnapshots;
+
+    /** Index of the physician names suggested while typing a filter. */
+    @Inject
+    protected PhysicianNameIndex physicianNameIndex;
+
     /** DAO for managing list data operations. */
     @Inject
     protected ListDataDao listDataDao;
@@ -56,20 +102,80 @@ public class PhysicianController implements Serializable {
     @ManagedProperty(UICONSTS_BUNDLE_EXPR)
     protected ResourceBundle uiconsts;
 
-    /** List of physicians managed by this controller. */
-    protected List<PhysicianPojo> physician;
+    /** The page of physicians shown, rebuilt from the snapshot when needed. */
+    protected transient List<PhysicianPojo> physician;
+
+    /** Version of the snapshot the page was read from. */
+    protected long snapshotVersion;
+
+    /** Index of each physician of the page in {@link #physician}, by ID. */
+    protected transient Map<Integer, Integer> pageIndex;
+
+    /** Copies of the physicians being edited, by ID. */
+    protected Map<Integer, PhysicianPojo> edits = new HashMap<>();
+
+    /** Check boxes of the physicians of the page selected for deletion, by ID. */
+    protected Map<Integer, Boolean> selected = new HashMap<>();
 
     /** Boolean flag indicating if the add physician form is rendered. */
     protected boolean adding;
 
+    /** Number of physicians per page. */
+    protected int pageSize = DEFAULT_PAGE_SIZE;
+
+    /** Criteria the physicians are filtered by. */
+    protected PhysicianFilter filter = new PhysicianFilter();
+
+    /** Column the physicians are sorted by. */
+    protected PhysicianSortColumn orderBy = PhysicianSortColumn.ID;
+
+    /** Whether the physicians are sorted in ascending order. */
+    protected boolean ascending = true;
+
+    /** Physician the current page starts after, null for the first page. */
+    protected PhysicianPojo pageAnchor;
+
+    /** Physicians the previous pages start after, the page just before the current one last. */
+    protected List<PhysicianPojo> previousAnchors = new ArrayList<>();
+
+    /** Whether there are physicians after the current page. */
+    protected boolean hasNextPage;
+
     /**
-     * Loads the list of all physicians.
+     * Loads the current page of physicians, one row more than the page size to find out
+     * whether there is a next page. Unfiltered pages in ID order come from the current
+     * snapshot; any other page is searched for in the database. Physicians being edited are
+     * shown as this session's copies.
      */
     public void loadPhysicians() 
     {
-        LOG.debug("loadPhysicians");
+        LOG.debug("loadPhysicians {}, orderBy = {} {}, after = {}", filter, orderBy, ascending ? "ASC" : "DESC",
+            pageAnchor == null ? null : pageAnchor.getId());
         try {
-            physician = physicianService.readAllPhysicians();
+            PhysicianSnapshot snapshot = physicianSnapshots.current();
+            snapshotVersion = snapshot.getVersion();
+            // edits of physicians deleted meanwhile are dropped
+            edits.keySet().removeIf(id -> snapshot.find(id) == null);
+            List<PhysicianPojo> page;
+            if (filter.isEmpty() && orderBy == PhysicianSortColumn.ID) {
+                page = snapshot.readPhysicians(pageAnchor == null ? null : pageAnchor.getId(), pageSize + 1,
+                    ascending ? PhysicianSort.ID_ASCENDING : PhysicianSort.ID_DESCENDING);
+            } else {
+                page = physicianService.searchPhysicians(filter, orderBy, ascending, pageAnchor, pageSize + 1);
+            }
+            hasNextPage = page.size() > pageSize;
+            physician = new ArrayList<>(hasNextPage ? pageSize : page.size());
+            pageIndex = new HashMap<>();
+            for (PhysicianPojo row : hasNextPage ? page.subList(0, pageSize) : page) {
+                pageIndex.put(row.getId(), physician.size());
+                physician.add(edits.getOrDefault(row.getId(), row));
+            }
+            // a selection only holds for the page it was made on
+            selected.keySet().retainAll(pageIndex.keySet());
+            if (physician.isEmpty() && !previousAnchors.isEmpty()) {
+                // the rows of this page are gone, show the one before
+                previousPage();
+            }
         } catch (Exception e) {
             LOG.error("Error loading physicians: ", e);
             facesContext.addMessage(null, new FacesMessage(FacesMessage.SEVERITY_ERROR, "Error loading data", null));
@@ -83,9 +189,97 @@ public class PhysicianController implements Serializable {
      */
     public List<PhysicianPojo> getPhysicians() 
     {
+        if (this.physician == null) {
+            // e.g. after the session was passivated
+            loadPhysicians();
+        }
         return this.physician;
     }
 
+    /**
+     * Gets the version of the snapshot the page was read from.
+     *
+     * @return the snapshot version.
+     */
+    public long getSnapshotVersion() 
+    {
+        return snapshotVersion;
+    }
+
+    /**
+     * Checks if physicians were changed since the page was read.
+     *
+     * @return true if a newer snapshot is available.
+     */
+    public boolean isOutdated() 
+    {
+        return physicianSnapshots.currentVersion() != snapshotVersion;
+    }
+
+    /**
+     * Re-renders what a change pushed by {@link PhysicianPushBroadcaster} affects on the
+     * page, the IDs of the physicians changed in the {@value #PHYSICIAN_IDS_PARAM} request
+     * parameter. An updated physician on the page is replaced by the shared one and only the
+     * cells of its row are rendered; one being edited is left alone, with a warning that it
+     * is out of date. A deleted physician on the page reloads the table, once for the whole
+     * change. The refresh button is always rendered, since the page may now be outdated.
+     */
+    public void physicianChanged() 
+    {
+        String param = facesContext.getExternalContext().getRequestParameterMap().get(PHYSICIAN_IDS_PARAM);
+        LOG.debug("physicianChanged = {}", param);
+        Collection<String> renderIds = facesContext.getPartialViewContext().getRenderIds();
+        renderIds.add(REFRESH_BUTTON_CLIENT_ID);
+        if (param == null || param.isBlank()) {
+            return;
+        }
+        getPhysicians();
+        PhysicianSnapshot snapshot = physicianSnapshots.current();
+        boolean deletedOnPage = false;
+        boolean outdatedEdit = false;
+        List<Integer> updatedRows = new ArrayList<>();
+        for (String id : param.split(",")) {
+            int physicianId;
+            try {
+                physicianId = Integer.parseInt(id.trim());
+            } catch (NumberFormatException e) {
+                LOG.debug("ignoring pushed change of physician = {}", id);
+                continue;
+            }
+            Integer idx = pageIndex.get(physicianId);
+            if (idx == null) {
+                // not on the page; whether a new physician belongs there is left to a refresh
+                continue;
+            }
+            PhysicianPojo shared = snapshot.find(physicianId);
+            if (shared == null) {
+                edits.remove(physicianId);
+                selected.remove(physicianId);
+                deletedOnPage = true;
+            } else if (edits.containsKey(physicianId)) {
+                outdatedEdit |= edits.get(physicianId).getVersion() < shared.getVersion();
+            } else {
+                physician.set(idx, shared);
+                updatedRows.add(idx);
+            }
+        }
+        if (outdatedEdit) {
+            facesContext.addMessage(null, new FacesMessage(FacesMessage.SEVERITY_WARN,
+                    uiconsts.getString(PHYSICIAN_OUTOFDATE_REFRESH_BUNDLE_MSG), null));
+            renderIds.add(MESSAGES_CLIENT_ID);
+        }
+        if (deletedOnPage) {
+            loadPhysicians();
+            renderIds.add(TABLE_CLIENT_ID);
+            return;
+        }
+        for (int idx : updatedRows) {
+            for (String cellId : ROW_CELL_IDS) {
+                renderIds.add(TABLE_CLIENT_ID + ":" + idx + ":" + cellId);
+            }
+        }
+    }
+
     /**
      * Sets the list of physicians.
      *
@@ -94,6 +288,223 @@ public class PhysicianController implements Serializable {
     public void setPhysicians(List<PhysicianPojo> physicians) 
     {
         this.physician = physicians;
+        this.pageIndex = new HashMap<>();
+        for (int i = 0; i < physicians.size(); i++) {
+            pageIndex.put(physicians.get(i).getId(), i);
+        }
+    }
+
+    /**
+     * Reads the specialties and the physician snapshot again from the database, e.g. after
+     * the lab's loaders reseeded the tables, rather than waiting for the specialties to
+     * expire and the snapshot to catch up with the change feed.
+     *
+     * @return null to stay on the current page.
+     */
+    public String reloadData() 
+    {
+        LOG.debug("reloading the specialties and the physician snapshot");
+        listDataDao.invalidateSpecialties();
+        physicianSnapshots.invalidate();
+        return firstPage();
+    }
+
+    /**
+     * Shows the first page.
+     *
+     * @return null to stay on the current page.
+     */
+    public String firstPage() 
+    {
+        previousAnchors.clear();
+        pageAnchor = null;
+        loadPhysicians();
+        return null;
+    }
+
+    /**
+     * Shows the page after the current one, starting after its last physician.
+     *
+     * @return null to stay on the current page.
+     */
+    public String nextPage() 
+    {
+        List<PhysicianPojo> page = getPhysicians();
+        if (hasNextPage && !page.isEmpty()) 
+        {
+            previousAnchors.add(pageAnchor);
+            pageAnchor = page.get(page.size() - 1);
+            loadPhysicians();
+        }
+        return null;
+    }
+
+    /**
+     * Shows the page before the current one.
+     *
+     * @return null to stay on the current page.
+     */
+    public String previousPage() 
+    {
+        if (!previousAnchors.isEmpty()) 
+        {
+            pageAnchor = previousAnchors.remove(previousAnchors.size() - 1);
+            loadPhysicians();
+        }
+        return null;
+    }
+
+    /**
+     * Reverses the order of the physicians and shows the first page.
+     *
+     * @return null to stay on the current page.
+     */
+    public String toggleSort() 
+    {
+        ascending = !ascending;
+        return firstPage();
+    }
+
+    /**
+     * Sorts the physicians by a column and shows the first page; sorting by the column
+     * already sorted by reverses the order.
+     *
+     * @param column the column to sort by.
+     * @return null to stay on the current page.
+     */
+    public String sortBy(PhysicianSortColumn column) 
+    {
+        if (column == orderBy) {
+            return toggleSort();
+        }
+        orderBy = column;
+        ascending = true;
+        return firstPage();
+    }
+
+    /**
+     * Gets the column the physicians are sorted by.
+     *
+     * @return the sort column.
+     */
+    public PhysicianSortColumn getOrderBy() 
+    {
+        return orderBy;
+    }
+
+    /**
+     * Checks if the physicians are sorted in ascending order.
+     *
+     * @return true if ascending, false if descending.
+     */
+    public boolean isAscending() 
+    {
+        return ascending;
+    }
+
+    /**
+     * Gets the Font Awesome icon showing how a column is sorted.
+     *
+     * @param column the column.
+     * @return the icon class.
+     */
+    public String sortIcon(PhysicianSortColumn column) 
+    {
+        if (column != orderBy) {
+            return "fa-sort";
+        }
+        return ascending ? "fa-sort-up" : "fa-sort-down";
+    }
+
+    /**
+     * Gets the criteria the physicians are filtered by, bound to the filter form.
+     *
+     * @return the filter.
+     */
+    public PhysicianFilter getFilter() 
+    {
+        return filter;
+    }
+
+    /**
+     * Gets the last names suggested for the last name typed in the filter.
+     *
+     * @return at most {@link #SUGGESTION_LIMIT} last names.
+     */
+    public List<String> getLastNameSuggestions() 
+    {
+        return physicianNameIndex.suggestLastNames(filter.getLastName(), SUGGESTION_LIMIT);
+    }
+
+    /**
+     * Gets the first names suggested for the first name typed in the filter.
+     *
+     * @return at most {@link #SUGGESTION_LIMIT} first names.
+     */
+    public List<String> getFirstNameSuggestions() 
+    {
+        return physicianNameIndex.suggestFirstNames(filter.getFirstName(), SUGGESTION_LIMIT);
+    }
+
+    /**
+     * Shows the first page of the physicians matching the filter.
+     *
+     * @return null to stay on the current page.
+     */
+    public String applyFilter() 
+    {
+        return firstPage();
+    }
+
+    /**
+     * Clears the filter and shows the first page of all physicians.
+     *
+     * @return null to stay on the current page.
+     */
+    public String clearFilter() 
+    {
+        filter = new PhysicianFilter();
+        return firstPage();
+    }
+
+    /**
+     * Checks if the current page is the first one.
+     *
+     * @return true if there is no previous page.
+     */
+    public boolean isOnFirstPage() 
+    {
+        return previousAnchors.isEmpty();
+    }
+
+    /**
+     * Checks if the current page is the last one.
+     *
+     * @return true if there is no next page.
+     */
+    public boolean isOnLastPage() 
+    {
+        return !hasNextPage;
+    }
+
+    /**
+     * Gets the number of physicians per page.
+     *
+     * @return the page size.
+     */
+    public int getPageSize() 
+    {
+        return pageSize;
+    }
+
+    /**
+     * Sets the number of physicians per page.
+     *
+     * @param pageSize the new page size, at least 1.
+     */
+    public void setPageSize(int pageSize) 
+    {
+        this.pageSize = Math.max(1, pageSize);
     }
 
     /**
@@ -125,7 +536,9 @@ public class PhysicianController implements Serializable {
     }
 
     /**
-     * Marks a physician record as editable.
+     * Marks a physician record as editable. The rows shown are list items holding only the
+     * columns displayed, so the whole physician is read when its edit starts. The shared
+     * physician is not touched: the edits go to a copy kept by this session.
      *
      * @param physician the physician to be edited.
      * @return null to stay on the current page.
@@ -133,10 +546,34 @@ public class PhysicianController implements Serializable {
     public String editPhysician(PhysicianPojo physician)
     {
         LOG.debug("editPhysician = {}", physician);
-        physician.setEditable(true);
+        PhysicianPojo full = physicianService.readPhysicianById(physician.getId());
+        if (full == null) {
+            LOG.debug("FAILED edit physician, does not exist = {}", physician);
+            facesContext.addMessage(null, new FacesMessage(FacesMessage.SEVERITY_ERROR,
+                    uiconsts.getString(PHYSICIAN_MISSING_REFRESH_BUNDLE_MSG), null));
+            return null;
+        }
+        PhysicianPojo physicianToEdit = new PhysicianPojo(full);
+        physicianToEdit.setEditable(true);
+        edits.put(physicianToEdit.getId(), physicianToEdit);
+        replaceRow(physicianToEdit);
         return null;
     }
 
+    /**
+     * Replaces the physician with the same ID on the current page, if it is there.
+     *
+     * @param row the physician to show.
+     */
+    protected void replaceRow(PhysicianPojo row)
+    {
+        getPhysicians();
+        Integer idx = pageIndex.get(row.getId());
+        if (idx != null) {
+            physician.set(idx, row);
+        }
+    }
+
     /**
      * Updates a physician record with new data.
      *
@@ -147,31 +584,20 @@ public class PhysicianController implements Serializable {
     {
         LOG.debug("updatePhysician = {}", physicianWithEdits);
         
-        PhysicianPojo physicianToBeUpdated = physicianService.readPhysicianById(physicianWithEdits.getId());
+        PhysicianPojo physicianUpdated = physicianService.updatePhysician(physicianWithEdits);
     
-        if (physicianToBeUpdated == null) 
+        if (physicianUpdated == null) 
         {
-            LOG.debug("FAILED update physician, does not exist = {}", physicianToBeUpdated);
+            // nothing was written: tell a deleted physician from one changed meanwhile
+            boolean missing = physicianSnapshots.current().find(physicianWithEdits.getId()) == null;
+            LOG.debug("FAILED update physician, {} = {}", missing ? "does not exist" : "out of date", physicianWithEdits);
             facesContext.addMessage(null, new FacesMessage(FacesMessage.SEVERITY_ERROR,
-                    uiconsts.getString(PHYSICIAN_MISSING_REFRESH_BUNDLE_MSG), null));
+                    uiconsts.getString(missing ? PHYSICIAN_MISSING_REFRESH_BUNDLE_MSG : PHYSICIAN_OUTOFDATE_REFRESH_BUNDLE_MSG), null));
         }
         else 
         {
-            physicianToBeUpdated = physicianService.updatePhysician(physicianWithEdits);
-        
-            if (physicianToBeUpdated == null) 
-            {
-                LOG.debug("FAILED update physician = {}", physicianToBeUpdated);
-                facesContext.addMessage(null, new FacesMessage(FacesMessage.SEVERITY_ERROR,
-                        uiconsts.getString(PHYSICIAN_OUTOFDATE_REFRESH_BUNDLE_MSG), null));
-            }
-            else 
-            {
-                physicianToBeUpdated.setEditable(false);
-                int idx = physician.indexOf(physicianWithEdits);
-                physician.remove(idx);
-                physician.add(idx, physicianToBeUpdated);
-            }
+            edits.remove(physicianWithEdits.getId());
+            replaceRow(physicianUpdated);
         }
         return null;
     }
@@ -185,7 +611,11 @@ public class PhysicianController implements Serializable {
     public String cancelUpdate(PhysicianPojo physician) 
     {
         LOG.debug("cancelUpdate = {}", physician);
-        physician.setEditable(false);
+        edits.remove(physician.getId());
+        PhysicianPojo shared = physicianSnapshots.current().find(physician.getId());
+        if (shared != null) {
+            replaceRow(shared);
+        }
         return null;
     }
 
@@ -197,16 +627,56 @@ public class PhysicianController implements Serializable {
     public void deletePhysician(int physicianId) 
     {
         LOG.debug("deletePhysician = {}", physicianId);
-        PhysicianPojo physicianToBeRemoved = physicianService.readPhysicianById(physicianId);
-    
-        if (physicianToBeRemoved == null) 
-        {
-            LOG.debug("failed deletePhysician does not exist = {}", physicianId);
-            return;
-        }
-        
         physicianService.deletePhysicianById(physicianId);
-        physician.remove(physicianToBeRemoved);
+        edits.remove(physicianId);
+        selected.remove(physicianId);
+        loadPhysicians();
+    }
+
+    /**
+     * Gets the check boxes of the physicians of the page, by ID.
+     *
+     * @return whether each physician is selected for deletion.
+     */
+    public Map<Integer, Boolean> getSelected() 
+    {
+        return selected;
+    }
+
+    /**
+     * Deletes the selected physicians of the page in one statement. Nothing is deleted if
+     * any of them was changed or deleted since the page was read.
+     *
+     * @return null to stay on the current page.
+     */
+    public String deleteSelectedPhysicians() 
+    {
+        List<PhysicianPojo> physiciansToBeRemoved = new ArrayList<>();
+        for (PhysicianPojo row : getPhysicians()) {
+            if (Boolean.TRUE.equals(selected.get(row.getId()))) {
+                physiciansToBeRemoved.add(row);
+            }
+        }
+        LOG.debug("deleteSelectedPhysicians = {}", physiciansToBeRemoved.size());
+        if (physiciansToBeRemoved.isEmpty()) {
+            return null;
+        }
+        try {
+            if (physicianService.deletePhysicians(physiciansToBeRemoved) == 0) {
+                facesContext.addMessage(null, new FacesMessage(FacesMessage.SEVERITY_ERROR,
+                        uiconsts.getString(PHYSICIAN_OUTOFDATE_REFRESH_BUNDLE_MSG), null));
+            } else {
+                for (PhysicianPojo removed : physiciansToBeRemoved) {
+                    edits.remove(removed.getId());
+                }
+                selected.clear();
+            }
+        } catch (Exception e) {
+            LOG.error("Error deleting physicians: ", e);
+            facesContext.addMessage(null, new FacesMessage(FacesMessage.SEVERITY_ERROR, "Error deleting physicians", null));
+        }
+        loadPhysicians();
+        return null;
     }
 
     /**
@@ -221,7 +691,7 @@ public class PhysicianController implements Serializable {
             PhysicianPojo newPhysician = physicianService.createPhysician(physicians);
             if (newPhysician != null) {
                 LOG.debug("Successfully added new physician: {}", newPhysician);
-                physician.add(newPhysician);
+                loadPhysicians();
             } else {
                 LOG.error("Failed to add new physician: {}", physicians);
                 facesContext.addMessage(null, new FacesMessage(FacesMessage.SEVERITY_ERROR, "Failed to add physician", null));
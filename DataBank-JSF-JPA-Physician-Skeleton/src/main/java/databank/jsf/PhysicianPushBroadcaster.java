@@ -0,0 +1,59 @@
+package databank.jsf;
+
+import java.io.Serializable;
+import java.util.Map;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import databank.service.PhysicianChangeEvent;
+import databank.service.PhysicianSnapshots;
+import jakarta.annotation.Priority;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.faces.push.Push;
+import jakarta.faces.push.PushContext;
+import jakarta.inject.Inject;
+
+/**
+ * Pushes each committed {@link PhysicianChangeEvent} to the views open in every session,
+ * over the {@value #CHANNEL} websocket channel ({@code f:websocket} in index.xhtml), as
+ * one message listing all the physicians of the change, {@code {"kind": "CREATED", "ids":
+ * [41, 42]}}. A view receiving it makes one request to
+ * {@link PhysicianController#physicianChanged()} to re-render the rows affected, however
+ * many physicians the transaction changed.
+ * <p>
+ * The change is observed after the {@link PhysicianSnapshots snapshot} applies it, so the
+ * views read it from the snapshot rather than the database.
+ * </p>
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 11/10/2024
+ */
+@ApplicationScoped
+public class PhysicianPushBroadcaster implements Serializable {
+    /** Explicitly set serialVersionUID */
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    /** Channel the changes are pushed on. */
+    public static final String CHANNEL = "physicians";
+
+    /** The views listening on the channel. */
+    @Inject
+    @Push(channel = CHANNEL)
+    protected PushContext physiciansChannel;
+
+    /**
+     * Pushes a committed change.
+     *
+     * @param event the change.
+     */
+    public void onPhysicianChange(@Observes(during = TransactionPhase.AFTER_SUCCESS)
+        @Priority(PhysicianSnapshots.OBSERVER_PRIORITY + 200) PhysicianChangeEvent event)
+    {
+        LOG.debug("pushing {}", event);
+        physiciansChannel.send(Map.of("kind", event.getKind().name(), "ids", event.getPhysicianIds()));
+    }
+}
@@ -0,0 +1,43 @@
+package databank.jsf;
+
+import databank.metrics.RequestStatements;
+import jakarta.faces.component.ActionSource2;
+import jakarta.faces.event.AbortProcessingException;
+import jakarta.faces.event.ActionEvent;
+import jakarta.faces.event.ActionListener;
+
+/**
+ * Names the request after the JSF action it invokes, e.g.
+ * {@code #{physicianController.deleteSelectedPhysicians()}}, so its SQL statements are
+ * summed by action in {@link RequestStatements}; then invokes the action. Decorates the
+ * default action listener, registered in faces-config.xml.
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 11/10/2024
+ */
+public class StatementCountingActionListener implements ActionListener {
+
+    /** The action listener decorated. */
+    private final ActionListener delegate;
+
+    /**
+     * Decorates an action listener.
+     *
+     * @param delegate the action listener invoking the actions.
+     */
+    public StatementCountingActionListener(ActionListener delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void processAction(ActionEvent event) throws AbortProcessingException {
+        if (event.getComponent() instanceof ActionSource2) {
+            ActionSource2 source = (ActionSource2) event.getComponent();
+            if (source.getActionExpression() != null) {
+                RequestStatements.nameAction(source.getActionExpression().getExpressionString());
+            }
+        }
+        delegate.processAction(event);
+    }
+}
@@ -0,0 +1,104 @@
+package databank.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cumulative latency histogram of one method, in the shape of a Prometheus histogram.
+ * Recording is lock-free: each bucket, the sum and the counts are {@link LongAdder}s, so
+ * concurrent callers do not contend on one counter. A scrape reads the adders one by one,
+ * so its values may be a few calls apart, which Prometheus tolerates.
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 11/10/2024
+ */
+public final class LatencyHistogram {
+
+    /** Upper bounds of the buckets, in seconds; the last, implicit bucket is +Inf. */
+    private static final double[] BOUNDS = { 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10 };
+
+    /** Upper bounds of the buckets, in nanoseconds. */
+    private static final long[] BOUNDS_NANOS = new long[BOUNDS.length];
+
+    static {
+        for (int i = 0; i < BOUNDS.length; i++) {
+            BOUNDS_NANOS[i] = (long) (BOUNDS[i] * 1e9);
+        }
+    }
+
+    /** Calls per bucket, not cumulative; the last is +Inf. */
+    private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+
+    /** Total duration of the calls, in nanoseconds. */
+    private final LongAdder sumNanos = new LongAdder();
+
+    /** Calls ending with an exception. */
+    private final LongAdder errors = new LongAdder();
+
+    LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Gets the upper bounds of the buckets, but the last.
+     *
+     * @return the bounds, in seconds.
+     */
+    public static double[] bounds() {
+        return BOUNDS.clone();
+    }
+
+    /**
+     * Records a call.
+     *
+     * @param nanos the duration of the call.
+     * @param failed whether it ended with an exception.
+     */
+    public void record(long nanos, boolean failed) {
+        int i = 0;
+        while (i < BOUNDS_NANOS.length && nanos > BOUNDS_NANOS[i]) {
+            i++;
+        }
+        buckets[i].increment();
+        sumNanos.add(nanos);
+        if (failed) {
+            errors.increment();
+        }
+    }
+
+    /**
+     * Gets the cumulative counts of the buckets, the calls taking at most each bound and
+     * finally all the calls.
+     *
+     * @return {@code BOUNDS.length + 1} counts.
+     */
+    public long[] cumulativeCounts() {
+        long[] counts = new long[buckets.length];
+        long total = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            total += buckets[i].sum();
+            counts[i] = total;
+        }
+        return counts;
+    }
+
+    /**
+     * Gets the total duration of the calls.
+     *
+     * @return the sum, in seconds.
+     */
+    public double sumSeconds() {
+        return sumNanos.sum() / 1e9;
+    }
+
+    /**
+     * Gets the number of calls ending with an exception.
+     *
+     * @return the count.
+     */
+    public long errors() {
+        return errors.sum();
+    }
+}
@@ -0,0 +1,62 @@
+package databank.metrics;
+
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import jakarta.enterprise.context.ApplicationScoped;
+
+/**
+ * The {@link LatencyHistogram}s of the {@link Timed} methods, by method, named
+ * {@code Class.method} after the declaring class.
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 11/10/2024
+ */
+@ApplicationScoped
+public class MethodMetrics implements Serializable {
+    /** Explicitly set serialVersionUID */
+    private static final long serialVersionUID = 1L;
+
+    /** Histograms by method name; overloads of a method share one. */
+    private final transient Map<String, LatencyHistogram> byName = new ConcurrentHashMap<>();
+
+    /** Histograms by method, looked up on every timed call without building its name. */
+    private final transient Map<Method, LatencyHistogram> byMethod = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the histogram of a method, created on its first call.
+     *
+     * @param method the method.
+     * @return the histogram.
+     */
+    public LatencyHistogram histogram(Method method)
+    {
+        LatencyHistogram histogram = byMethod.get(method);
+        return histogram != null ? histogram
+            : byMethod.computeIfAbsent(method, m -> byName.computeIfAbsent(name(m), name -> new LatencyHistogram()));
+    }
+
+    /**
+     * Gets the histograms recorded so far.
+     *
+     * @return the histograms by method name, sorted.
+     */
+    public Map<String, LatencyHistogram> snapshot()
+    {
+        return new TreeMap<>(byName);
+    }
+
+    /**
+     * Names a method for the metrics.
+     *
+     * @param method the method.
+     * @return {@code SimpleClassName.method}.
+     */
+    static String name(Method method)
+    {
+        return method.getDeclaringClass().getSimpleName() + "." + method.getName();
+    }
+}
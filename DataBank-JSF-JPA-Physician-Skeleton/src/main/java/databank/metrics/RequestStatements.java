@@ -0,0 +1,305 @@
+package databank.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Counts the SQL statements of each request and times their executions, to catch slow
+ * queries and N+1 selects before they reach production load.
+ * <p>
+ * Hibernate reports each statement prepared to {@link SqlStatementInspector} and each
+ * execution to {@link SqlTimingListener}; both are created by Hibernate rather than CDI,
+ * and report here. The statements of a request are counted on its thread, between
+ * {@link #begin} and {@link #end}, and summed by action when it ends. An execution slower
+ * than {@link #getSlowQueryMillis()} is logged with its SQL and bind count; a request
+ * preparing more than {@link #getMaxStatements()} statements is logged with the statements
+ * it repeated.
+ * </p>
+ * <p>
+ * Actions are partly named by the client, so at most {@value #MAX_ACTIONS} of them are
+ * totalled apart; the requests of any further action are totalled as {@value #OTHER_ACTION}.
+ * </p>
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 11/10/2024
+ */
+public final class RequestStatements {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    /** Slowest execution not logged, in milliseconds, unless configured. */
+    public static final long DEFAULT_SLOW_QUERY_MILLIS = 100;
+
+    /** Most statements a request may prepare without being logged, unless configured. */
+    public static final int DEFAULT_MAX_STATEMENTS = 5;
+
+    /** Most distinct actions totalled apart, so clients cannot grow the totals without bound. */
+    public static final int MAX_ACTIONS = 200;
+
+    /** Action the requests of the actions past {@link #MAX_ACTIONS} are totalled as. */
+    public static final String OTHER_ACTION = "(other)";
+
+    /** Most distinct statements remembered per request for its log line. */
+    private static final int MAX_DISTINCT_SQL = 20;
+
+    /** Slowest execution not logged, in nanoseconds. */
+    private static volatile long slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SLOW_QUERY_MILLIS);
+
+    /** Most statements a request may prepare without being logged. */
+    private static volatile int maxStatements = DEFAULT_MAX_STATEMENTS;
+
+    /** The request of the thread, if it is serving one. */
+    private static final ThreadLocal<RequestStatements> CURRENT = new ThreadLocal<>();
+
+    /** The statement last prepared by the thread, the one the next execution runs. */
+    private static final ThreadLocal<String> LAST_SQL = new ThreadLocal<>();
+
+    /** Totals of the requests ended, by action. */
+    private static final Map<String, ActionStatements> BY_ACTION = new ConcurrentHashMap<>();
+
+    /** Action of the request, the page until a JSF action names it. */
+    private String action;
+
+    /** Statements prepared. */
+    private int statements;
+
+    /** Executions slower than the threshold. */
+    private int slowQueries;
+
+    /** Times each distinct statement was prepared, up to {@link #MAX_DISTINCT_SQL} of them. */
+    private final Map<String, Integer> sqlCounts = new LinkedHashMap<>();
+
+    private RequestStatements(String action) {
+        this.action = action;
+    }
+
+    /**
+     * Sets the thresholds.
+     *
+     * @param slowQueryMillis slowest execution not logged, in milliseconds.
+     * @param maxStatementsPerRequest most statements a request may prepare without being logged.
+     */
+    public static void configure(long slowQueryMillis, int maxStatementsPerRequest) {
+        slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryMillis);
+        maxStatements = maxStatementsPerRequest;
+    }
+
+    /**
+     * Gets the slowest execution not logged.
+     *
+     * @return the threshold, in milliseconds.
+     */
+    public static long getSlowQueryMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(slowQueryNanos);
+    }
+
+    /**
+     * Gets the most statements a request may prepare without being logged.
+     *
+     * @return the threshold.
+     */
+    public static int getMaxStatements() {
+        return maxStatements;
+    }
+
+    /**
+     * Starts counting the statements of the request served by the thread.
+     *
+     * @param action what the request does, until {@link #nameAction} names it better.
+     */
+    public static void begin(String action) {
+        CURRENT.set(new RequestStatements(action));
+    }
+
+    /**
+     * Names the action of the request served by the thread, if any.
+     *
+     * @param action the action, e.g. the expression of the JSF action invoked.
+     */
+    public static void nameAction(String action) {
+        RequestStatements request = CURRENT.get();
+        if (request != null) {
+            request.action = action;
+        }
+    }
+
+    /**
+     * Stops counting the statements of the request served by the thread, adding them to
+     * the totals of its action, and logs it if it prepared too many.
+     */
+    public static void end() {
+        RequestStatements request = CURRENT.get();
+        CURRENT.remove();
+        LAST_SQL.remove();
+        if (request == null) {
+            return;
+        }
+        boolean tooMany = request.statements > maxStatements;
+        ActionStatements totals = BY_ACTION.get(request.action);
+        if (totals == null) {
+            // checked before adding, so concurrent requests may overshoot by a few at most
+            String action = BY_ACTION.size() < MAX_ACTIONS ? request.action : OTHER_ACTION;
+            totals = BY_ACTION.computeIfAbsent(action, a -> new ActionStatements());
+        }
+        totals.add(request.statements, request.slowQueries, tooMany);
+        if (tooMany) {
+            LOG.warn("{} prepared {} SQL statements, more than {}; times prepared by statement: {}", request.action,
+                request.statements, maxStatements, request.sqlCounts);
+        }
+    }
+
+    /**
+     * Records a statement prepared by the thread.
+     *
+     * @param sql the SQL.
+     */
+    static void prepared(String sql) {
+        LAST_SQL.set(sql);
+        RequestStatements request = CURRENT.get();
+        if (request != null) {
+            request.statements++;
+            if (request.sqlCounts.size() < MAX_DISTINCT_SQL || request.sqlCounts.containsKey(sql)) {
+                request.sqlCounts.merge(sql, 1, Integer::sum);
+            }
+        }
+    }
+
+    /**
+     * Records an execution by the thread of the statement it last prepared, logging it if
+     * it was slow.
+     *
+     * @param nanos the duration of the execution.
+     */
+    static void executed(long nanos) {
+        if (nanos <= slowQueryNanos) {
+            return;
+        }
+        String sql = LAST_SQL.get();
+        RequestStatements request = CURRENT.get();
+        if (request != null) {
+            request.slowQueries++;
+        }
+        LOG.warn("slow SQL, {} ms, {} binds{}: {}", TimeUnit.NANOSECONDS.toMillis(nanos), bindCount(sql),
+            request == null ? "" : ", in " + request.action, sql);
+    }
+
+    /**
+     * Counts the bind parameters of a statement, the {@code ?} outside quoted literals.
+     *
+     * @param sql the SQL, or null.
+     * @return the number of parameters.
+     */
+    static int bindCount(String sql) {
+        if (sql == null) {
+            return 0;
+        }
+        int count = 0;
+        char quote = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"' || c == '`') {
+                quote = c;
+            } else if (c == '?') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Gets the totals of the requests ended so far.
+     *
+     * @return the totals by action, sorted.
+     */
+    public static Map<String, ActionStatements> summary() {
+        return new TreeMap<>(BY_ACTION);
+    }
+
+    /**
+     * Totals of the requests of one action.
+     */
+    public static final class ActionStatements {
+
+        /** Requests ended. */
+        private final LongAdder requests = new LongAdder();
+
+        /** Statements prepared by them. */
+        private final LongAdder statements = new LongAdder();
+
+        /** Most statements prepared by one of them. */
+        private final AtomicLong maxStatements = new AtomicLong();
+
+        /** Requests preparing more than the threshold. */
+        private final LongAdder offenders = new LongAdder();
+
+        /** Slow executions. */
+        private final LongAdder slowQueries = new LongAdder();
+
+        void add(int requestStatements, int requestSlowQueries, boolean offender) {
+            requests.increment();
+            statements.add(requestStatements);
+            maxStatements.accumulateAndGet(requestStatements, Math::max);
+            slowQueries.add(requestSlowQueries);
+            if (offender) {
+                offenders.increment();
+            }
+        }
+
+        /**
+         * Gets the number of requests.
+         *
+         * @return the count.
+         */
+        public long getRequests() {
+            return requests.sum();
+        }
+
+        /**
+         * Gets the number of statements prepared by the requests.
+         *
+         * @return the count.
+         */
+        public long getStatements() {
+            return statements.sum();
+        }
+
+        /**
+         * Gets the most statements prepared by one request.
+         *
+         * @return the count.
+         */
+        public long getMaxStatements() {
+            return maxStatements.get();
+        }
+
+        /**
+         * Gets the number of requests preparing more statements than the threshold.
+         *
+         * @return the count.
+         */
+        public long getOffenders() {
+            return offenders.sum();
+        }
+
+        /**
+         * Gets the number of slow executions.
+         *
+         * @return the count.
+         */
+        public long getSlowQueries() {
+            return slowQueries.sum();
+        }
+    }
+}
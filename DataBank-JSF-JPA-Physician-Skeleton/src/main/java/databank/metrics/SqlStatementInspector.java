@@ -0,0 +1,23 @@
+package databank.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Reports each SQL statement Hibernate prepares to {@link RequestStatements}, leaving the
+ * statement unchanged. Set as hibernate.session_factory.statement_inspector in
+ * persistence.xml.
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 11/10/2024
+ */
+public class SqlStatementInspector implements StatementInspector {
+    /** Explicitly set serialVersionUID */
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public String inspect(String sql) {
+        RequestStatements.prepared(sql);
+        return sql;
+    }
+}
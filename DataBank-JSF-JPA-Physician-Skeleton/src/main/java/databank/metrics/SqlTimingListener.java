@@ -0,0 +1,41 @@
+package databank.metrics;
+
+import org.hibernate.BaseSessionEventListener;
+
+/**
+ * Times each JDBC execution of a Hibernate session, statements and batches alike, and
+ * reports it to {@link RequestStatements}. Hibernate creates one per session, set as
+ * hibernate.session.events.auto in persistence.xml; a session is used by one thread at a
+ * time.
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 11/10/2024
+ */
+public class SqlTimingListener extends BaseSessionEventListener {
+    /** Explicitly set serialVersionUID */
+    private static final long serialVersionUID = 1L;
+
+    /** Start of the current execution. */
+    private long start;
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        start = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        RequestStatements.executed(System.nanoTime() - start);
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        start = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        RequestStatements.executed(System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,24 @@
+package databank.metrics;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import jakarta.interceptor.InterceptorBinding;
+
+/**
+ * Records the latency and the failures of the annotated method, or of every business
+ * method of the annotated class, in the {@link MethodMetrics}.
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 11/10/2024
+ * @see TimedInterceptor
+ */
+@Inherited
+@InterceptorBinding
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.TYPE, ElementType.METHOD })
+public @interface Timed {
+}
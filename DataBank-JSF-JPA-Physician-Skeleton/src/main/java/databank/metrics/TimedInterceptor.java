@@ -0,0 +1,50 @@
+package databank.metrics;
+
+import java.io.Serializable;
+import jakarta.annotation.Priority;
+import jakarta.inject.Inject;
+import jakarta.interceptor.AroundInvoke;
+import jakarta.interceptor.Interceptor;
+import jakarta.interceptor.InvocationContext;
+
+/**
+ * Times the methods bound by {@link Timed}, recording each call in the histogram of its
+ * method, and counting the calls ending with an exception.
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 11/10/2024
+ */
+@Timed
+@Interceptor
+@Priority(Interceptor.Priority.APPLICATION)
+public class TimedInterceptor implements Serializable {
+    /** Explicitly set serialVersionUID */
+    private static final long serialVersionUID = 1L;
+
+    /** Where the calls are recorded. */
+    @Inject
+    protected MethodMetrics methodMetrics;
+
+    /**
+     * Times a call.
+     *
+     * @param context the call.
+     * @return what the method returns.
+     * @throws Exception what the method throws.
+     */
+    @AroundInvoke
+    public Object time(InvocationContext context) throws Exception
+    {
+        LatencyHistogram histogram = methodMetrics.histogram(context.getMethod());
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Object result = context.proceed();
+            failed = false;
+            return result;
+        } finally {
+            histogram.record(System.nanoTime() - start, failed);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package databank.model;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * One entry of the change feed of the {@link PhysicianPojo physicians}: a physician as last
+ * written, or the {@link PhysicianTombstone tombstone} of a deleted one. The time and the ID of
+ * the last entry read are where the next read continues from.
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 11/10/2024
+ */
+public class PhysicianChange implements Serializable {
+    /** Explicitly set serialVersionUID */
+    private static final long serialVersionUID = 1L;
+
+    /** ID of the physician changed. */
+    private final int physicianId;
+
+    /** When it was last written or deleted. */
+    private final LocalDateTime changed;
+
+    /** The physician as last written, null when deleted. */
+    private final PhysicianPojo physician;
+
+    /**
+     * Creates a change.
+     *
+     * @param physicianId the ID of the physician changed.
+     * @param changed when it was last written or deleted.
+     * @param physician the physician as last written, null when deleted.
+     */
+    protected PhysicianChange(int physicianId, LocalDateTime changed, PhysicianPojo physician) {
+        this.physicianId = physicianId;
+        this.changed = changed;
+        this.physician = physician;
+    }
+
+    /**
+     * Creates the change of a physician written.
+     *
+     * @param physician the physician as last written.
+     * @return the change.
+     */
+    public static PhysicianChange written(PhysicianPojo physician) {
+        return new PhysicianChange(physician.getId(), physician.getUpdated(), physician);
+    }
+
+    /**
+     * Creates the tombstone of a physician deleted.
+     *
+     * @param physicianId the ID of the physician.
+     * @param deleted when it was deleted.
+     * @return the change.
+     */
+    public static PhysicianChange deleted(int physicianId, LocalDateTime deleted) {
+        return new PhysicianChange(physicianId, deleted, null);
+    }
+
+    /**
+     * Gets the ID of the physician changed.
+     *
+     * @return the physician ID.
+     */
+    public int getPhysicianId() {
+        return physicianId;
+    }
+
+    /**
+     * Gets when the physician was last written or deleted.
+     *
+     * @return the time of the change.
+     */
+    public LocalDateTime getChanged() {
+        return changed;
+    }
+
+    /**
+     * Gets the physician as last written.
+     *
+     * @return the physician, null when deleted.
+     */
+    public PhysicianPojo getPhysician() {
+        return physician;
+    }
+
+    /**
+     * Checks if this is the tombstone of a deleted physician.
+     *
+     * @return true if the physician was deleted.
+     */
+    public boolean isDeleted() {
+        return physician == null;
+    }
+
+    @Override
+    public String toString() {
+        return "PhysicianChange [physicianId=" + physicianId + ", changed=" + changed
+            + (isDeleted() ? ", deleted" : ", version=" + physician.getVersion()) + "]";
+    }
+}
@@ -9,7 +9,6 @@ package databank.model;
 
 import java.io.Serializable;
 import java.time.LocalDateTime;
-import java.util.Objects;
 
 import jakarta.faces.view.ViewScoped;
 import jakarta.persistence.Access;
@@ -21,8 +20,11 @@ import jakarta.persistence.EntityListeners;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.LockModeType;
 import jakarta.persistence.NamedQuery;
 import jakarta.persistence.Table;
+import jakarta.persistence.TableGenerator;
 import jakarta.persistence.Transient;
 import jakarta.persistence.Version;
 
@@ -55,11 +57,36 @@ import jakarta.persistence.Version;
  */
 @ViewScoped
 @Entity(name = "Physician")
-@Table(name = "physician", catalog = "databank", schema = "databank")
+@Table(name = "physician", catalog = "databank", schema = "databank", indexes = {
+    // InnoDB appends the primary key, so each index also serves keyset pages on (column, id)
+    @Index(name = "idx_physician_last_name", columnList = "last_name"),
+    @Index(name = "idx_physician_first_name", columnList = "first_name"),
+    @Index(name = "idx_physician_specialty_last_name", columnList = "specialty, last_name"),
+    @Index(name = "idx_physician_created", columnList = "created"),
+    @Index(name = "idx_physician_updated", columnList = "updated") })
 @Access(AccessType.FIELD)
 @EntityListeners(PhysicianPojoListener.class)
 @NamedQuery(name = PhysicianPojo.PHYSICIAN_FIND_ALL, query = "SELECT p FROM Physician p")
 @NamedQuery(name = PhysicianPojo.PHYSICIAN_FIND_ID, query = "SELECT p FROM Physician p WHERE p.id = :id")
+@NamedQuery(name = PhysicianPojo.PHYSICIAN_LIST_ALL, query = "SELECT " + PhysicianPojo.LIST_ITEM + " FROM Physician p")
+@NamedQuery(name = PhysicianPojo.PHYSICIAN_EXPORT_ALL,
+    query = "SELECT " + PhysicianPojo.EXPORT_ITEM + " FROM Physician p ORDER BY p.id")
+@NamedQuery(name = PhysicianPojo.PHYSICIAN_FIND_CHANGED_SINCE, query = "SELECT " + PhysicianPojo.EXPORT_ITEM
+    + " FROM Physician p WHERE p.updated >= :" + PhysicianTombstone.PARAM_SINCE
+    + " AND (p.updated > :" + PhysicianTombstone.PARAM_SINCE + " OR p.id > :" + PhysicianPojo.PARAM_AFTER_ID + ")"
+    + " ORDER BY p.updated, p.id")
+@NamedQuery(name = PhysicianPojo.PHYSICIAN_FIND_PAGE_ASC, query = "SELECT " + PhysicianPojo.LIST_ITEM
+    + " FROM Physician p WHERE p.id > :" + PhysicianPojo.PARAM_AFTER_ID + " ORDER BY p.id ASC")
+@NamedQuery(name = PhysicianPojo.PHYSICIAN_FIND_PAGE_DESC, query = "SELECT " + PhysicianPojo.LIST_ITEM
+    + " FROM Physician p WHERE p.id < :" + PhysicianPojo.PARAM_AFTER_ID + " ORDER BY p.id DESC")
+@NamedQuery(name = PhysicianPojo.PHYSICIAN_UPDATE_VERSIONED,
+    query = "UPDATE Physician p SET p.lastName = :lastName, p.firstName = :firstName, p.email = :email,"
+        + " p.phoneNumber = :phoneNumber, p.specialty = :specialty, p.updated = :updated, p.version = p.version + 1"
+        + " WHERE p.id = :id AND p.version = :version")
+@NamedQuery(name = PhysicianPojo.PHYSICIAN_DELETE_ID, query = "DELETE FROM Physician p WHERE p.id = :id")
+@NamedQuery(name = PhysicianPojo.PHYSICIAN_LOCK_VERSIONS, query = "SELECT p.id, p.version FROM Physician p WHERE p.id IN :ids",
+    lockMode = LockModeType.PESSIMISTIC_WRITE)
+@NamedQuery(name = PhysicianPojo.PHYSICIAN_DELETE_IDS, query = "DELETE FROM Physician p WHERE p.id IN :ids")
 public class PhysicianPojo implements Serializable {
     private static final long serialVersionUID = 1L;
 
@@ -69,9 +96,64 @@ public class PhysicianPojo implements Serializable {
     /** Query constant to find a physician by ID. */
     public static final String PHYSICIAN_FIND_ID = "Physician.findById";
 
-    /** The unique identifier for a physician. */
+    /** Query constant to list all physicians as {@link #LIST_ITEM list items}. */
+    public static final String PHYSICIAN_LIST_ALL = "Physician.listAll";
+
+    /**
+     * Constructor expression selecting the columns the list view shows, and the version
+     * the rows are updated and deleted with, into unmanaged physicians.
+     */
+    public static final String LIST_ITEM = "NEW databank.model.PhysicianPojo(p.id, p.lastName, p.firstName, p.email,"
+        + " p.phoneNumber, p.specialty, p.created, p.version)";
+
+    /** Query constant to read all physicians in ID order as {@link #EXPORT_ITEM export items}. */
+    public static final String PHYSICIAN_EXPORT_ALL = "Physician.exportAll";
+
+    /** Constructor expression selecting every column into unmanaged physicians. */
+    public static final String EXPORT_ITEM = "NEW databank.model.PhysicianPojo(p.id, p.lastName, p.firstName, p.email,"
+        + " p.phoneNumber, p.specialty, p.created, p.updated, p.version)";
+
+    /** Query constant to find the physicians written after a time and ID, in (updated, ID) order, as export items. */
+    public static final String PHYSICIAN_FIND_CHANGED_SINCE = "Physician.findChangedSince";
+
+    /** Query constant to find the page of physicians after an ID, in ascending ID order, as list items. */
+    public static final String PHYSICIAN_FIND_PAGE_ASC = "Physician.findPageAscending";
+
+    /** Query constant to find the page of physicians after an ID, in descending ID order, as list items. */
+    public static final String PHYSICIAN_FIND_PAGE_DESC = "Physician.findPageDescending";
+
+    /** Query constant to update a physician if it still has the version it was read with. */
+    public static final String PHYSICIAN_UPDATE_VERSIONED = "Physician.updateVersioned";
+
+    /** Query constant to delete a physician by ID. */
+    public static final String PHYSICIAN_DELETE_ID = "Physician.deleteById";
+
+    /** Query constant to read and lock the versions of physicians by ID, as (ID, version) pairs. */
+    public static final String PHYSICIAN_LOCK_VERSIONS = "Physician.lockVersions";
+
+    /** Query constant to delete physicians by ID. */
+    public static final String PHYSICIAN_DELETE_IDS = "Physician.deleteByIds";
+
+    /** Name of the generator of physician IDs. */
+    public static final String ID_GENERATOR = "physicianIdGenerator";
+
+    /** Number of IDs the generator reserves per round trip, at least the JDBC batch size. */
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    /** Parameter of the page queries holding the last ID of the previous page. */
+    public static final String PARAM_AFTER_ID = "afterId";
+
+    /**
+     * The unique identifier for a physician. IDs come from a pooled-lo table generator
+     * rather than the AUTO_INCREMENT column: an IDENTITY key is only known once its INSERT
+     * has run, which keeps Hibernate from batching inserts. Physicians loaded by Lab1 use
+     * AUTO_INCREMENT or explicit IDs, and its loaders move the generator past them.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = ID_GENERATOR)
+    @TableGenerator(name = ID_GENERATOR, catalog = "databank", schema = "databank", table = "id_generator",
+        pkColumnName = "sequence_name", valueColumnName = "next_val", pkColumnValue = "physician",
+        allocationSize = ID_ALLOCATION_SIZE)
     @Column(name = "id")
     protected int id;
 
@@ -123,6 +205,71 @@ public class PhysicianPojo implements Serializable {
         super();
     }
 
+    /**
+     * Copy constructor, copying every persistent field but not the editable state.
+     *
+     * @param other the physician to copy.
+     */
+    public PhysicianPojo(PhysicianPojo other) {
+        this();
+        this.id = other.id;
+        this.lastName = other.lastName;
+        this.firstName = other.firstName;
+        this.email = other.email;
+        this.phoneNumber = other.phoneNumber;
+        this.created = other.created;
+        this.updated = other.updated;
+        this.specialty = other.specialty;
+        this.version = other.version;
+    }
+
+    /**
+     * List item constructor, called by the {@link #LIST_ITEM} constructor expression. The
+     * physician is not managed: Hibernate neither keeps a copy of it for dirty checking
+     * nor flushes it. The updated time is not read.
+     *
+     * @param id the ID.
+     * @param lastName the last name.
+     * @param firstName the first name.
+     * @param email the email.
+     * @param phoneNumber the phone number.
+     * @param specialty the specialty.
+     * @param created the creation time.
+     * @param version the version.
+     */
+    public PhysicianPojo(int id, String lastName, String firstName, String email, String phoneNumber, String specialty,
+        LocalDateTime created, int version) {
+        this(id, lastName, firstName, email, phoneNumber, specialty, created, null, version);
+    }
+
+    /**
+     * Export item constructor, called by the {@link #EXPORT_ITEM} constructor expression.
+     * Like a list item, the physician is not managed.
+     *
+     * @param id the ID.
+     * @param lastName the last name.
+     * @param firstName the first name.
+     * @param email the email.
+     * @param phoneNumber the phone number.
+     * @param specialty the specialty.
+     * @param created the creation time.
+     * @param updated the time of the last update.
+     * @param version the version.
+     */
+    public PhysicianPojo(int id, String lastName, String firstName, String email, String phoneNumber, String specialty,
+        LocalDateTime created, LocalDateTime updated, int version) {
+        this();
+        this.id = id;
+        this.lastName = lastName;
+        this.firstName = firstName;
+        this.email = email;
+        this.phoneNumber = phoneNumber;
+        this.specialty = specialty;
+        this.created = created;
+        this.updated = updated;
+        this.version = version;
+    }
+
     /**
      * Gets the ID of the physician.
      *
@@ -310,8 +457,8 @@ public class PhysicianPojo implements Serializable {
      */
     @Override
     public int hashCode() {
-        final int prime = 31;
-        return prime * Objects.hash(getId());
+        // no varargs boxing, this is called for every lookup of a physician
+        return Integer.hashCode(getId());
     }
 
     /**
@@ -330,7 +477,7 @@ public class PhysicianPojo implements Serializable {
         }
 
         PhysicianPojo otherPhysicianPojo = (PhysicianPojo) obj;
-        return Objects.equals(this.getId(), otherPhysicianPojo.getId());
+        return this.getId() == otherPhysicianPojo.getId();
     }
 
     /**
@@ -0,0 +1,94 @@
+package databank.model;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import jakarta.persistence.Access;
+import jakarta.persistence.AccessType;
+import jakarta.persistence.Basic;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.NamedQuery;
+import jakarta.persistence.Table;
+
+/**
+ * Records that a physician was deleted, and when, so the change feed of
+ * {@link PhysicianPojo physicians} can report deletions: the deleted row itself is gone.
+ * The ID is the key, so a physician ID deleted again keeps one tombstone, of the latest
+ * deletion; the tombstone is removed when a physician with that ID is inserted again.
+ * Tombstones are written by the physician table's triggers, whoever deletes or inserts
+ * the rows, and only read here.
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 11/10/2024
+ */
+@Entity(name = "PhysicianTombstone")
+@Table(name = "physician_tombstone", catalog = "databank", schema = "databank", indexes = {
+    // InnoDB appends the primary key, so the index serves the feed's keyset on (deleted, id)
+    @Index(name = "idx_physician_tombstone_deleted", columnList = "deleted") })
+@Access(AccessType.FIELD)
+@NamedQuery(name = PhysicianTombstone.TOMBSTONE_FIND_SINCE, query = "SELECT t FROM PhysicianTombstone t"
+    + " WHERE t.deleted >= :" + PhysicianTombstone.PARAM_SINCE
+    + " AND (t.deleted > :" + PhysicianTombstone.PARAM_SINCE + " OR t.id > :" + PhysicianPojo.PARAM_AFTER_ID + ")"
+    + " ORDER BY t.deleted, t.id")
+public class PhysicianTombstone implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** Query constant to find the tombstones after a time and ID, in (deleted, ID) order. */
+    public static final String TOMBSTONE_FIND_SINCE = "PhysicianTombstone.findSince";
+
+    /** Parameter of the change feed queries holding the time of the last change read. */
+    public static final String PARAM_SINCE = "since";
+
+    /** The ID of the physician deleted. */
+    @Id
+    @Column(name = "id")
+    protected int id;
+
+    /** When the physician was deleted. */
+    @Basic
+    @Column(name = "deleted", nullable = false, updatable = false)
+    protected LocalDateTime deleted;
+
+    /** Default constructor. */
+    public PhysicianTombstone() {
+        super();
+    }
+
+    /**
+     * Creates the tombstone of a physician.
+     *
+     * @param id the ID of the physician deleted.
+     * @param deleted when it was deleted.
+     */
+    public PhysicianTombstone(int id, LocalDateTime deleted) {
+        this();
+        this.id = id;
+        this.deleted = deleted;
+    }
+
+    /**
+     * Gets the ID of the physician deleted.
+     *
+     * @return the physician ID.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Gets when the physician was deleted.
+     *
+     * @return the time of the deletion.
+     */
+    public LocalDateTime getDeleted() {
+        return deleted;
+    }
+
+    @Override
+    public String toString() {
+        return "PhysicianTombstone [id=" + id + ", deleted=" + deleted + "]";
+    }
+}
@@ -0,0 +1,153 @@
+package databank.service;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import databank.model.PhysicianPojo;
+
+/**
+ * CDI event fired by {@link PhysicianService} when physicians are created, updated or deleted;
+ * one event covers all the physicians of a bulk create or delete, so observers apply it at once.
+ * Observers interested in committed data only observe it with
+ * {@code @Observes(during = TransactionPhase.AFTER_SUCCESS)}.
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 11/10/2024
+ */
+public class PhysicianChangeEvent implements Serializable {
+    /** Explicitly set serialVersionUID */
+    private static final long serialVersionUID = 1L;
+
+    /** Kinds of change. */
+    public enum Kind {
+        /** The physician was inserted. */
+        CREATED,
+        /** The physician was modified. */
+        UPDATED,
+        /** The physician was removed. */
+        DELETED
+    }
+
+    /** Kind of change. */
+    private final Kind kind;
+
+    /** IDs of the physicians changed. */
+    private final List<Integer> physicianIds;
+
+    /** The physicians as written, in the order of their IDs; empty when deleted. */
+    private final List<PhysicianPojo> physicians;
+
+    /**
+     * Creates an event.
+     *
+     * @param kind the kind of change.
+     * @param physicianIds the IDs of the physicians changed.
+     * @param physicians the physicians as written, empty when deleted.
+     */
+    protected PhysicianChangeEvent(Kind kind, List<Integer> physicianIds, List<PhysicianPojo> physicians) {
+        this.kind = kind;
+        this.physicianIds = physicianIds;
+        this.physicians = physicians;
+    }
+
+    /**
+     * Creates the event of a created physician.
+     *
+     * @param physician the physician inserted.
+     * @return the event.
+     */
+    public static PhysicianChangeEvent created(PhysicianPojo physician) {
+        return created(List.of(physician));
+    }
+
+    /**
+     * Creates the event of physicians created together, e.g. by a bulk insert.
+     *
+     * @param physicians the physicians inserted.
+     * @return the event.
+     */
+    public static PhysicianChangeEvent created(List<PhysicianPojo> physicians) {
+        return written(Kind.CREATED, physicians);
+    }
+
+    /**
+     * Creates the event of an updated physician.
+     *
+     * @param physician the physician as merged.
+     * @return the event.
+     */
+    public static PhysicianChangeEvent updated(PhysicianPojo physician) {
+        return written(Kind.UPDATED, List.of(physician));
+    }
+
+    /**
+     * Creates the event of a deleted physician.
+     *
+     * @param physicianId the ID of the physician removed.
+     * @return the event.
+     */
+    public static PhysicianChangeEvent deleted(int physicianId) {
+        return deleted(List.of(physicianId));
+    }
+
+    /**
+     * Creates the event of physicians deleted together.
+     *
+     * @param physicianIds the IDs of the physicians removed.
+     * @return the event.
+     */
+    public static PhysicianChangeEvent deleted(Collection<Integer> physicianIds) {
+        return new PhysicianChangeEvent(Kind.DELETED, List.copyOf(physicianIds), List.of());
+    }
+
+    /**
+     * Creates the event of physicians written.
+     *
+     * @param kind the kind of change.
+     * @param physicians the physicians as written.
+     * @return the event.
+     */
+    private static PhysicianChangeEvent written(Kind kind, List<PhysicianPojo> physicians) {
+        List<Integer> physicianIds = new ArrayList<>(physicians.size());
+        for (PhysicianPojo physician : physicians) {
+            physicianIds.add(physician.getId());
+        }
+        return new PhysicianChangeEvent(kind, Collections.unmodifiableList(physicianIds), List.copyOf(physicians));
+    }
+
+    /**
+     * Gets the kind of change.
+     *
+     * @return the kind.
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Gets the IDs of the physicians changed.
+     *
+     * @return the physician IDs.
+     */
+    public List<Integer> getPhysicianIds() {
+        return physicianIds;
+    }
+
+    /**
+     * Gets the physicians as written.
+     *
+     * @return the physicians, in the order of {@link #getPhysicianIds()}; empty when deleted.
+     */
+    public List<PhysicianPojo> getPhysicians() {
+        return physicians;
+    }
+
+    @Override
+    public String toString() {
+        return "PhysicianChangeEvent [kind = " + kind + ", physicianIds = "
+            + (physicianIds.size() <= 10 ? physicianIds : physicianIds.size() + " physicians") + "]";
+    }
+}
@@ -0,0 +1,410 @@
+package databank.service;
+
+import java.io.Serializable;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import databank.model.PhysicianPojo;
+import jakarta.annotation.Priority;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+
+/**
+ * In-memory index of the last and first names of the physicians, for type-ahead.
+ * <p>
+ * Each distinct name is held once, as a packed key {@code normalized \0 name} in a sorted
+ * array, so the names starting with some text are a range of the array found by binary
+ * search. Names containing the text are found through the trigrams of the names: a sorted
+ * array of the trigrams, each packed into a long, and for each an int array of the names
+ * holding it. Names are normalized to lower case without accents. Nothing is held per
+ * physician, so the index grows with the number of distinct names rather than physicians.
+ * Lookups never touch the database and take microseconds.
+ * </p>
+ * <p>
+ * The index is built from the shared {@link PhysicianSnapshots snapshot} on first use and
+ * kept current by the same {@link PhysicianChangeEvent}s, observed after the snapshot's
+ * observer. The names a change replaces are read from the snapshot the index last applied,
+ * and each name counts its physicians, so the arrays are rebuilt only when a change adds a
+ * name or removes its last physician. Lookups do not lock; changes are applied one at a time.
+ * </p>
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 11/10/2024
+ */
+@ApplicationScoped
+public class PhysicianNameIndex implements Serializable {
+    /** Explicitly set serialVersionUID */
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    /** Separates the parts of a packed key, sorts before any character of a name. */
+    private static final char SEPARATOR = '\u0000';
+
+    /** Length of the n-grams indexed for names containing the text looked up. */
+    private static final int GRAM_LENGTH = 3;
+
+    /** Marks left by removing the accents of a decomposed name. */
+    private static final Pattern ACCENTS = Pattern.compile("\\p{M}+");
+
+    /** Snapshot the index is built from. */
+    @Inject
+    protected PhysicianSnapshots physicianSnapshots;
+
+    /** Index of the last names, null until first needed. */
+    protected transient volatile NameKeys lastNames;
+
+    /** Index of the first names, null until first needed. */
+    protected transient volatile NameKeys firstNames;
+
+    /** Snapshot holding the names indexed, diffed against newer ones to find the names changed. */
+    protected transient volatile PhysicianSnapshot indexed;
+
+    /**
+     * Suggests last names starting with, then containing, some text.
+     *
+     * @param text the text typed.
+     * @param limit the maximum number of names.
+     * @return distinct last names, those starting with the text first.
+     */
+    public List<String> suggestLastNames(String text, int limit)
+    {
+        sync(physicianSnapshots.current());
+        return lastNames.suggest(text, limit);
+    }
+
+    /**
+     * Suggests first names starting with, then containing, some text.
+     *
+     * @param text the text typed.
+     * @param limit the maximum number of names.
+     * @return distinct first names, those starting with the text first.
+     */
+    public List<String> suggestFirstNames(String text, int limit)
+    {
+        sync(physicianSnapshots.current());
+        return firstNames.suggest(text, limit);
+    }
+
+    /**
+     * Brings the index up to a snapshot, unless it already holds that one or a newer one. The
+     * names changed are found by diffing the snapshot against the one last indexed, so the
+     * cost follows the changes in between: one event's physicians, the changes a refresh read,
+     * or, across a reload, every physician. The first call indexes every physician.
+     *
+     * @param snapshot the snapshot.
+     */
+    protected void sync(PhysicianSnapshot snapshot)
+    {
+        PhysicianSnapshot old = indexed;
+        if (old != null && old.getVersion() >= snapshot.getVersion()) {
+            return;
+        }
+        synchronized (this) {
+            old = indexed;
+            if (old != null && old.getVersion() >= snapshot.getVersion()) {
+                return;
+            }
+            NameKeys last = lastNames == null ? new NameKeys(PhysicianPojo::getLastName) : lastNames;
+            NameKeys first = firstNames == null ? new NameKeys(PhysicianPojo::getFirstName) : firstNames;
+            // the names the snapshot replaced, and those it now holds
+            List<PhysicianPojo> removed = new ArrayList<>();
+            List<PhysicianPojo> added = new ArrayList<>();
+            snapshot.diff(old == null ? PhysicianSnapshot.of(List.of(), 0) : old, (before, after) -> {
+                if (before != null) {
+                    removed.add(before);
+                }
+                if (after != null) {
+                    added.add(after);
+                }
+            });
+            last.apply(removed, added);
+            first.apply(removed, added);
+            LOG.debug("indexed the names of {} physicians, replacing {}", added.size(), removed.size());
+            lastNames = last;
+            firstNames = first;
+            indexed = snapshot;
+        }
+    }
+
+    /**
+     * Applies a committed change to the index. Nothing is done until the index is built,
+     * since building it reads the change from the snapshot, which observes it first. The
+     * snapshot is diffed against the one last indexed rather than trusted to differ by this
+     * change only, since it may since have been refreshed or reloaded; if it was dropped,
+     * the index waits for the next suggestion to load it.
+     *
+     * @param event the change.
+     */
+    public void onPhysicianChange(@Observes(during = TransactionPhase.AFTER_SUCCESS)
+        @Priority(PhysicianSnapshots.OBSERVER_PRIORITY + 100) PhysicianChangeEvent event)
+    {
+        if (indexed == null) {
+            return;
+        }
+        PhysicianSnapshot snapshot = physicianSnapshots.loaded();
+        if (snapshot != null) {
+            sync(snapshot);
+        }
+    }
+
+    /**
+     * Normalizes a name for lookups: trimmed, lower case and without accents.
+     *
+     * @param name the name.
+     * @return the normalized name.
+     */
+    static String normalize(String name)
+    {
+        String decomposed = Normalizer.normalize(name.trim(), Normalizer.Form.NFD);
+        return ACCENTS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Packs a name into its key, {@code normalized \0 name}.
+     *
+     * @param name the name.
+     * @return the key.
+     */
+    static String key(String name)
+    {
+        return normalize(name) + SEPARATOR + name;
+    }
+
+    /**
+     * Packs the trigram of a text starting at an index into a long, 16 bits a character.
+     *
+     * @param text the text.
+     * @param start the index of the trigram.
+     * @return the packed trigram.
+     */
+    static long gram(String text, int start)
+    {
+        return (long) text.charAt(start) << 32 | (long) text.charAt(start + 1) << 16 | text.charAt(start + 2);
+    }
+
+    /**
+     * The index of one name of the physicians.
+     */
+    static final class NameKeys {
+
+        /** Reads the name indexed. */
+        private final Function<PhysicianPojo, String> getter;
+
+        /** The lookup arrays, replaced as a whole when names are added or removed. */
+        private volatile Names names = new Names(new String[0], new int[0]);
+
+        NameKeys(Function<PhysicianPojo, String> getter) {
+            this.getter = getter;
+        }
+
+        /**
+         * Applies a change: counts the physicians of the names removed and added, and
+         * rebuilds the arrays if a name appears or loses its last physician.
+         *
+         * @param removed the physicians whose names are removed.
+         * @param added the physicians whose names are added.
+         */
+        void apply(List<PhysicianPojo> removed, List<PhysicianPojo> added) {
+            // net change of each name, so a name is normalized once however many physicians have it
+            Map<String, int[]> deltas = new HashMap<>();
+            for (PhysicianPojo physician : removed) {
+                count(deltas, getter.apply(physician), -1);
+            }
+            for (PhysicianPojo physician : added) {
+                count(deltas, getter.apply(physician), 1);
+            }
+            Names current = names;
+            boolean rebuild = false;
+            Map<String, Integer> newKeys = new HashMap<>();
+            for (Map.Entry<String, int[]> delta : deltas.entrySet()) {
+                int change = delta.getValue()[0];
+                if (change == 0) {
+                    continue;
+                }
+                String key = key(delta.getKey());
+                int i = Arrays.binarySearch(current.keys, key);
+                if (i >= 0) {
+                    current.counts[i] += change;
+                    rebuild |= current.counts[i] <= 0;
+                } else if (change > 0) {
+                    newKeys.merge(key, change, Integer::sum);
+                    rebuild = true;
+                }
+            }
+            if (!rebuild) {
+                return;
+            }
+            Map<String, Integer> merged = new TreeMap<>(newKeys);
+            for (int i = 0; i < current.keys.length; i++) {
+                if (current.counts[i] > 0) {
+                    merged.put(current.keys[i], current.counts[i]);
+                }
+            }
+            String[] keys = new String[merged.size()];
+            int[] counts = new int[merged.size()];
+            int i = 0;
+            for (Map.Entry<String, Integer> key : merged.entrySet()) {
+                keys[i] = key.getKey();
+                counts[i++] = key.getValue();
+            }
+            names = new Names(keys, counts);
+        }
+
+        /**
+         * Adds to the net change of a name.
+         *
+         * @param deltas the net change of each name.
+         * @param name the name, ignored if blank.
+         * @param change the change.
+         */
+        private static void count(Map<String, int[]> deltas, String name, int change) {
+            if (name != null && !name.isBlank()) {
+                deltas.computeIfAbsent(name, n -> new int[1])[0] += change;
+            }
+        }
+
+        /**
+         * Suggests names starting with, then containing, some text.
+         *
+         * @param text the text typed.
+         * @param limit the maximum number of names.
+         * @return distinct names.
+         */
+        List<String> suggest(String text, int limit) {
+            if (text == null || limit < 1) {
+                return List.of();
+            }
+            String prefix = normalize(text);
+            if (prefix.isEmpty()) {
+                return List.of();
+            }
+            Names current = names;
+            String[] keys = current.keys;
+            Set<String> found = new LinkedHashSet<>();
+            int i = Arrays.binarySearch(keys, prefix);
+            for (i = i >= 0 ? i : -i - 1; i < keys.length && keys[i].startsWith(prefix) && found.size() < limit; i++) {
+                found.add(name(keys[i]));
+            }
+            if (found.size() < limit && prefix.length() >= GRAM_LENGTH) {
+                for (int key : current.candidates(prefix)) {
+                    // the normalized part comes first, so a first match past it is in the name only
+                    int at = keys[key].indexOf(prefix);
+                    if (at >= 0 && at + prefix.length() <= keys[key].indexOf(SEPARATOR)) {
+                        found.add(name(keys[key]));
+                        if (found.size() >= limit) {
+                            break;
+                        }
+                    }
+                }
+            }
+            return new ArrayList<>(found);
+        }
+
+        /**
+         * Gets the name of a packed key.
+         *
+         * @param key the key.
+         * @return the name as written.
+         */
+        private static String name(String key) {
+            return key.substring(key.indexOf(SEPARATOR) + 1);
+        }
+    }
+
+    /**
+     * The lookup arrays of one name: the sorted keys of the distinct names and the trigram
+     * postings, immutable once published but for the counts, which only the writer reads.
+     */
+    static final class Names {
+
+        /** Packed keys {@code normalized \0 name} of the distinct names, sorted. */
+        final String[] keys;
+
+        /** Number of physicians with each name. */
+        final int[] counts;
+
+        /** Distinct trigrams of the normalized names, packed and sorted. */
+        final long[] grams;
+
+        /** Start of the postings of each trigram in {@link #postings}, and their end last. */
+        final int[] gramStarts;
+
+        /** Indexes in {@link #keys} of the names holding each trigram, ascending per trigram. */
+        final int[] postings;
+
+        Names(String[] keys, int[] counts) {
+            this.keys = keys;
+            this.counts = counts;
+            long[][] keyGrams = new long[keys.length][];
+            int pairCount = 0;
+            for (int k = 0; k < keys.length; k++) {
+                String normalized = keys[k].substring(0, keys[k].indexOf(SEPARATOR));
+                long[] packed = new long[Math.max(0, normalized.length() - GRAM_LENGTH + 1)];
+                for (int i = 0; i < packed.length; i++) {
+                    packed[i] = gram(normalized, i);
+                }
+                keyGrams[k] = Arrays.stream(packed).distinct().toArray();
+                pairCount += keyGrams[k].length;
+            }
+            long[] all = new long[pairCount];
+            int p = 0;
+            for (long[] packed : keyGrams) {
+                System.arraycopy(packed, 0, all, p, packed.length);
+                p += packed.length;
+            }
+            grams = Arrays.stream(all).sorted().distinct().toArray();
+            // count the names of each trigram, then fill the postings in key order
+            gramStarts = new int[grams.length + 1];
+            for (long[] packed : keyGrams) {
+                for (long gram : packed) {
+                    gramStarts[Arrays.binarySearch(grams, gram) + 1]++;
+                }
+            }
+            for (int g = 0; g < grams.length; g++) {
+                gramStarts[g + 1] += gramStarts[g];
+            }
+            int[] next = Arrays.copyOf(gramStarts, grams.length);
+            postings = new int[pairCount];
+            for (int k = 0; k < keys.length; k++) {
+                for (long gram : keyGrams[k]) {
+                    postings[next[Arrays.binarySearch(grams, gram)]++] = k;
+                }
+            }
+        }
+
+        /**
+         * Gets the names that may contain some text: those with the rarest of its trigrams.
+         *
+         * @param text the normalized text, at least a trigram long.
+         * @return the indexes of the candidates in {@link #keys}, ascending.
+         */
+        int[] candidates(String text) {
+            int rarest = -1;
+            for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+                int g = Arrays.binarySearch(grams, gram(text, i));
+                if (g < 0) {
+                    return new int[0];
+                }
+                if (rarest < 0 || gramStarts[g + 1] - gramStarts[g] < gramStarts[rarest + 1] - gramStarts[rarest]) {
+                    rarest = g;
+                }
+            }
+            return Arrays.copyOfRange(postings, gramStarts[rarest], gramStarts[rarest + 1]);
+        }
+    }
+}
@@ -1,37 +1,94 @@
 package databank.service;
 
 import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import databank.dao.PhysicianDao;
+import databank.dao.PhysicianFilter;
+import databank.dao.PhysicianSort;
+import databank.dao.PhysicianSortColumn;
+import databank.metrics.Timed;
+import databank.model.PhysicianChange;
 import databank.model.PhysicianPojo;
+import databank.model.PhysicianTombstone;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
 import jakarta.ejb.Singleton;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
 import jakarta.inject.Named;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
 import jakarta.transaction.Transactional;
 
 /**
  * Service class implementing the PhysicianDao interface to provide 
  * CRUD operations for the Physician database.
+ * <p>
+ * Concurrency is bean-managed: a container-managed singleton defaults to a WRITE
+ * lock on every method, which would funnel every read of every session through one
+ * lock. The service keeps no state of its own; the injected EntityManager is a
+ * container proxy bound to each caller's transaction, so reads run in parallel and
+ * concurrent writes are isolated by the database and the {@code @Version} check.
+ * </p>
+ * <p>
+ * Every create, update and delete fires a {@link PhysicianChangeEvent}, one per call even
+ * for bulk creates and deletes, which is how the shared {@link PhysicianSnapshots} is kept
+ * current without reading the table again.
+ * </p>
  * 
  * @author Robin Phillis
  * @version 1.0
  * @since 11/10/2024
  */
+@Timed
 @Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
 public class PhysicianService implements Serializable {
     /** Explicitly set serialVersionUID */
     private static final long serialVersionUID = 1L;
 
     private static final Logger LOG = LogManager.getLogger();
 
+    /** Escape character of the LIKE patterns built from filters. */
+    private static final char LIKE_ESCAPE = '\\';
+
+    /** Hint setting the JDBC fetch size of a query. */
+    private static final String HINT_FETCH_SIZE = "org.hibernate.fetchSize";
+
+    /**
+     * Fetch size of exports and full listings. For this value Connector/J streams the rows of a query as
+     * they arrive rather than reading the whole result into memory first, without the server-side cursor
+     * (and server-side prepared statements) that useCursorFetch would switch on for the whole pool. The
+     * connection can run nothing else until the stream is closed.
+     */
+    protected static final int STREAMING_FETCH_SIZE = Integer.MIN_VALUE;
+
+    /** Physicians persisted per flush by bulk creates, the hibernate.jdbc.batch_size of persistence.xml. */
+    protected static final int BATCH_SIZE = 50;
+
     @PersistenceContext
     protected EntityManager entityManager;
 
+    /** Fired on every change to a physician. */
+    @Inject
+    protected Event<PhysicianChangeEvent> physicianChanged;
+
     /**
      * Retrieves all physicians from the database.
      *
@@ -52,6 +109,261 @@ public class PhysicianService implements Serializable {
         }
     }
 
+    /**
+     * Lists all physicians for display, as unmanaged {@link PhysicianPojo#LIST_ITEM list items}
+     * holding only the columns shown: nothing is added to the persistence context, so there
+     * is no dirty-checking copy to keep and nothing to flush. Read a physician by ID for
+     * every column. Like an export, the rows are {@link #STREAMING_FETCH_SIZE streamed} to a
+     * consumer rather than collected into a result list.
+     *
+     * @param consumer receives each physician.
+     * @return the number of physicians listed.
+     */
+    
+    public long listPhysicians(Consumer<PhysicianPojo> consumer) 
+    {
+        long count = 0;
+        try (Stream<PhysicianPojo> physicians = entityManager
+            .createNamedQuery(PhysicianPojo.PHYSICIAN_LIST_ALL, PhysicianPojo.class)
+            .setHint(HINT_FETCH_SIZE, STREAMING_FETCH_SIZE)
+            .getResultStream()) {
+            for (PhysicianPojo physician : (Iterable<PhysicianPojo>) physicians::iterator) {
+                consumer.accept(physician);
+                count++;
+            }
+        }
+        LOG.debug("listed {} physicians", count);
+        return count;
+    }
+
+    /**
+     * Streams every physician, in ID order, to a consumer as the rows arrive from the
+     * database, see {@link #STREAMING_FETCH_SIZE}. The physicians are unmanaged
+     * {@link PhysicianPojo#EXPORT_ITEM export items}, so neither the persistence context nor
+     * a result list grows with the table; the consumer should not keep them either. Runs in
+     * one read transaction, for a consistent export.
+     *
+     * @param consumer receives each physician.
+     * @return the number of physicians exported.
+     */
+    
+    public long exportPhysicians(Consumer<PhysicianPojo> consumer) 
+    {
+        LOG.debug("exporting all physicians");
+        long count = 0;
+        try (Stream<PhysicianPojo> physicians = entityManager
+            .createNamedQuery(PhysicianPojo.PHYSICIAN_EXPORT_ALL, PhysicianPojo.class)
+            .setHint(HINT_FETCH_SIZE, STREAMING_FETCH_SIZE)
+            .getResultStream()) {
+            for (PhysicianPojo physician : (Iterable<PhysicianPojo>) physicians::iterator) {
+                consumer.accept(physician);
+                count++;
+            }
+        }
+        LOG.debug("exported {} physicians", count);
+        return count;
+    }
+
+    /**
+     * Reads the changes to the physicians since a point of the change feed, in the order
+     * they were made: the physicians written (created or updated) and the tombstones of
+     * those deleted. Both are read by keyset on (time, ID) from the indexes on
+     * physician.updated and physician_tombstone.deleted, so a caller keeping a copy only
+     * reads what changed rather than every physician.
+     * <p>
+     * A feed starts with a full read, e.g. {@link #exportPhysicians}, and then follows the
+     * changes from a time before it. Each read continues from the time and the ID of the
+     * last change of the previous one. A transaction committing after a read may have
+     * written its change slightly earlier, so a caller should continue from a little before
+     * its last change and ignore the versions it already has.
+     * </p>
+     *
+     * @param since the time of the last change read; changes at that time are read from {@code afterId}.
+     * @param afterId the physician ID of the last change read at {@code since}, 0 to read them all.
+     * @param limit the maximum number of changes to read.
+     * @return at most {@code limit} changes, ordered by time then physician ID.
+     */
+    
+    public List<PhysicianChange> readPhysiciansChangedSince(LocalDateTime since, int afterId, int limit) 
+    {
+        LOG.debug("read at most {} physician changes since = {}, after = {}", limit, since, afterId);
+        List<PhysicianPojo> written = entityManager
+            .createNamedQuery(PhysicianPojo.PHYSICIAN_FIND_CHANGED_SINCE, PhysicianPojo.class)
+            .setParameter(PhysicianTombstone.PARAM_SINCE, since)
+            .setParameter(PhysicianPojo.PARAM_AFTER_ID, afterId)
+            .setMaxResults(limit)
+            .getResultList();
+        List<PhysicianTombstone> deleted = entityManager
+            .createNamedQuery(PhysicianTombstone.TOMBSTONE_FIND_SINCE, PhysicianTombstone.class)
+            .setParameter(PhysicianTombstone.PARAM_SINCE, since)
+            .setParameter(PhysicianPojo.PARAM_AFTER_ID, afterId)
+            .setMaxResults(limit)
+            .getResultList();
+
+        // merge the two ordered lists, up to the limit
+        List<PhysicianChange> changes = new ArrayList<>(Math.min(limit, written.size() + deleted.size()));
+        int w = 0;
+        int d = 0;
+        while (changes.size() < limit && (w < written.size() || d < deleted.size())) {
+            boolean takeWritten = d == deleted.size() || w < written.size()
+                && compareChange(written.get(w).getUpdated(), written.get(w).getId(),
+                    deleted.get(d).getDeleted(), deleted.get(d).getId()) <= 0;
+            if (takeWritten) {
+                changes.add(PhysicianChange.written(written.get(w++)));
+            } else {
+                PhysicianTombstone tombstone = deleted.get(d++);
+                changes.add(PhysicianChange.deleted(tombstone.getId(), tombstone.getDeleted()));
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Compares two changes in feed order, by time then physician ID.
+     *
+     * @param time1 the time of the first change.
+     * @param id1 the physician ID of the first change.
+     * @param time2 the time of the second change.
+     * @param id2 the physician ID of the second change.
+     * @return negative, zero or positive as the first change comes before, with or after the second.
+     */
+    private static int compareChange(LocalDateTime time1, int id1, LocalDateTime time2, int id2) 
+    {
+        int byTime = time1.compareTo(time2);
+        return byTime != 0 ? byTime : Integer.compare(id1, id2);
+    }
+
+    /**
+     * Retrieves one page of physicians using keyset pagination: the page starts after the
+     * physician with the given ID rather than at an offset, so reading a page costs the
+     * same however deep into the table it is. The physicians are unmanaged list items.
+     *
+     * @param afterId the ID of the last physician of the previous page, or null for the first page.
+     * @param limit the maximum number of physicians to read.
+     * @param sort the order of the physicians.
+     * @return at most {@code limit} physicians following {@code afterId} in {@code sort} order.
+     */
+    
+    public List<PhysicianPojo> readPhysicians(Integer afterId, int limit, PhysicianSort sort) 
+    {
+        LOG.debug("read a page of {} physicians after = {}, sort = {}", limit, afterId, sort);
+        TypedQuery<PhysicianPojo> pageQuery = entityManager.createNamedQuery(sort.getQueryName(), PhysicianPojo.class);
+        pageQuery.setParameter(PhysicianPojo.PARAM_AFTER_ID, afterId == null ? sort.getFirstKey() : afterId);
+        pageQuery.setMaxResults(limit);
+        return pageQuery.getResultList();
+    }
+
+    /**
+     * Retrieves one page of the physicians matching a filter, in the order of a column,
+     * using keyset pagination on (column, ID). The query is built with the Criteria API so
+     * that only the criteria set become predicates; names are matched by prefix, which keeps
+     * every predicate an index range. Matching is case-insensitive through the column
+     * collation rather than LOWER(), which would defeat the indexes. Like the pages of
+     * {@link #readPhysicians}, only the columns of a {@link PhysicianPojo#LIST_ITEM list item}
+     * are selected, into unmanaged physicians.
+     *
+     * @param filter the criteria the physicians must match.
+     * @param orderBy the column to sort by.
+     * @param ascending true for ascending order, false for descending.
+     * @param after the last physician of the previous page, or null for the first page.
+     * @param limit the maximum number of physicians to read.
+     * @return at most {@code limit} matching physicians following {@code after}.
+     */
+    
+    public List<PhysicianPojo> searchPhysicians(PhysicianFilter filter, PhysicianSortColumn orderBy, boolean ascending,
+        PhysicianPojo after, int limit) 
+    {
+        LOG.debug("search a page of {} physicians, {}, orderBy = {} {}, after = {}", limit, filter, orderBy,
+            ascending ? "ASC" : "DESC", after == null ? null : after.getId());
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<PhysicianPojo> query = builder.createQuery(PhysicianPojo.class);
+        Root<PhysicianPojo> physician = query.from(PhysicianPojo.class);
+
+        List<Predicate> where = new ArrayList<>();
+        if (!PhysicianFilter.isBlank(filter.getLastName())) {
+            where.add(builder.like(physician.get("lastName"), prefixPattern(filter.getLastName()), LIKE_ESCAPE));
+        }
+        if (!PhysicianFilter.isBlank(filter.getFirstName())) {
+            where.add(builder.like(physician.get("firstName"), prefixPattern(filter.getFirstName()), LIKE_ESCAPE));
+        }
+        if (!PhysicianFilter.isBlank(filter.getSpecialty())) {
+            where.add(builder.equal(physician.get("specialty"), filter.getSpecialty().trim()));
+        }
+        if (filter.getCreatedFrom() != null) {
+            where.add(builder.greaterThanOrEqualTo(physician.<LocalDateTime>get("created"), filter.getCreatedFrom().atStartOfDay()));
+        }
+        if (filter.getCreatedTo() != null) {
+            where.add(builder.lessThan(physician.<LocalDateTime>get("created"), filter.getCreatedTo().plusDays(1).atStartOfDay()));
+        }
+        if (after != null) {
+            where.add(after(builder, physician, orderBy, ascending, after));
+        }
+        query.select(builder.construct(PhysicianPojo.class, physician.get("id"), physician.get("lastName"),
+            physician.get("firstName"), physician.get("email"), physician.get("phoneNumber"), physician.get("specialty"),
+            physician.get("created"), physician.get("version")))
+            .where(where.toArray(new Predicate[0]));
+
+        Path<Integer> id = physician.get("id");
+        if (orderBy == PhysicianSortColumn.ID) {
+            query.orderBy(ascending ? builder.asc(id) : builder.desc(id));
+        } else {
+            Path<Object> key = physician.get(orderBy.getAttribute());
+            query.orderBy(ascending ? builder.asc(key) : builder.desc(key), ascending ? builder.asc(id) : builder.desc(id));
+        }
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+    /**
+     * Builds the keyset predicate of the rows following a physician in (column, ID) order.
+     * MySQL sorts NULLs first in ascending order and last in descending order, so a null
+     * column value is handled on its own.
+     *
+     * @param builder the criteria builder.
+     * @param physician the root of the query.
+     * @param orderBy the column sorted by.
+     * @param ascending true for ascending order.
+     * @param after the last physician of the previous page.
+     * @return the predicate.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Predicate after(CriteriaBuilder builder, Root<PhysicianPojo> physician, PhysicianSortColumn orderBy,
+        boolean ascending, PhysicianPojo after) 
+    {
+        Path<Integer> id = physician.get("id");
+        Predicate afterId = ascending ? builder.greaterThan(id, after.getId()) : builder.lessThan(id, after.getId());
+        if (orderBy == PhysicianSortColumn.ID) {
+            return afterId;
+        }
+        Path<Comparable> key = physician.get(orderBy.getAttribute());
+        Comparable value = orderBy.valueOf(after);
+        if (value == null) {
+            Predicate sameKey = builder.and(builder.isNull(key), afterId);
+            return ascending ? builder.or(sameKey, builder.isNotNull(key)) : sameKey;
+        }
+        Predicate sameKey = builder.and(builder.equal(key, value), afterId);
+        if (ascending) {
+            // the redundant key >= value gives the optimizer an index range to scan
+            return builder.and(builder.greaterThanOrEqualTo(key, value), builder.or(builder.greaterThan(key, value), sameKey));
+        }
+        return builder.or(builder.and(builder.lessThanOrEqualTo(key, value), builder.or(builder.lessThan(key, value), sameKey)),
+            builder.isNull(key));
+    }
+
+    /**
+     * Builds the LIKE pattern matching values starting with a prefix.
+     *
+     * @param prefix the prefix, taken literally.
+     * @return the pattern.
+     */
+    private static String prefixPattern(String prefix) 
+    {
+        String escape = String.valueOf(LIKE_ESCAPE);
+        return prefix.trim()
+            .replace(escape, escape + escape)
+            .replace("%", escape + "%")
+            .replace("_", escape + "_") + "%";
+    }
+
     /**
      * Retrieves a specific physician by their ID.
      *
@@ -77,25 +389,78 @@ public class PhysicianService implements Serializable {
     {
         LOG.debug("creating a physician = {}", physician);
         entityManager.persist(physician);
+        physicianChanged.fire(PhysicianChangeEvent.created(physician));
         return physician;
     }
 
     /**
-     * Updates an existing physician record in the database.
+     * Creates physician records in batches. IDs are reserved from the table generator
+     * without touching the physician table, so Hibernate sends the INSERTs as JDBC batches
+     * of {@code hibernate.jdbc.batch_size}; the persistence context is flushed and cleared
+     * after each batch to keep it small.
+     *
+     * @param physicians the PhysicianPojo objects to be created.
+     * @return the created PhysicianPojo objects.
+     */
+    
+    @Transactional
+    public List<PhysicianPojo> createPhysicians(List<PhysicianPojo> physicians) 
+    {
+        LOG.debug("creating {} physicians", physicians.size());
+        for (int i = 0; i < physicians.size(); i++) {
+            entityManager.persist(physicians.get(i));
+            if ((i + 1) % BATCH_SIZE == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        // one event for the whole insert, so observers apply it at once rather than per row
+        physicianChanged.fire(PhysicianChangeEvent.created(physicians));
+        return physicians;
+    }
+
+    /**
+     * Updates an existing physician record in the database with a single versioned UPDATE:
+     * the row is changed only if it still has the version the physician was read with, so
+     * there is no read before the write and a concurrent change is detected by the database.
      *
      * @param physicianWithUpdates the PhysicianPojo object containing the updated data.
-     * @return the updated PhysicianPojo object.
+     * @return the updated PhysicianPojo object, or null if the physician was changed or
+     *         deleted since it was read.
      */
     
     @Transactional
     public PhysicianPojo updatePhysician(PhysicianPojo physicianWithUpdates) 
     {
         LOG.debug("updating a specific physician = {}", physicianWithUpdates);
-        return entityManager.merge(physicianWithUpdates);
+        LocalDateTime now = LocalDateTime.now();
+        int updatedRows = entityManager.createNamedQuery(PhysicianPojo.PHYSICIAN_UPDATE_VERSIONED)
+            .setParameter("lastName", physicianWithUpdates.getLastName())
+            .setParameter("firstName", physicianWithUpdates.getFirstName())
+            .setParameter("email", physicianWithUpdates.getEmail())
+            .setParameter("phoneNumber", physicianWithUpdates.getPhoneNumber())
+            .setParameter("specialty", physicianWithUpdates.getSpecialty())
+            .setParameter("updated", now)
+            .setParameter("id", physicianWithUpdates.getId())
+            .setParameter("version", physicianWithUpdates.getVersion())
+            .executeUpdate();
+        if (updatedRows == 0) {
+            LOG.debug("physician {} version {} was changed or deleted meanwhile",
+                physicianWithUpdates.getId(), physicianWithUpdates.getVersion());
+            return null;
+        }
+        PhysicianPojo updatedPhysician = new PhysicianPojo(physicianWithUpdates);
+        updatedPhysician.setUpdated(now);
+        updatedPhysician.setVersion(physicianWithUpdates.getVersion() + 1);
+        physicianChanged.fire(PhysicianChangeEvent.updated(updatedPhysician));
+        return updatedPhysician;
     }
 
     /**
-     * Deletes a physician record from the database by their ID.
+     * Deletes a physician record from the database by their ID, with a single DELETE. The
+     * table's trigger records its {@link PhysicianTombstone tombstone} for the change feed.
      *
      * @param physicianId the ID of the physician to be deleted.
      */
@@ -104,12 +469,56 @@ public class PhysicianService implements Serializable {
     public void deletePhysicianById(int physicianId) 
     {
         LOG.debug("deleting a specific physicianID = {}", physicianId);
-        PhysicianPojo physician = readPhysicianById(physicianId);
+        int deletedRows = entityManager.createNamedQuery(PhysicianPojo.PHYSICIAN_DELETE_ID)
+            .setParameter("id", physicianId)
+            .executeUpdate();
+        if (deletedRows > 0) {
+            physicianChanged.fire(PhysicianChangeEvent.deleted(physicianId));
+        }
+    }
+
+    /**
+     * Deletes physicians with a single DELETE in one transaction. Each physician is deleted
+     * only if it still has the version it was read with; if any of them was changed or
+     * deleted meanwhile, none is deleted. The versions are read with the rows locked, then
+     * compared here, so both statements are named queries with one IN list of IDs, padded
+     * by Hibernate to a few sizes, rather than a query built for each number of physicians.
+     * The table's trigger records the tombstones of those deleted for the change feed.
+     *
+     * @param physicians the physicians to be deleted, as read.
+     * @return the number of physicians deleted, 0 if any had changed and none was deleted.
+     */
     
-        if (physician != null) 
-        {
-        	entityManager.refresh(physician);
-        	entityManager.remove(physician);
-		}
+    @Transactional
+    public int deletePhysicians(Collection<PhysicianPojo> physicians) 
+    {
+        Map<Integer, Integer> versionsById = new LinkedHashMap<>();
+        for (PhysicianPojo physician : physicians) {
+            versionsById.put(physician.getId(), physician.getVersion());
+        }
+        LOG.debug("deleting physicians = {}", versionsById.keySet());
+        if (versionsById.isEmpty()) {
+            return 0;
+        }
+        List<Integer> ids = new ArrayList<>(versionsById.keySet());
+        // the rows stay locked until the transaction ends, so none can change before the DELETE
+        List<Object[]> current = entityManager.createNamedQuery(PhysicianPojo.PHYSICIAN_LOCK_VERSIONS, Object[].class)
+            .setParameter("ids", ids)
+            .getResultList();
+        int unchanged = 0;
+        for (Object[] idAndVersion : current) {
+            if (idAndVersion[1].equals(versionsById.get(idAndVersion[0]))) {
+                unchanged++;
+            }
+        }
+        if (unchanged != versionsById.size()) {
+            LOG.debug("only {} of {} physicians unchanged, deleting none", unchanged, versionsById.size());
+            return 0;
+        }
+        int deletedRows = entityManager.createNamedQuery(PhysicianPojo.PHYSICIAN_DELETE_IDS)
+            .setParameter("ids", ids)
+            .executeUpdate();
+        physicianChanged.fire(PhysicianChangeEvent.deleted(versionsById.keySet()));
+        return deletedRows;
     }
 }
@@ -0,0 +1,477 @@
+package databank.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import databank.dao.PhysicianSort;
+import databank.model.PhysicianPojo;
+
+/**
+ * Immutable, versioned copy of the physician list shared by every session.
+ * <p>
+ * The physicians are held in a persistent trie indexed by ID: each node has
+ * {@value #WIDTH} children, selected by {@value #BITS} bits of the ID, and the leaves are
+ * the physicians, so the trie is as deep as the largest ID needs (five levels for IDs up
+ * to 2^25). Finding a physician walks one path; a keyset page walks the trie in ID order
+ * from the page's first ID. A change never modifies a snapshot: it produces a new one with
+ * the next version that copies only the nodes on the path to the physician changed and
+ * shares every other node with the old one, so an edit costs a few small arrays whatever
+ * the number of physicians.
+ * </p>
+ * <p>
+ * The physicians in a snapshot are private copies and must be treated as read-only; edit
+ * a {@link PhysicianPojo#PhysicianPojo(PhysicianPojo) copy} instead. Physicians read from
+ * the database are list items, without their updated time.
+ * </p>
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 11/10/2024
+ */
+public final class PhysicianSnapshot {
+
+    /** Bits of the ID selecting the child of a node. */
+    private static final int BITS = 5;
+
+    /** Number of children of a node. */
+    private static final int WIDTH = 1 << BITS;
+
+    /** Mask of the bits selecting a child. */
+    private static final int MASK = WIDTH - 1;
+
+    /** Root of an empty trie, never modified. */
+    private static final Object[] EMPTY = new Object[WIDTH];
+
+    /** Version of this snapshot, incremented by every change. */
+    private final long version;
+
+    /** Root of the trie; its children are selected by the bits of the ID from {@link #shift}. */
+    private final Object[] root;
+
+    /** Shift of the root's bits in the ID, 0 when the root's children are physicians. */
+    private final int shift;
+
+    /** Number of physicians. */
+    private final int size;
+
+    private PhysicianSnapshot(long version, Object[] root, int shift, int size) {
+        this.version = version;
+        this.root = root;
+        this.shift = shift;
+        this.size = size;
+    }
+
+    /**
+     * Creates a snapshot read from the database.
+     *
+     * @param physicians the physicians, in any order.
+     * @param version the version of the snapshot.
+     * @return a snapshot holding copies of the physicians.
+     */
+    public static PhysicianSnapshot of(Collection<PhysicianPojo> physicians, long version) {
+        Builder builder = new Builder();
+        for (PhysicianPojo physician : physicians) {
+            builder.add(new PhysicianPojo(physician));
+        }
+        return builder.build(version);
+    }
+
+    /**
+     * Gets the version of this snapshot.
+     *
+     * @return the version.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the number of physicians.
+     *
+     * @return the size.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets every physician, read-only.
+     *
+     * @return the physicians, sorted by ID.
+     */
+    public List<PhysicianPojo> asList() {
+        List<PhysicianPojo> physicians = new ArrayList<>(size);
+        ascending(root, shift, 0, false, Integer.MAX_VALUE, physicians);
+        return Collections.unmodifiableList(physicians);
+    }
+
+    /**
+     * Finds a physician.
+     *
+     * @param physicianId the ID of the physician.
+     * @return the physician, or null if not found.
+     */
+    public PhysicianPojo find(int physicianId) {
+        return find(root, shift, physicianId);
+    }
+
+    /**
+     * Reads a keyset page, the same page {@link PhysicianService#readPhysicians} reads from the database.
+     *
+     * @param afterId the ID of the last physician of the previous page, or null for the first page.
+     * @param limit the maximum number of physicians to read.
+     * @param sort the order of the physicians.
+     * @return at most {@code limit} physicians following {@code afterId} in {@code sort} order.
+     */
+    public List<PhysicianPojo> readPhysicians(Integer afterId, int limit, PhysicianSort sort) {
+        int after = afterId == null ? sort.getFirstKey() : afterId;
+        List<PhysicianPojo> page = new ArrayList<>(Math.min(limit, size));
+        if (limit > 0) {
+            if (sort == PhysicianSort.ID_ASCENDING) {
+                int from = Math.max(0, after + 1);
+                if (after < Integer.MAX_VALUE && fits(from, shift)) {
+                    ascending(root, shift, from, true, limit, page);
+                }
+            } else if (after > 0) {
+                int to = after - 1;
+                descending(root, shift, to, fits(to, shift), limit, page);
+            }
+        }
+        return Collections.unmodifiableList(page);
+    }
+
+    /**
+     * Reports the physicians that differ from those of an older snapshot, e.g. one this
+     * snapshot was derived from. Nodes both snapshots share are skipped, so the cost follows
+     * the number of changes between them rather than the number of physicians; snapshots
+     * that share nothing, e.g. across a reload, are compared in full.
+     *
+     * @param older the older snapshot.
+     * @param changed receives each physician of the older snapshot and the one that replaced
+     *        it, in ID order; the first is null for a physician added, the second for one removed.
+     */
+    public void diff(PhysicianSnapshot older, BiConsumer<PhysicianPojo, PhysicianPojo> changed) {
+        int common = Math.max(shift, older.shift);
+        diff(raise(older.root, older.shift, common), raise(root, shift, common), common, changed);
+    }
+
+    /**
+     * Creates the next snapshot with a physician added, or replaced if it is already there.
+     * A replacement by an older version of the physician is ignored.
+     *
+     * @param physician the physician as written, copied into the snapshot.
+     * @return the next snapshot, or this one if nothing changed.
+     */
+    public PhysicianSnapshot with(PhysicianPojo physician) {
+        return withAll(List.of(physician));
+    }
+
+    /**
+     * Creates the next snapshot with physicians added, or replaced if they are already there,
+     * e.g. the physicians of a bulk create. Replacements by older versions are ignored. The
+     * changes are applied as one: a node on the paths of several physicians is copied once.
+     *
+     * @param physicians the physicians as written, copied into the snapshot.
+     * @return the next snapshot, or this one if nothing changed.
+     */
+    public PhysicianSnapshot withAll(Collection<PhysicianPojo> physicians) {
+        Set<Object[]> copied = Collections.newSetFromMap(new IdentityHashMap<>());
+        Object[] nextRoot = root;
+        int nextShift = shift;
+        int nextSize = size;
+        for (PhysicianPojo physician : physicians) {
+            int id = checkId(physician.getId());
+            PhysicianPojo old = find(nextRoot, nextShift, id);
+            if (old != null && old.getVersion() > physician.getVersion()) {
+                continue;
+            }
+            while (!fits(id, nextShift)) {
+                Object[] parent = new Object[WIDTH];
+                parent[0] = nextRoot;
+                nextRoot = parent;
+                nextShift += BITS;
+                copied.add(parent);
+            }
+            nextRoot = set(nextRoot, nextShift, id, new PhysicianPojo(physician), copied);
+            if (old == null) {
+                nextSize++;
+            }
+        }
+        return nextRoot == root ? this : new PhysicianSnapshot(version + 1, nextRoot, nextShift, nextSize);
+    }
+
+    /**
+     * Creates the next snapshot without a physician.
+     *
+     * @param physicianId the ID of the physician removed.
+     * @return the next snapshot, or this one if the physician is not there.
+     */
+    public PhysicianSnapshot without(int physicianId) {
+        return withoutAll(List.of(physicianId));
+    }
+
+    /**
+     * Creates the next snapshot without physicians, applying the removals as one.
+     *
+     * @param physicianIds the IDs of the physicians removed.
+     * @return the next snapshot, or this one if none of the physicians is there.
+     */
+    public PhysicianSnapshot withoutAll(Collection<Integer> physicianIds) {
+        Set<Object[]> copied = Collections.newSetFromMap(new IdentityHashMap<>());
+        Object[] nextRoot = root;
+        int nextSize = size;
+        for (int physicianId : physicianIds) {
+            if (find(nextRoot, shift, physicianId) != null) {
+                nextRoot = set(nextRoot, shift, physicianId, null, copied);
+                if (nextRoot == null) {
+                    nextRoot = new Object[WIDTH];
+                    copied.add(nextRoot);
+                }
+                nextSize--;
+            }
+        }
+        return nextRoot == root ? this : new PhysicianSnapshot(version + 1, nextRoot, shift, nextSize);
+    }
+
+    /**
+     * Builds a snapshot from physicians added one at a time, e.g. as they are streamed from
+     * the database, filling its nodes in place since none of them is shared yet.
+     */
+    public static final class Builder {
+
+        /** Root of the trie built. */
+        private Object[] root = EMPTY.clone();
+
+        /** Shift of the root's bits in the ID. */
+        private int shift;
+
+        /** Number of physicians added. */
+        private int size;
+
+        /**
+         * Adds a physician, replacing one with the same ID. The snapshot takes the physician
+         * over: it must not be modified afterwards.
+         *
+         * @param physician the physician.
+         * @return this builder.
+         */
+        public Builder add(PhysicianPojo physician) {
+            int id = checkId(physician.getId());
+            while (!fits(id, shift)) {
+                Object[] parent = new Object[WIDTH];
+                parent[0] = root;
+                root = parent;
+                shift += BITS;
+            }
+            Object[] node = root;
+            for (int level = shift; level > 0; level -= BITS) {
+                int i = (id >>> level) & MASK;
+                if (node[i] == null) {
+                    node[i] = new Object[WIDTH];
+                }
+                node = (Object[]) node[i];
+            }
+            if (node[id & MASK] == null) {
+                size++;
+            }
+            node[id & MASK] = physician;
+            return this;
+        }
+
+        /**
+         * Creates the snapshot; the builder must not be used afterwards.
+         *
+         * @param version the version of the snapshot.
+         * @return the snapshot.
+         */
+        public PhysicianSnapshot build(long version) {
+            return new PhysicianSnapshot(version, root, shift, size);
+        }
+    }
+
+    /**
+     * Finds a physician in a trie.
+     *
+     * @param root the root of the trie.
+     * @param shift the shift of the root's bits in the ID.
+     * @param physicianId the ID of the physician.
+     * @return the physician, or null if not found.
+     */
+    private static PhysicianPojo find(Object[] root, int shift, int physicianId) {
+        if (physicianId < 0 || !fits(physicianId, shift)) {
+            return null;
+        }
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(physicianId >>> level) & MASK];
+            if (node == null) {
+                return null;
+            }
+        }
+        return (PhysicianPojo) node[physicianId & MASK];
+    }
+
+    /**
+     * Reports the leaves that differ between two nodes at the same level.
+     *
+     * @param older the node of the older trie, null if it has none.
+     * @param newer the node of the newer trie, null if it has none.
+     * @param level the shift of the nodes' bits in the ID.
+     * @param changed receives each leaf of the older trie and the one that replaced it.
+     */
+    private static void diff(Object[] older, Object[] newer, int level, BiConsumer<PhysicianPojo, PhysicianPojo> changed) {
+        if (older == newer) {
+            return;
+        }
+        for (int i = 0; i < WIDTH; i++) {
+            Object before = older == null ? null : older[i];
+            Object after = newer == null ? null : newer[i];
+            if (before == after) {
+                continue;
+            }
+            if (level == 0) {
+                changed.accept((PhysicianPojo) before, (PhysicianPojo) after);
+            } else {
+                diff((Object[]) before, (Object[]) after, level - BITS, changed);
+            }
+        }
+    }
+
+    /**
+     * Puts a root under new roots until it has a shift, without modifying it.
+     *
+     * @param root the root.
+     * @param shift the shift of the root.
+     * @param to the shift wanted, at least the root's.
+     * @return a root with that shift holding the same physicians.
+     */
+    private static Object[] raise(Object[] root, int shift, int to) {
+        Object[] node = root;
+        for (int level = shift; level < to; level += BITS) {
+            Object[] parent = new Object[WIDTH];
+            parent[0] = node;
+            node = parent;
+        }
+        return node;
+    }
+
+    /**
+     * Replaces the leaf of an ID, copying the nodes on its path unless this change already
+     * copied them; the rest of the trie is shared.
+     *
+     * @param node the node, null if there is none yet.
+     * @param level the shift of the node's bits in the ID.
+     * @param id the ID.
+     * @param leaf the physician, or null to remove it.
+     * @param copied the nodes this change copied or created, which it may modify.
+     * @return the node to hold, null if it no longer holds any physician.
+     */
+    private static Object[] set(Object[] node, int level, int id, Object leaf, Set<Object[]> copied) {
+        Object[] copy = node;
+        if (copy == null || !copied.contains(copy)) {
+            copy = copy == null ? new Object[WIDTH] : copy.clone();
+            copied.add(copy);
+        }
+        int i = (id >>> level) & MASK;
+        copy[i] = level == 0 ? leaf : set((Object[]) copy[i], level - BITS, id, leaf, copied);
+        if (leaf == null && copy[i] == null) {
+            for (Object child : copy) {
+                if (child != null) {
+                    return copy;
+                }
+            }
+            return null;
+        }
+        return copy;
+    }
+
+    /**
+     * Adds the physicians of a node to a page in ascending ID order.
+     *
+     * @param node the node.
+     * @param level the shift of the node's bits in the ID.
+     * @param from the first ID of the page.
+     * @param bounded whether the node holds {@code from}, so its smaller IDs are skipped.
+     * @param limit the maximum size of the page.
+     * @param page the page.
+     * @return true once the page is full.
+     */
+    private static boolean ascending(Object[] node, int level, int from, boolean bounded, int limit,
+        List<PhysicianPojo> page) {
+        int first = bounded ? (from >>> level) & MASK : 0;
+        for (int i = first; i < WIDTH; i++) {
+            Object child = node[i];
+            if (child == null) {
+                continue;
+            }
+            if (level == 0) {
+                page.add((PhysicianPojo) child);
+            } else if (ascending((Object[]) child, level - BITS, from, bounded && i == first, limit, page)) {
+                return true;
+            }
+            if (page.size() >= limit) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds the physicians of a node to a page in descending ID order.
+     *
+     * @param node the node.
+     * @param level the shift of the node's bits in the ID.
+     * @param to the first ID of the page.
+     * @param bounded whether the node holds {@code to}, so its larger IDs are skipped.
+     * @param limit the maximum size of the page.
+     * @param page the page.
+     * @return true once the page is full.
+     */
+    private static boolean descending(Object[] node, int level, int to, boolean bounded, int limit,
+        List<PhysicianPojo> page) {
+        int first = bounded ? (to >>> level) & MASK : MASK;
+        for (int i = first; i >= 0; i--) {
+            Object child = node[i];
+            if (child == null) {
+                continue;
+            }
+            if (level == 0) {
+                page.add((PhysicianPojo) child);
+            } else if (descending((Object[]) child, level - BITS, to, bounded && i == first, limit, page)) {
+                return true;
+            }
+            if (page.size() >= limit) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if a trie whose root has a shift can hold an ID.
+     *
+     * @param id the ID, not negative.
+     * @param shift the shift of the root.
+     * @return true if the ID has no bits above the root's.
+     */
+    private static boolean fits(int id, int shift) {
+        return shift + BITS >= Integer.SIZE || id >>> (shift + BITS) == 0;
+    }
+
+    /**
+     * Checks that an ID can be held.
+     *
+     * @param id the ID.
+     * @return the ID.
+     */
+    private static int checkId(int id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("negative physician ID " + id);
+        }
+        return id;
+    }
+}
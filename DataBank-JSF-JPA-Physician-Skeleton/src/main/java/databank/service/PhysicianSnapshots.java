@@ -0,0 +1,297 @@
+package databank.service;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import databank.model.PhysicianChange;
+import databank.model.PhysicianPojo;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import jakarta.annotation.Priority;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import jakarta.interceptor.Interceptor;
+
+/**
+ * Holds the {@link PhysicianSnapshot} shared by every session of the application.
+ * <p>
+ * The snapshot is read from the database once, on first use, and then kept current by
+ * applying each committed {@link PhysicianChangeEvent} fired by {@link PhysicianService}.
+ * Readers never lock: they get whatever snapshot is current. Changes are applied one at a
+ * time and publish a new snapshot, so a session holding an older one keeps a consistent
+ * view until it asks for the current one again.
+ * </p>
+ * <p>
+ * Changes made behind the application's back, e.g. by the lab's loaders, fire no event,
+ * but the physician table's triggers keep them in the
+ * {@link PhysicianService#readPhysiciansChangedSince change feed}: at most every
+ * {@value #REFRESH_INTERVAL_SECONDS} seconds, the reader asking for the snapshot first
+ * reads the feed from a little before the last change it read and applies the versions
+ * the snapshot does not have yet. A refresh finding more than {@value #MAX_REFRESH_CHANGES} changes, e.g. a
+ * reload of the table, drops the snapshot instead, so it is read again in one pass.
+ * </p>
+ * <p>
+ * The snapshot holds one list item per physician, the columns the page shows, which is
+ * what lets every session page, find and type-ahead without a query. That read is paid
+ * once per application rather than per session or page view: the rows are streamed
+ * straight into the snapshot's trie, without a result list or a sort, and every change
+ * after that copies a handful of trie nodes rather than the list. Filtered and sorted
+ * pages are not served from the snapshot and stay bounded database reads.
+ * </p>
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 11/10/2024
+ */
+@ApplicationScoped
+public class PhysicianSnapshots implements Serializable {
+    /** Explicitly set serialVersionUID */
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    /** Priority of the snapshot's observer; observers deriving data from the snapshot come later. */
+    public static final int OBSERVER_PRIORITY = Interceptor.Priority.APPLICATION;
+
+    /** How often the change feed is read for changes made outside the application. */
+    public static final long REFRESH_INTERVAL_SECONDS = 5;
+
+    /** How far before its last change the feed is read again, for transactions committing late. */
+    protected static final Duration FEED_OVERLAP = Duration.ofSeconds(5);
+
+    /** Changes read from the feed per query. */
+    protected static final int FEED_PAGE_SIZE = 500;
+
+    /** Changes beyond which a refresh drops the snapshot rather than applying them. */
+    public static final int MAX_REFRESH_CHANGES = 10_000;
+
+    /** Service reading the physicians when the snapshot is first needed. */
+    @Inject
+    protected PhysicianService physicianService;
+
+    /** The current snapshot, null until first needed. */
+    protected volatile PhysicianSnapshot current;
+
+    /** Version of the last snapshot dropped, so versions keep increasing across reloads. */
+    protected long droppedVersion;
+
+    /** Time of the last change read from the feed, or of the start of the load. */
+    protected LocalDateTime feedSince;
+
+    /** When the change feed is next read, in {@link System#nanoTime()} time. */
+    protected volatile long nextRefreshNanos;
+
+    /** Set while a reader follows the change feed, so the others do not wait for it. */
+    protected final AtomicBoolean refreshing = new AtomicBoolean();
+
+    /**
+     * Gets the current snapshot, reading the physicians from the database the first time
+     * and the change feed when it is due.
+     *
+     * @return the current snapshot.
+     */
+    public PhysicianSnapshot current()
+    {
+        PhysicianSnapshot snapshot = current;
+        if (snapshot != null && System.nanoTime() - nextRefreshNanos >= 0) {
+            refresh();
+            snapshot = current;
+        }
+        if (snapshot == null) {
+            synchronized (this) {
+                snapshot = current;
+                if (snapshot == null) {
+                    // changes committed while the rows are read are read again from the feed
+                    LocalDateTime loadStarted = LocalDateTime.now();
+                    PhysicianSnapshot.Builder builder = new PhysicianSnapshot.Builder();
+                    physicianService.listPhysicians(builder::add);
+                    snapshot = builder.build(droppedVersion + 1);
+                    LOG.debug("loaded a snapshot of {} physicians", snapshot.size());
+                    feedSince = loadStarted;
+                    nextRefreshNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(REFRESH_INTERVAL_SECONDS);
+                    current = snapshot;
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Applies the changes of the feed since a little before the last one read. Only one
+     * reader refreshes at a time; the others go on with the current snapshot. A change is
+     * applied only if the snapshot holds an older version of the physician or none, so the
+     * changes the application made itself, already applied by their events, are skipped. A
+     * feed that cannot be read leaves the snapshot as it is until the next refresh.
+     */
+    protected void refresh()
+    {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            LocalDateTime since;
+            synchronized (this) {
+                if (current == null) {
+                    return;
+                }
+                since = feedSince.minus(FEED_OVERLAP);
+            }
+            List<PhysicianChange> changes = new ArrayList<>();
+            int afterId = 0;
+            List<PhysicianChange> page;
+            do {
+                page = physicianService.readPhysiciansChangedSince(since, afterId, FEED_PAGE_SIZE);
+                changes.addAll(page);
+                if (!page.isEmpty()) {
+                    PhysicianChange last = page.get(page.size() - 1);
+                    since = last.getChanged();
+                    afterId = last.getPhysicianId();
+                }
+            } while (page.size() == FEED_PAGE_SIZE && changes.size() <= MAX_REFRESH_CHANGES);
+            apply(changes);
+        } catch (RuntimeException e) {
+            LOG.warn("could not read the physician change feed, keeping the snapshot", e);
+        } finally {
+            nextRefreshNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(REFRESH_INTERVAL_SECONDS);
+            refreshing.set(false);
+        }
+    }
+
+    /**
+     * Applies changes read from the feed, the last change of each physician winning.
+     *
+     * @param changes the changes, in feed order.
+     */
+    protected synchronized void apply(List<PhysicianChange> changes)
+    {
+        PhysicianSnapshot snapshot = current;
+        if (snapshot == null || changes.isEmpty()) {
+            return;
+        }
+        if (changes.size() > MAX_REFRESH_CHANGES) {
+            LOG.debug("{} physicians changed outside the application, reloading", changes.size());
+            invalidate();
+            return;
+        }
+        Map<Integer, PhysicianChange> lastChanges = new LinkedHashMap<>();
+        for (PhysicianChange change : changes) {
+            lastChanges.put(change.getPhysicianId(), change);
+        }
+        List<Integer> deleted = new ArrayList<>();
+        List<PhysicianPojo> written = new ArrayList<>();
+        for (PhysicianChange change : lastChanges.values()) {
+            PhysicianPojo held = snapshot.find(change.getPhysicianId());
+            if (change.isDeleted()) {
+                if (held != null) {
+                    deleted.add(change.getPhysicianId());
+                }
+            } else if (isNewer(change.getPhysician(), held)) {
+                written.add(change.getPhysician());
+            }
+        }
+        if (!deleted.isEmpty() || !written.isEmpty()) {
+            current = snapshot.withoutAll(deleted).withAll(written);
+            LOG.debug("applied {} deletes and {} writes from the change feed, snapshot version = {}",
+                deleted.size(), written.size(), current.getVersion());
+        }
+        LocalDateTime last = changes.get(changes.size() - 1).getChanged();
+        if (last.isAfter(feedSince)) {
+            feedSince = last;
+        }
+    }
+
+    /**
+     * Checks if a physician read from the feed is newer than the one the snapshot holds:
+     * a later version, or the same version with other columns, e.g. a row inserted again
+     * after a TRUNCATE, which fires no trigger and restarts the versions.
+     *
+     * @param physician the physician read from the feed.
+     * @param held the physician the snapshot holds, null if none.
+     * @return true if the physician must be applied.
+     */
+    private static boolean isNewer(PhysicianPojo physician, PhysicianPojo held)
+    {
+        if (held == null) {
+            return true;
+        }
+        if (held.getVersion() != physician.getVersion()) {
+            return held.getVersion() < physician.getVersion();
+        }
+        return !Objects.equals(held.getLastName(), physician.getLastName())
+            || !Objects.equals(held.getFirstName(), physician.getFirstName())
+            || !Objects.equals(held.getEmail(), physician.getEmail())
+            || !Objects.equals(held.getPhoneNumber(), physician.getPhoneNumber())
+            || !Objects.equals(held.getSpecialty(), physician.getSpecialty())
+            || !Objects.equals(held.getCreated(), physician.getCreated());
+    }
+
+    /**
+     * Gets the current snapshot without loading it.
+     *
+     * @return the current snapshot, null if not loaded.
+     */
+    public PhysicianSnapshot loaded()
+    {
+        return current;
+    }
+
+    /**
+     * Gets the version of the current snapshot without loading it.
+     *
+     * @return the version, 0 if not loaded yet.
+     */
+    public long currentVersion()
+    {
+        PhysicianSnapshot snapshot = current;
+        return snapshot == null ? 0 : snapshot.getVersion();
+    }
+
+    /**
+     * Drops the snapshot, so it is read from the database again when next needed, e.g. when
+     * a refresh finds too many changes made behind the application's back.
+     */
+    public synchronized void invalidate()
+    {
+        LOG.debug("invalidating the physician snapshot");
+        if (current != null) {
+            droppedVersion = current.getVersion();
+            current = null;
+        }
+    }
+
+    /**
+     * Applies a committed change to the snapshot. Nothing is done until the snapshot is
+     * loaded, since loading reads the committed change anyway.
+     *
+     * @param event the change.
+     */
+    public synchronized void onPhysicianChange(
+        @Observes(during = TransactionPhase.AFTER_SUCCESS) @Priority(OBSERVER_PRIORITY) PhysicianChangeEvent event)
+    {
+        PhysicianSnapshot snapshot = current;
+        if (snapshot == null) {
+            return;
+        }
+        switch (event.getKind()) {
+            case CREATED:
+            case UPDATED:
+                current = snapshot.withAll(event.getPhysicians());
+                break;
+            case DELETED:
+                current = snapshot.withoutAll(event.getPhysicianIds());
+                break;
+            default:
+                break;
+        }
+        LOG.debug("applied {}, snapshot version = {}", event, current.getVersion());
+    }
+}
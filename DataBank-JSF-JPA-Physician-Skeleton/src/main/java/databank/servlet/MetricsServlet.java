@@ -0,0 +1,279 @@
+package databank.servlet;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
+import databank.metrics.LatencyHistogram;
+import databank.metrics.MethodMetrics;
+import databank.metrics.RequestStatements;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceUnit;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Serves the metrics of the application in the Prometheus text format: the latency
+ * histograms and error counts of the {@link databank.metrics.Timed} methods, the SQL
+ * statements of the requests by action ({@link RequestStatements}), and the Hibernate
+ * statistics (hibernate.generate_statistics in persistence.xml), including the
+ * slowest queries.
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 11/10/2024
+ */
+@WebServlet(urlPatterns = MetricsServlet.URL_PATTERN)
+public class MetricsServlet extends HttpServlet {
+    /** Explicitly set serialVersionUID */
+    private static final long serialVersionUID = 1L;
+
+    /** Path of the metrics, relative to the application. */
+    public static final String URL_PATTERN = "/metrics";
+
+    /** Content type of the Prometheus text format. */
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    /** Number of queries reported by {@code hibernate_slowest_query_max_seconds}. */
+    private static final int SLOWEST_QUERIES = 5;
+
+    /** Longest query text reported, the rest is cut. */
+    private static final int MAX_QUERY_LENGTH = 200;
+
+    /** Timed methods. */
+    @Inject
+    protected MethodMetrics methodMetrics;
+
+    /** Factory whose statistics are reported. */
+    @PersistenceUnit
+    protected EntityManagerFactory entityManagerFactory;
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException
+    {
+        response.setContentType(CONTENT_TYPE);
+        PrintWriter out = response.getWriter();
+        writeMethodMetrics(out);
+        writeRequestStatements(out);
+        writeHibernateStatistics(out, entityManagerFactory.unwrap(SessionFactory.class).getStatistics());
+        out.flush();
+    }
+
+    /**
+     * Writes the histograms and error counts of the timed methods.
+     *
+     * @param out the response.
+     */
+    protected void writeMethodMetrics(PrintWriter out)
+    {
+        Map<String, LatencyHistogram> histograms = methodMetrics.snapshot();
+        header(out, "databank_method_duration_seconds", "histogram", "Duration of the calls of the timed methods.");
+        histograms.forEach((method, histogram) -> {
+            String label = "method=\"" + escape(method) + "\"";
+            long[] counts = histogram.cumulativeCounts();
+            double[] bounds = LatencyHistogram.bounds();
+            for (int i = 0; i < bounds.length; i++) {
+                sample(out, "databank_method_duration_seconds_bucket", label + ",le=\"" + format(bounds[i]) + "\"", counts[i]);
+            }
+            sample(out, "databank_method_duration_seconds_bucket", label + ",le=\"+Inf\"", counts[bounds.length]);
+            sample(out, "databank_method_duration_seconds_sum", label, histogram.sumSeconds());
+            sample(out, "databank_method_duration_seconds_count", label, counts[bounds.length]);
+        });
+        header(out, "databank_method_errors_total", "counter", "Calls of the timed methods ending with an exception.");
+        histograms.forEach((method, histogram) ->
+            sample(out, "databank_method_errors_total", "method=\"" + escape(method) + "\"", histogram.errors()));
+    }
+
+    /**
+     * Writes the SQL statements of the requests, by action.
+     *
+     * @param out the response.
+     */
+    protected void writeRequestStatements(PrintWriter out)
+    {
+        Map<String, RequestStatements.ActionStatements> actions = RequestStatements.summary();
+        header(out, "databank_requests_total", "counter", "Requests, by action.");
+        actions.forEach((action, totals) -> sample(out, "databank_requests_total", actionLabel(action), totals.getRequests()));
+        header(out, "databank_request_statements_total", "counter", "SQL statements prepared by the requests, by action.");
+        actions.forEach((action, totals) ->
+            sample(out, "databank_request_statements_total", actionLabel(action), totals.getStatements()));
+        header(out, "databank_request_statements_max", "gauge", "Most SQL statements prepared by one request, by action.");
+        actions.forEach((action, totals) ->
+            sample(out, "databank_request_statements_max", actionLabel(action), totals.getMaxStatements()));
+        header(out, "databank_request_statements_exceeded_total", "counter",
+            "Requests preparing more than " + RequestStatements.getMaxStatements() + " SQL statements, by action.");
+        actions.forEach((action, totals) ->
+            sample(out, "databank_request_statements_exceeded_total", actionLabel(action), totals.getOffenders()));
+        header(out, "databank_request_slow_queries_total", "counter",
+            "SQL executions slower than " + RequestStatements.getSlowQueryMillis() + " ms, by action.");
+        actions.forEach((action, totals) ->
+            sample(out, "databank_request_slow_queries_total", actionLabel(action), totals.getSlowQueries()));
+    }
+
+    /**
+     * Writes the Hibernate statistics, nothing if they are not enabled.
+     *
+     * @param out the response.
+     * @param statistics the statistics.
+     */
+    protected void writeHibernateStatistics(PrintWriter out, Statistics statistics)
+    {
+        if (!statistics.isStatisticsEnabled()) {
+            return;
+        }
+        counter(out, "hibernate_sessions_opened_total", "Sessions opened.", statistics.getSessionOpenCount());
+        counter(out, "hibernate_transactions_total", "Transactions completed.", statistics.getTransactionCount());
+        counter(out, "hibernate_flushes_total", "Flushes of sessions.", statistics.getFlushCount());
+        counter(out, "hibernate_connections_total", "Connections obtained.", statistics.getConnectCount());
+        counter(out, "hibernate_statements_prepared_total", "JDBC statements prepared.", statistics.getPrepareStatementCount());
+        counter(out, "hibernate_query_executions_total", "HQL and JPQL queries executed.", statistics.getQueryExecutionCount());
+        counter(out, "hibernate_entity_loads_total", "Entities loaded.", statistics.getEntityLoadCount());
+        counter(out, "hibernate_entity_fetches_total", "Entities fetched by a separate select.", statistics.getEntityFetchCount());
+        counter(out, "hibernate_entity_inserts_total", "Entities inserted.", statistics.getEntityInsertCount());
+        counter(out, "hibernate_entity_updates_total", "Entities updated.", statistics.getEntityUpdateCount());
+        counter(out, "hibernate_entity_deletes_total", "Entities deleted.", statistics.getEntityDeleteCount());
+        counter(out, "hibernate_optimistic_failures_total", "Optimistic lock failures.", statistics.getOptimisticFailureCount());
+        header(out, "hibernate_query_execution_max_seconds", "gauge", "Longest query execution.");
+        sample(out, "hibernate_query_execution_max_seconds", null, statistics.getQueryExecutionMaxTime() / 1000.0);
+
+        List<String> queries = new ArrayList<>(List.of(statistics.getQueries()));
+        queries.sort(Comparator.comparingLong((String query) -> statistics.getQueryStatistics(query).getExecutionMaxTime())
+            .reversed());
+        header(out, "hibernate_slowest_query_max_seconds", "gauge", "Longest execution of the slowest queries.");
+        for (String query : queries.subList(0, Math.min(SLOWEST_QUERIES, queries.size()))) {
+            QueryStatistics queryStatistics = statistics.getQueryStatistics(query);
+            sample(out, "hibernate_slowest_query_max_seconds", "query=\"" + escape(shorten(query)) + "\"",
+                queryStatistics.getExecutionMaxTime() / 1000.0);
+        }
+        header(out, "hibernate_slowest_query_executions_total", "counter", "Executions of the slowest queries.");
+        for (String query : queries.subList(0, Math.min(SLOWEST_QUERIES, queries.size()))) {
+            sample(out, "hibernate_slowest_query_executions_total", "query=\"" + escape(shorten(query)) + "\"",
+                statistics.getQueryStatistics(query).getExecutionCount());
+        }
+    }
+
+    /**
+     * Writes a counter with its header.
+     *
+     * @param out the response.
+     * @param name the name of the metric.
+     * @param help its description.
+     * @param value its value.
+     */
+    private static void counter(PrintWriter out, String name, String help, long value)
+    {
+        header(out, name, "counter", help);
+        sample(out, name, null, value);
+    }
+
+    /**
+     * Writes the HELP and TYPE lines of a metric.
+     *
+     * @param out the response.
+     * @param name the name of the metric.
+     * @param type its type.
+     * @param help its description.
+     */
+    private static void header(PrintWriter out, String name, String type, String help)
+    {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * Writes a sample.
+     *
+     * @param out the response.
+     * @param name the name of the sample.
+     * @param labels its labels, or null.
+     * @param value its value.
+     */
+    private static void sample(PrintWriter out, String name, String labels, long value)
+    {
+        sample(out, name, labels, Long.toString(value));
+    }
+
+    /**
+     * Writes a sample.
+     *
+     * @param out the response.
+     * @param name the name of the sample.
+     * @param labels its labels, or null.
+     * @param value its value.
+     */
+    private static void sample(PrintWriter out, String name, String labels, double value)
+    {
+        sample(out, name, labels, format(value));
+    }
+
+    /**
+     * Writes a sample.
+     *
+     * @param out the response.
+     * @param name the name of the sample.
+     * @param labels its labels, or null.
+     * @param value its value.
+     */
+    private static void sample(PrintWriter out, String name, String labels, String value)
+    {
+        out.append(name);
+        if (labels != null) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Formats a sample value or a bucket bound.
+     *
+     * @param value the value.
+     * @return the value, in a form Prometheus parses whatever the locale.
+     */
+    private static String format(double value)
+    {
+        return Double.toString(value);
+    }
+
+    /**
+     * Builds the label of an action.
+     *
+     * @param action the action.
+     * @return the label.
+     */
+    private static String actionLabel(String action)
+    {
+        return "action=\"" + escape(action) + "\"";
+    }
+
+    /**
+     * Collapses the white space of a query and cuts it to {@link #MAX_QUERY_LENGTH}.
+     *
+     * @param query the query.
+     * @return the query on one line.
+     */
+    private static String shorten(String query)
+    {
+        String line = query.replaceAll("\\s+", " ").trim();
+        return line.length() <= MAX_QUERY_LENGTH ? line : line.substring(0, MAX_QUERY_LENGTH) + "...";
+    }
+
+    /**
+     * Escapes a label value: backslashes, double quotes and line feeds.
+     *
+     * @param value the value.
+     * @return the escaped value.
+     */
+    private static String escape(String value)
+    {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
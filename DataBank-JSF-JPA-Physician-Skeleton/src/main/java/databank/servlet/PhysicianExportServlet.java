@@ -0,0 +1,233 @@
+package databank.servlet;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.zip.GZIPOutputStream;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import databank.model.PhysicianPojo;
+import databank.service.PhysicianService;
+import jakarta.inject.Inject;
+import jakarta.json.Json;
+import jakarta.json.stream.JsonGenerator;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Downloads every physician as CSV or JSON.
+ * <p>
+ * The rows are written to the response as {@link PhysicianService#exportPhysicians} reads
+ * them from the database, so the export never holds the table in memory however large it
+ * is: the response is sent in chunks as its buffer fills. With {@code gzip=true}, and a
+ * client accepting it, the response is gzip-encoded.
+ * </p>
+ * <p>
+ * Parameters: {@code format} is {@code csv} (the default) or {@code json}; {@code gzip} is
+ * {@code true} or {@code false} (the default).
+ * </p>
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 11/10/2024
+ */
+@WebServlet(urlPatterns = PhysicianExportServlet.URL_PATTERN)
+public class PhysicianExportServlet extends HttpServlet {
+    /** Explicitly set serialVersionUID */
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    /** Path of the export, relative to the application. */
+    public static final String URL_PATTERN = "/export/physicians";
+
+    /** Parameter choosing the format. */
+    public static final String PARAM_FORMAT = "format";
+
+    /** Parameter asking for a gzip-encoded response. */
+    public static final String PARAM_GZIP = "gzip";
+
+    /** Name of the file downloaded, without extension. */
+    private static final String FILE_NAME = "physicians";
+
+    /** Size of the buffer between the rows and the response. */
+    private static final int BUFFER_SIZE = 32 * 1024;
+
+    /** Columns exported, in order. */
+    private static final String[] COLUMNS = { "id", "lastName", "firstName", "email", "phoneNumber", "specialty",
+        "created", "updated", "version" };
+
+    /** Service reading the physicians. */
+    @Inject
+    protected PhysicianService physicianService;
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException
+    {
+        String format = request.getParameter(PARAM_FORMAT);
+        boolean json = "json".equals(format);
+        if (!json && format != null && !"csv".equals(format)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "format must be csv or json");
+            return;
+        }
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        boolean gzip = Boolean.parseBoolean(request.getParameter(PARAM_GZIP)) && acceptEncoding != null
+            && acceptEncoding.contains("gzip");
+
+        response.setContentType(json ? "application/json" : "text/csv");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader("Content-Disposition", "attachment; filename=\"" + FILE_NAME + (json ? ".json" : ".csv") + "\"");
+        if (gzip) {
+            response.setHeader("Content-Encoding", "gzip");
+        }
+        response.setHeader("Vary", "Accept-Encoding");
+
+        OutputStream out = response.getOutputStream();
+        if (gzip) {
+            out = new GZIPOutputStream(out, BUFFER_SIZE);
+        }
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            long count = json ? writeJson(writer) : writeCsv(writer);
+            LOG.debug("exported {} physicians as {}{}", count, json ? "JSON" : "CSV", gzip ? ", gzipped" : "");
+        } catch (RuntimeException e) {
+            // the service wraps what the consumer throws, a failed write to the client included
+            IOException ioe = writeFailure(e);
+            if (ioe == null) {
+                throw e;
+            }
+            LOG.debug("export aborted: {}", ioe.toString());
+        }
+    }
+
+    /**
+     * Writes the physicians as CSV, a header line then one line per physician.
+     *
+     * @param writer the response.
+     * @return the number of physicians written.
+     * @throws IOException if the header cannot be written.
+     */
+    protected long writeCsv(Writer writer) throws IOException
+    {
+        writer.write(String.join(",", COLUMNS));
+        writer.write("\r\n");
+        return physicianService.exportPhysicians(physician -> {
+            try {
+                writer.write(Integer.toString(physician.getId()));
+                writeCsvField(writer, physician.getLastName());
+                writeCsvField(writer, physician.getFirstName());
+                writeCsvField(writer, physician.getEmail());
+                writeCsvField(writer, physician.getPhoneNumber());
+                writeCsvField(writer, physician.getSpecialty());
+                writeCsvField(writer, toString(physician.getCreated()));
+                writeCsvField(writer, toString(physician.getUpdated()));
+                writer.write(',');
+                writer.write(Integer.toString(physician.getVersion()));
+                writer.write("\r\n");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Writes a CSV field following a comma, quoted if it holds a comma, a quote or a line
+     * break. Null is written as an empty field.
+     *
+     * @param writer the response.
+     * @param value the value.
+     * @throws IOException if it cannot be written.
+     */
+    private static void writeCsvField(Writer writer, String value) throws IOException
+    {
+        writer.write(',');
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    /**
+     * Writes the physicians as a JSON array of objects.
+     *
+     * @param writer the response.
+     * @return the number of physicians written.
+     */
+    protected long writeJson(Writer writer)
+    {
+        // not closed: closing would close the writer, which the caller does
+        JsonGenerator generator = Json.createGenerator(writer);
+        generator.writeStartArray();
+        long count = physicianService.exportPhysicians(physician -> {
+            generator.writeStartObject().write(COLUMNS[0], physician.getId());
+            writeJsonField(generator, COLUMNS[1], physician.getLastName());
+            writeJsonField(generator, COLUMNS[2], physician.getFirstName());
+            writeJsonField(generator, COLUMNS[3], physician.getEmail());
+            writeJsonField(generator, COLUMNS[4], physician.getPhoneNumber());
+            writeJsonField(generator, COLUMNS[5], physician.getSpecialty());
+            writeJsonField(generator, COLUMNS[6], toString(physician.getCreated()));
+            writeJsonField(generator, COLUMNS[7], toString(physician.getUpdated()));
+            generator.write(COLUMNS[8], physician.getVersion()).writeEnd();
+        });
+        generator.writeEnd();
+        generator.flush();
+        return count;
+    }
+
+    /**
+     * Writes a JSON field, null if there is no value.
+     *
+     * @param generator the generator.
+     * @param name the name of the field.
+     * @param value the value.
+     */
+    private static void writeJsonField(JsonGenerator generator, String name, String value)
+    {
+        if (value == null) {
+            generator.writeNull(name);
+        } else {
+            generator.write(name, value);
+        }
+    }
+
+    /**
+     * Formats a time as ISO-8601.
+     *
+     * @param time the time.
+     * @return the formatted time, or null if there is none.
+     */
+    private static String toString(LocalDateTime time)
+    {
+        return time == null ? null : time.toString();
+    }
+
+    /**
+     * Finds the write failure behind an exception thrown while exporting, the cause of an
+     * {@link UncheckedIOException} or of the JSON generator's exception.
+     *
+     * @param e the exception.
+     * @return the write failure, or null if the export failed otherwise.
+     */
+    private static IOException writeFailure(Throwable e)
+    {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException) {
+                return (IOException) cause;
+            }
+        }
+        return null;
+    }
+}
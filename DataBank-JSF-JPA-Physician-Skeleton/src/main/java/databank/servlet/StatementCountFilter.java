@@ -0,0 +1,116 @@
+package databank.servlet;
+
+import java.io.IOException;
+import java.util.regex.Pattern;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import databank.metrics.RequestStatements;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.FilterConfig;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Counts the SQL statements of each JSF request with {@link RequestStatements}.
+ * <p>
+ * A request is first named after its page and, for an Ajax request, the component
+ * sending it with the row indexes of tables replaced by {@code *}; the JSF action invoked,
+ * if any, then names it (see {@link databank.jsf.StatementCountingActionListener}). The
+ * thresholds are the {@value #SLOW_QUERY_MS_PARAM_NAME} and
+ * {@value #MAX_STATEMENTS_PARAM_NAME} context parameters.
+ * </p>
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 11/10/2024
+ */
+@WebFilter(urlPatterns = "*.xhtml")
+public class StatementCountFilter implements Filter {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    /** Context parameter holding the slowest execution not logged, in milliseconds. */
+    public static final String SLOW_QUERY_MS_PARAM_NAME = "databank.SLOW_QUERY_MS";
+
+    /** Context parameter holding the most statements a request may prepare without being logged. */
+    public static final String MAX_STATEMENTS_PARAM_NAME = "databank.MAX_STATEMENTS_PER_REQUEST";
+
+    /** Request parameter of JSF Ajax requests holding the client ID of the component sending them. */
+    private static final String AJAX_SOURCE_PARAM = "jakarta.faces.source";
+
+    /** Request parameter of JSF Ajax requests holding the event sending them. */
+    private static final String AJAX_EVENT_PARAM = "jakarta.faces.behavior.event";
+
+    /** What a client ID or event name looks like; other values are not used as names. */
+    private static final Pattern NAME_PART = Pattern.compile("[\\w:-]{1,100}");
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException
+    {
+        ServletContext context = filterConfig.getServletContext();
+        long slowQueryMillis = parameter(context, SLOW_QUERY_MS_PARAM_NAME, RequestStatements.DEFAULT_SLOW_QUERY_MILLIS);
+        long maxStatements = parameter(context, MAX_STATEMENTS_PARAM_NAME, RequestStatements.DEFAULT_MAX_STATEMENTS);
+        RequestStatements.configure(slowQueryMillis, (int) Math.min(maxStatements, Integer.MAX_VALUE));
+        LOG.debug("logging SQL slower than {} ms and requests preparing more than {} statements", slowQueryMillis,
+            maxStatements);
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+        throws IOException, ServletException
+    {
+        RequestStatements.begin(action((HttpServletRequest) request));
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            RequestStatements.end();
+        }
+    }
+
+    /**
+     * Names a request after its page and, for an Ajax request, the component and event
+     * sending it. Both are sent by the client, so a source or event that does not look like
+     * a client ID or event name is left out; {@link RequestStatements} also caps the number
+     * of distinct names.
+     *
+     * @param request the request.
+     * @return the name.
+     */
+    static String action(HttpServletRequest request)
+    {
+        String source = request.getParameter(AJAX_SOURCE_PARAM);
+        if (source == null || !NAME_PART.matcher(source).matches()) {
+            return request.getServletPath();
+        }
+        String event = request.getParameter(AJAX_EVENT_PARAM);
+        return request.getServletPath() + " " + source.replaceAll(":\\d+:", ":*:")
+            + (event == null || !NAME_PART.matcher(event).matches() ? "" : " " + event);
+    }
+
+    /**
+     * Reads a context parameter holding a number.
+     *
+     * @param context the servlet context.
+     * @param name the parameter.
+     * @param defaultValue the value if it is missing or not a number.
+     * @return the value, at least 0.
+     */
+    private static long parameter(ServletContext context, String name, long defaultValue)
+    {
+        String value = context.getInitParameter(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            LOG.warn("ignoring {} = {}, not a number", name, value);
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package databank.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import databank.model.PhysicianPojo;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.persistence.EntityManager;
+
+/**
+ * Checks that the {@link PhysicianService} singleton does not serialize its callers: its
+ * concurrency is bean-managed, so the container takes no WRITE lock around its methods,
+ * and several readers are inside the same read at once.
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 11/10/2024
+ */
+class PhysicianServiceConcurrencyTest {
+
+    /** Readers that must be inside {@link PhysicianService#readPhysicianById} together. */
+    private static final int READERS = 8;
+
+    /** How long a reader waits for the others before the test fails, rather than hangs. */
+    private static final long GATE_TIMEOUT_SECONDS = 10;
+
+    @Test
+    void serviceUsesBeanManagedConcurrency() {
+        ConcurrencyManagement concurrency = PhysicianService.class.getAnnotation(ConcurrencyManagement.class);
+        assertNotNull(concurrency, "PhysicianService must declare its concurrency management");
+        assertEquals(ConcurrencyManagementType.BEAN, concurrency.value());
+        for (Method method : PhysicianService.class.getDeclaredMethods()) {
+            assertFalse(Modifier.isSynchronized(method.getModifiers()), method.getName() + " must not be synchronized");
+        }
+    }
+
+    /**
+     * Each reader's database read waits until every reader has reached it, so the reads
+     * only complete if the service lets all of them in at the same time; a service
+     * serializing its callers keeps all but one out and the first read gives up.
+     */
+    @Test
+    void readersAreServedConcurrently() throws Exception {
+        CountDownLatch inside = new CountDownLatch(READERS);
+        PhysicianService service = new PhysicianService();
+        service.entityManager = gatedEntityManager(inside);
+        ExecutorService readers = Executors.newFixedThreadPool(READERS);
+        try {
+            List<Future<PhysicianPojo>> reads = new ArrayList<>();
+            for (int i = 0; i < READERS; i++) {
+                int physicianId = i + 1;
+                reads.add(readers.submit(() -> service.readPhysicianById(physicianId)));
+            }
+            for (int i = 0; i < READERS; i++) {
+                assertEquals(i + 1, reads.get(i).get().getId());
+            }
+        } finally {
+            readers.shutdownNow();
+        }
+    }
+
+    /**
+     * Creates an entity manager whose {@code find} returns a physician of the ID asked for,
+     * once every reader is inside it.
+     *
+     * @param inside counted down by each reader entering {@code find}.
+     * @return the entity manager, failing any other call.
+     */
+    private static EntityManager gatedEntityManager(CountDownLatch inside) {
+        return (EntityManager) Proxy.newProxyInstance(EntityManager.class.getClassLoader(),
+            new Class<?>[] { EntityManager.class }, (proxy, method, args) -> {
+                if (!method.getName().equals("find")) {
+                    throw new UnsupportedOperationException(method.getName());
+                }
+                inside.countDown();
+                assertTrue(inside.await(GATE_TIMEOUT_SECONDS, TimeUnit.SECONDS),
+                    "only " + (READERS - inside.getCount()) + " of " + READERS + " readers got in at once");
+                PhysicianPojo physician = new PhysicianPojo();
+                physician.setId((Integer) args[1]);
+                return physician;
+            });
+    }
+}
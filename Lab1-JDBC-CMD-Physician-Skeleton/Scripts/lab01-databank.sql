@@ -24,5 +24,135 @@ CREATE TABLE IF NOT EXISTS `databank`.`physician`(
   `phone` VARCHAR(13) NULL,
   `specialty` VARCHAR(45) NULL,
   `created` DATETIME NULL,
+  `updated` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+  `version` INT NOT NULL DEFAULT 0,
   PRIMARY KEY (`id`))
 ENGINE = InnoDB;
+
+-- -----------------------------------------------------
+-- Columns `updated` and `version` of `databank`.`physician`
+--   Mapped by the DataBank web app: `version` for optimistic
+--   locking, `updated` for its change feed. The defaults cover
+--   rows inserted by this lab, which sets neither. Added here
+--   too for tables created by an earlier version of this script.
+-- -----------------------------------------------------
+SET @ddl = IF((SELECT COUNT(*) FROM `information_schema`.`columns`
+    WHERE `table_schema` = 'databank' AND `table_name` = 'physician' AND `column_name` = 'updated') = 0,
+  'ALTER TABLE `databank`.`physician` ADD COLUMN `updated` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+SET @ddl = IF((SELECT COUNT(*) FROM `information_schema`.`columns`
+    WHERE `table_schema` = 'databank' AND `table_name` = 'physician' AND `column_name` = 'version') = 0,
+  'ALTER TABLE `databank`.`physician` ADD COLUMN `version` INT NOT NULL DEFAULT 0', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- -----------------------------------------------------
+-- Create Table `databank`.`specialties`
+--   Read by the DataBank web app for its specialty list,
+--   seeded from specialtyPool.txt by databank-seed.properties
+-- -----------------------------------------------------
+CREATE TABLE IF NOT EXISTS `databank`.`specialties`(
+  `id` INT NOT NULL AUTO_INCREMENT,
+  `specialty` VARCHAR(45) NOT NULL,
+  PRIMARY KEY (`id`),
+  UNIQUE INDEX `specialty_UNIQUE` (`specialty`))
+ENGINE = InnoDB;
+
+-- -----------------------------------------------------
+-- Create Table `databank`.`id_generator`
+--   Hands out blocks of physician IDs to the DataBank web app
+--   (pooled-lo @TableGenerator), so its inserts can be JDBC-batched.
+--   next_val is the first ID of the next block; the loaders of
+--   this lab move it past the physicians they insert (see
+--   jdbccmd.PhysicianIdGenerator), so the two never collide.
+-- -----------------------------------------------------
+CREATE TABLE IF NOT EXISTS `databank`.`id_generator`(
+  `sequence_name` VARCHAR(64) NOT NULL,
+  `next_val` BIGINT NOT NULL,
+  PRIMARY KEY (`sequence_name`))
+ENGINE = InnoDB;
+
+INSERT INTO `databank`.`id_generator` (`sequence_name`, `next_val`)
+  SELECT 'physician', COALESCE(MAX(`id`), 0) + 1 FROM `databank`.`physician`
+  ON DUPLICATE KEY UPDATE `next_val` = GREATEST(`next_val`, VALUES(`next_val`));
+
+-- -----------------------------------------------------
+-- Indexes of `databank`.`physician`
+--   Back the DataBank web app's filters and sorted pages. InnoDB
+--   appends the primary key to each index, so every one of them
+--   also serves keyset pages ordered by (column, id); the
+--   composite one serves a specialty filter sorted by last name.
+--   MySQL has no CREATE INDEX IF NOT EXISTS, so each index is
+--   created only if information_schema does not list it yet,
+--   which keeps the script safe to re-run.
+-- -----------------------------------------------------
+SET @ddl = IF((SELECT COUNT(*) FROM `information_schema`.`statistics`
+    WHERE `table_schema` = 'databank' AND `table_name` = 'physician' AND `index_name` = 'idx_physician_last_name') = 0,
+  'CREATE INDEX `idx_physician_last_name` ON `databank`.`physician` (`last_name`)', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+SET @ddl = IF((SELECT COUNT(*) FROM `information_schema`.`statistics`
+    WHERE `table_schema` = 'databank' AND `table_name` = 'physician' AND `index_name` = 'idx_physician_first_name') = 0,
+  'CREATE INDEX `idx_physician_first_name` ON `databank`.`physician` (`first_name`)', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+SET @ddl = IF((SELECT COUNT(*) FROM `information_schema`.`statistics`
+    WHERE `table_schema` = 'databank' AND `table_name` = 'physician' AND `index_name` = 'idx_physician_specialty_last_name') = 0,
+  'CREATE INDEX `idx_physician_specialty_last_name` ON `databank`.`physician` (`specialty`, `last_name`)', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+SET @ddl = IF((SELECT COUNT(*) FROM `information_schema`.`statistics`
+    WHERE `table_schema` = 'databank' AND `table_name` = 'physician' AND `index_name` = 'idx_physician_created') = 0,
+  'CREATE INDEX `idx_physician_created` ON `databank`.`physician` (`created`)', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+-- serves the DataBank change feed, keyset on (updated, id)
+SET @ddl = IF((SELECT COUNT(*) FROM `information_schema`.`statistics`
+    WHERE `table_schema` = 'databank' AND `table_name` = 'physician' AND `index_name` = 'idx_physician_updated') = 0,
+  'CREATE INDEX `idx_physician_updated` ON `databank`.`physician` (`updated`)', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- -----------------------------------------------------
+-- Create Table `databank`.`physician_tombstone`
+--   One row per physician ID deleted, so the DataBank web app's
+--   change feed reports deletions. An ID deleted again keeps one
+--   row with the latest time; the row is removed when a physician
+--   with that ID is inserted again. Written by the triggers below.
+-- -----------------------------------------------------
+CREATE TABLE IF NOT EXISTS `databank`.`physician_tombstone`(
+  `id` INT NOT NULL,
+  `deleted` DATETIME NOT NULL,
+  PRIMARY KEY (`id`),
+  INDEX `idx_physician_tombstone_deleted` (`deleted`))
+ENGINE = InnoDB;
+
+-- -----------------------------------------------------
+-- Triggers of `databank`.`physician`
+--   Keep the DataBank web app's change feed and optimistic
+--   locking right whoever writes the table, the web app or the
+--   loaders of this lab: a delete records the ID's tombstone, an
+--   insert removes it, and an update that leaves `version` as it
+--   was bumps it, so a stale versioned update of the web app
+--   fails rather than overwrites the change. TRUNCATE fires no
+--   trigger, so the rows it removes are not reported as deleted.
+--   Dropped first, which keeps the script safe to re-run.
+-- -----------------------------------------------------
+DROP TRIGGER IF EXISTS `databank`.`physician_after_delete`;
+CREATE TRIGGER `databank`.`physician_after_delete` AFTER DELETE ON `databank`.`physician`
+  FOR EACH ROW INSERT INTO `databank`.`physician_tombstone` (`id`, `deleted`) VALUES (OLD.`id`, NOW())
+    ON DUPLICATE KEY UPDATE `deleted` = VALUES(`deleted`);
+DROP TRIGGER IF EXISTS `databank`.`physician_after_insert`;
+CREATE TRIGGER `databank`.`physician_after_insert` AFTER INSERT ON `databank`.`physician`
+  FOR EACH ROW DELETE FROM `databank`.`physician_tombstone` WHERE `id` = NEW.`id`;
+DROP TRIGGER IF EXISTS `databank`.`physician_before_update`;
+CREATE TRIGGER `databank`.`physician_before_update` BEFORE UPDATE ON `databank`.`physician`
+  FOR EACH ROW SET NEW.`version` = IF(NEW.`version` = OLD.`version`, OLD.`version` + 1, NEW.`version`);
@@ -9,19 +9,26 @@
  * @description This class is used to define and manage command-line options for the application. 
  *              It uses the Picocli library to specify and handle command-line arguments. 
  *              The class includes fields for various command-line options such as database URL, 
- *              username, password, and the number of random physicians to generate.
+ *              username, password, the number of random physicians to generate, the insert batch 
+ *              size and reject file, an optional seed spec, the seed and snapshot 
+ *              used to verify a run later, and the settings of the optional 
+ *              read/write workload that runs after seeding.
  * 
  * @see picocli.CommandLine.Option
  */
 package jdbccmd;
 
+import java.nio.file.Path;
+import java.util.List;
+
 import picocli.CommandLine.Option;
 
 /**
  * A class that holds annotated member fields representing command-line arguments.
  * <p>
  * This class is used by Picocli to parse command-line options. It includes options for 
- * database connection details and the number of random physician records to generate.
+ * database connection details, the number of random physician records to generate and the 
+ * duration, concurrency and mix of the workload.
  * </p>
  */
 public class CmdLineOptions {
@@ -58,7 +65,8 @@ public class CmdLineOptions {
     /** Option flag for JDBC URL */
     protected static final String JDBCURL_OPT = DASH + "url";
     /** JDBC URL option description */
-    protected static final String JDBCURL_USAGE = "The DB URL";
+    protected static final String JDBCURL_USAGE = "The DB URL, repeat it (or separate URLs with ';') to load the same physicians into several databases; "
+            + "the first is the primary, used by the spec, workload and subcommands";
 
     /** Short option flag for generate count */
     protected static final String GENCOUNT_SHORTOPT = DASH + "g";
@@ -67,13 +75,82 @@ public class CmdLineOptions {
     /** Generate count option description */
     protected static final String GENCOUNT_USAGE = "number of random physicians to be generated (default: ${DEFAULT-VALUE})";
 
+    /** Short option flag for batch size */
+    protected static final String BATCHSIZE_SHORTOPT = DASH + "b";
+    /** Long option flag for batch size */
+    protected static final String BATCHSIZE_LONGOPT = DASHDASH + "batch-size";
+    /** Batch size option description */
+    protected static final String BATCHSIZE_USAGE = "number of rows inserted per batch and transaction (default: ${DEFAULT-VALUE})";
+
+    /** Option flag for queue depth */
+    protected static final String QUEUE_DEPTH_LONGOPT = DASHDASH + "queue-depth";
+    /** Queue depth option description */
+    protected static final String QUEUE_DEPTH_USAGE = "number of batches a target may fall behind before generation waits for it (default: ${DEFAULT-VALUE})";
+
+    /** Option flag for staged generation */
+    protected static final String STAGED_LONGOPT = DASHDASH + "staged";
+    /** Staged generation option description */
+    protected static final String STAGED_USAGE = "generate every physician into an off-heap column store before loading, instead of loading while generating";
+
+    /** Option flag for reject file */
+    protected static final String REJECTFILE_LONGOPT = DASHDASH + "reject-file";
+    /** Reject file option description */
+    protected static final String REJECTFILE_USAGE = "file that rows which cannot be inserted are written to (default: ${DEFAULT-VALUE})";
+
+    /** Short option flag for seed spec */
+    protected static final String SPEC_SHORTOPT = DASH + "s";
+    /** Long option flag for seed spec */
+    protected static final String SPEC_LONGOPT = DASHDASH + "spec";
+    /** Seed spec option description */
+    protected static final String SPEC_USAGE = "seed spec (properties file or classpath resource) mapping table columns to generators, "
+            + "e.g. databank-seed.properties; without it only the physician table is generated";
+
+    /** Option flag for seed threads */
+    protected static final String SEED_THREADS_LONGOPT = DASHDASH + "seed-threads";
+    /** Seed threads option description */
+    protected static final String SEED_THREADS_USAGE = "maximum number of spec tables loaded at the same time (default: ${DEFAULT-VALUE})";
+
+    /** Option flag for the generator seed */
+    protected static final String SEED_LONGOPT = DASHDASH + "seed";
+    /** Seed option description */
+    protected static final String SEED_USAGE = "generate reproducible physicians from this seed, so the run can be verified later";
+
+    /** Option flag for the snapshot file */
+    protected static final String SNAPSHOT_LONGOPT = DASHDASH + "snapshot";
+    /** Snapshot option description */
+    protected static final String SNAPSHOT_USAGE = "file the inserted physicians are recorded to (binary if it ends in " + PhysicianSnapshot.BINARY_EXTENSION + ", CSV otherwise), so the run can be verified or synced later";
+
+    /** Short option flag for workload duration */
+    protected static final String WORKLOAD_DURATION_SHORTOPT = DASH + "d";
+    /** Long option flag for workload duration */
+    protected static final String WORKLOAD_DURATION_LONGOPT = DASHDASH + "workload-duration";
+    /** Workload duration option description */
+    protected static final String WORKLOAD_DURATION_USAGE = "seconds to run the read/write workload after seeding, 0 to skip it (default: ${DEFAULT-VALUE})";
+
+    /** Option flag for workload warm-up */
+    protected static final String WORKLOAD_WARMUP_LONGOPT = DASHDASH + "workload-warmup";
+    /** Workload warm-up option description */
+    protected static final String WORKLOAD_WARMUP_USAGE = "seconds to run the workload before measuring (default: ${DEFAULT-VALUE})";
+
+    /** Short option flag for workload threads */
+    protected static final String WORKLOAD_THREADS_SHORTOPT = DASH + "t";
+    /** Long option flag for workload threads */
+    protected static final String WORKLOAD_THREADS_LONGOPT = DASHDASH + "workload-threads";
+    /** Workload threads option description */
+    protected static final String WORKLOAD_THREADS_USAGE = "number of workload threads, each with its own connection (default: ${DEFAULT-VALUE})";
+
+    /** Option flag for workload mix */
+    protected static final String WORKLOAD_MIX_LONGOPT = DASHDASH + "workload-mix";
+    /** Workload mix option description */
+    protected static final String WORKLOAD_MIX_USAGE = "weighted operations select-id, select-prefix, update and delete (default: ${DEFAULT-VALUE})";
+
     /** Flag indicating whether help was requested */
     @Option(names = {HELP_SHORTOPT, HELP_LONGOPT}, usageHelp = true, description = HELP_USAGE)
     public boolean helpRequested = false;
 
-    /** The JDBC URL for the database */
-    @Option(names = {JDBCURL_OPT}, required = true, description = JDBCURL_USAGE)
-    public String jdbcUrl;
+    /** The JDBC URLs of the target databases, the primary first */
+    @Option(names = {JDBCURL_OPT}, required = true, split = ";", description = JDBCURL_USAGE)
+    public List<String> jdbcUrls;
 
     /** The username for the database connection */
     @Option(names = {USER_SHORTOPT, USER_LONGOPT}, required = false, description = USER_USAGE)
@@ -87,4 +164,61 @@ public class CmdLineOptions {
     @Option(names = {GENCOUNT_SHORTOPT, GENCOUNT_LONGOPT}, description = GENCOUNT_USAGE)
     public int count = 10;
 
+    /** The number of rows per insert batch */
+    @Option(names = {BATCHSIZE_SHORTOPT, BATCHSIZE_LONGOPT}, description = BATCHSIZE_USAGE)
+    public int batchSize = 500;
+
+    /** The number of batches queued per target */
+    @Option(names = {QUEUE_DEPTH_LONGOPT}, description = QUEUE_DEPTH_USAGE)
+    public int queueDepth = 4;
+
+    /** Whether to stage the generated physicians in a column store before loading them */
+    @Option(names = {STAGED_LONGOPT}, description = STAGED_USAGE)
+    public boolean staged = false;
+
+    /** The file rejected rows are written to */
+    @Option(names = {REJECTFILE_LONGOPT}, description = REJECTFILE_USAGE)
+    public Path rejectFile = Path.of("physician-rejects.csv");
+
+    /** The seed spec to generate from, null for the built-in physician generator */
+    @Option(names = {SPEC_SHORTOPT, SPEC_LONGOPT}, description = SPEC_USAGE)
+    public String spec;
+
+    /** The maximum number of spec tables loaded at the same time */
+    @Option(names = {SEED_THREADS_LONGOPT}, description = SEED_THREADS_USAGE)
+    public int seedThreads = 4;
+
+    /** The seed physicians are generated from, null for unseeded (Podam) generation */
+    @Option(names = {SEED_LONGOPT}, description = SEED_USAGE)
+    public Long seed;
+
+    /** The file inserted physicians are recorded to, null for none */
+    @Option(names = {SNAPSHOT_LONGOPT}, description = SNAPSHOT_USAGE)
+    public Path snapshot;
+
+    /** How long to run the workload for, in seconds (0 means no workload) */
+    @Option(names = {WORKLOAD_DURATION_SHORTOPT, WORKLOAD_DURATION_LONGOPT}, description = WORKLOAD_DURATION_USAGE)
+    public int workloadDuration = 0;
+
+    /** How long to run the workload before measuring, in seconds */
+    @Option(names = {WORKLOAD_WARMUP_LONGOPT}, description = WORKLOAD_WARMUP_USAGE)
+    public int workloadWarmup = 5;
+
+    /** The number of workload threads (and connections) */
+    @Option(names = {WORKLOAD_THREADS_SHORTOPT, WORKLOAD_THREADS_LONGOPT}, description = WORKLOAD_THREADS_USAGE)
+    public int workloadThreads = 4;
+
+    /** The weighted mix of workload operations */
+    @Option(names = {WORKLOAD_MIX_LONGOPT}, description = WORKLOAD_MIX_USAGE)
+    public String workloadMix = PhysicianWorkload.DEFAULT_MIX;
+
+    /**
+     * Gets the primary target, the only one used by the spec seeder, the workload and the subcommands.
+     *
+     * @return the first JDBC URL.
+     */
+    public String getPrimaryUrl() {
+        return jdbcUrls.get(0);
+    }
+
 }
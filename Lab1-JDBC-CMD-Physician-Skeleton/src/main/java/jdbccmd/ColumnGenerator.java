@@ -0,0 +1,315 @@
+/*********************************************************************************************************
+ * File:  ColumnGenerator.java Course Materials CST8277
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 2024-09-14
+ *
+ * @description This interface produces the values of one column for the spec-driven generator. The
+ *              static {@link #parse} factory turns a generator definition from a seed spec (for
+ *              example "pool:lastnamePool.txt" or "pattern:613-###-####") into an instance that does
+ *              all of its parsing and loading up front, so producing a value is a tight loop with no
+ *              lookups by name.
+ *
+ * @see jdbccmd.SeedSpec
+ * @see jdbccmd.TableProducer
+ */
+package jdbccmd;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Produces the values of one column.
+ * <p>
+ * Supported definitions:
+ * </p>
+ * <ul>
+ * <li>{@code pool:<resource>} - a random line of a classpath resource or file, text or compiled (see {@link NamePool})</li>
+ * <li>{@code pool:<resource>:sequential} - every line of the pool once, in order</li>
+ * <li>{@code pattern:<template>} - {@code ?} becomes a random letter, {@code #} a random digit,
+ * {@code \} escapes the next character</li>
+ * <li>{@code range:<min>:<max>} - a random integer, both bounds inclusive</li>
+ * <li>{@code sequence:<start>[:<step>]} - consecutive integers</li>
+ * <li>{@code fk:<table>.<column>} - a random existing value of a parent column</li>
+ * <li>{@code now} - the time the spec was compiled</li>
+ * <li>{@code const:<value>} and {@code null}</li>
+ * </ul>
+ * <p>
+ * Generators are not thread-safe; each compiled table owns its own instances.
+ * </p>
+ */
+@FunctionalInterface
+public interface ColumnGenerator {
+
+	/** Prefix of the pool generator */
+	String POOL = "pool";
+	/** Suffix making a pool generator return each entry once */
+	String SEQUENTIAL = "sequential";
+	/** Prefix of the pattern generator */
+	String PATTERN = "pattern";
+	/** Prefix of the range generator */
+	String RANGE = "range";
+	/** Prefix of the sequence generator */
+	String SEQUENCE = "sequence";
+	/** Prefix of the foreign-key sampler */
+	String FK = "fk";
+	/** Name of the current time generator */
+	String NOW = "now";
+	/** Prefix of the constant generator */
+	String CONST = "const";
+	/** Name of the null generator */
+	String NULL = "null";
+
+	/** Characters used for random letters in patterns */
+	String ALPHA_LETTERS = "abcdefghijklmnopqrstuvwxyz";
+
+	/**
+	 * Produces the next value of the column.
+	 *
+	 * @param random The random number generator of the table being loaded
+	 * @return the next value, may be null
+	 */
+	Object next(Random random);
+
+	/**
+	 * Gets the maximum number of values this generator can produce.
+	 *
+	 * @return the number of values available, {@link Long#MAX_VALUE} if unbounded
+	 */
+	default long limit()
+	{
+		return Long.MAX_VALUE;
+	}
+
+	/**
+	 * Gets the parent table of a foreign-key sampler definition, used to order the load.
+	 *
+	 * @param definition A generator definition
+	 * @return the referenced table name, or null if the definition is not a foreign-key sampler
+	 */
+	static String referencedTable(String definition)
+	{
+		String[] parts = definition.trim().split(":", 2);
+		if (!FK.equals(parts[0]) || parts.length < 2)
+		{
+			return null;
+		}
+		int dot = parts[1].lastIndexOf('.');
+		return dot < 0 ? null : parts[1].substring(0, dot).trim();
+	}
+
+	/**
+	 * Compiles a generator definition.
+	 *
+	 * @param definition The definition, e.g. "pool:lastnamePool.txt"
+	 * @param connection Used by the foreign-key sampler to read the parent values
+	 * @param pools Cache of pools already loaded for this spec, keyed by resource name
+	 * @param now The timestamp returned by {@code now}
+	 * @return the compiled generator
+	 * @throws IllegalArgumentException if the definition is malformed
+	 * @throws SQLException if the parent values of a foreign-key sampler cannot be read
+	 */
+	static ColumnGenerator parse(String definition, Connection connection, Map<String, List<String>> pools,
+			LocalDateTime now) throws SQLException
+	{
+		String[] parts = definition.trim().split(":", 2);
+		String kind = parts[0].trim();
+		String args = parts.length > 1 ? parts[1] : "";
+
+		switch (kind)
+		{
+			case POOL:
+				return poolGenerator(args, pools);
+			case PATTERN:
+				return patternGenerator(args);
+			case RANGE:
+			{
+				String[] bounds = args.split(":");
+				if (bounds.length != 2)
+				{
+					throw new IllegalArgumentException("range needs min and max: " + definition);
+				}
+				long min = Long.parseLong(bounds[0].trim());
+				long bound = Long.parseLong(bounds[1].trim()) + 1;
+				if (bound <= min)
+				{
+					throw new IllegalArgumentException("range max is below min: " + definition);
+				}
+				return random -> random.nextLong(min, bound);
+			}
+			case SEQUENCE:
+			{
+				String[] startAndStep = args.isEmpty() ? new String[] { "1" } : args.split(":");
+				long start = Long.parseLong(startAndStep[0].trim());
+				long step = startAndStep.length > 1 ? Long.parseLong(startAndStep[1].trim()) : 1;
+				long[] next = { start };
+				return random -> {
+					long value = next[0];
+					next[0] += step;
+					return value;
+				};
+			}
+			case FK:
+				return foreignKeySampler(args, connection);
+			case NOW:
+				return random -> now;
+			case CONST:
+				return random -> args;
+			case NULL:
+				return random -> null;
+			default:
+				throw new IllegalArgumentException("unknown generator: " + definition);
+		}
+	}
+
+	/**
+	 * Creates a pool generator, loading the pool on first use.
+	 *
+	 * @param args "resource" or "resource:sequential"
+	 * @param pools Cache of loaded pools
+	 * @return the generator
+	 */
+	private static ColumnGenerator poolGenerator(String args, Map<String, List<String>> pools)
+	{
+		boolean sequential = args.endsWith(":" + SEQUENTIAL);
+		String resource = sequential ? args.substring(0, args.length() - SEQUENTIAL.length() - 1) : args;
+		List<String> pool = pools.computeIfAbsent(resource.trim(), ColumnGenerator::loadPool);
+		if (pool.isEmpty())
+		{
+			throw new IllegalArgumentException("pool is empty: " + resource);
+		}
+		if (!sequential)
+		{
+			return random -> pool.get(random.nextInt(pool.size()));
+		}
+		return new ColumnGenerator() {
+			private int next;
+
+			@Override
+			public Object next(Random random)
+			{
+				return pool.get(next++ % pool.size());
+			}
+
+			@Override
+			public long limit()
+			{
+				return pool.size();
+			}
+		};
+	}
+
+	/**
+	 * Creates a pattern generator. The template is parsed once into a character array and the
+	 * positions of its placeholders.
+	 *
+	 * @param template The pattern
+	 * @return the generator
+	 */
+	private static ColumnGenerator patternGenerator(String template)
+	{
+		StringBuilder literal = new StringBuilder(template.length());
+		List<Integer> letterPositions = new ArrayList<>();
+		List<Integer> digitPositions = new ArrayList<>();
+		for (int i = 0; i < template.length(); i++)
+		{
+			char c = template.charAt(i);
+			if (c == '\\' && i + 1 < template.length())
+			{
+				literal.append(template.charAt(++i));
+			}
+			else if (c == '?')
+			{
+				letterPositions.add(literal.length());
+				literal.append(c);
+			}
+			else if (c == '#')
+			{
+				digitPositions.add(literal.length());
+				literal.append(c);
+			}
+			else
+			{
+				literal.append(c);
+			}
+		}
+		char[] chars = literal.toString().toCharArray();
+		int[] letters = letterPositions.stream().mapToInt(Integer::intValue).toArray();
+		int[] digits = digitPositions.stream().mapToInt(Integer::intValue).toArray();
+
+		return random -> {
+			char[] value = chars.clone();
+			for (int pos : letters)
+			{
+				value[pos] = ALPHA_LETTERS.charAt(random.nextInt(ALPHA_LETTERS.length()));
+			}
+			for (int pos : digits)
+			{
+				value[pos] = (char) ('0' + random.nextInt(10));
+			}
+			return new String(value);
+		};
+	}
+
+	/**
+	 * Creates a foreign-key sampler by reading the distinct values of the parent column.
+	 *
+	 * @param args "table.column"
+	 * @param connection The connection to read the parent with
+	 * @return the generator
+	 * @throws SQLException if the parent cannot be read
+	 */
+	private static ColumnGenerator foreignKeySampler(String args, Connection connection) throws SQLException
+	{
+		int dot = args.lastIndexOf('.');
+		if (dot < 1)
+		{
+			throw new IllegalArgumentException("fk needs table.column: " + args);
+		}
+		String table = args.substring(0, dot).trim();
+		String column = args.substring(dot + 1).trim();
+		if (!table.matches("[\\w.]+") || !column.matches("\\w+"))
+		{
+			throw new IllegalArgumentException("fk table and column must be plain identifiers: " + args);
+		}
+
+		List<Object> values = new ArrayList<>();
+		try (
+			Statement stmt = connection.createStatement();
+			ResultSet rs = stmt.executeQuery("SELECT DISTINCT " + column + " FROM " + table);
+		)
+		{
+			while (rs.next())
+			{
+				values.add(rs.getObject(1));
+			}
+		}
+		if (values.isEmpty())
+		{
+			throw new IllegalArgumentException("fk parent " + args + " has no rows, seed it first");
+		}
+		Object[] parentValues = values.toArray();
+		return random -> parentValues[random.nextInt(parentValues.length)];
+	}
+
+	/**
+	 * Loads the lines of a pool from the file system, falling back to the classpath. A compiled pool
+	 * of the same name is used instead of a text pool if there is one, see {@link NamePool#load}.
+	 *
+	 * @param resource A file path or classpath resource name
+	 * @return the non-empty lines of the pool
+	 * @throws IllegalArgumentException if the pool cannot be found or read
+	 */
+	static List<String> loadPool(String resource)
+	{
+		return NamePool.load(resource);
+	}
+}
@@ -0,0 +1,367 @@
+/*********************************************************************************************************
+ * File:  FanOutInserter.java Course Materials CST8277
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 2024-09-14
+ *
+ * @description This class loads the same rows into several databases at once. Rows are produced once
+ *              by the caller and grouped into batches; every batch is handed, as the same immutable
+ *              list, to one insert pipeline per target. Each pipeline runs on its own thread with its
+ *              own connection and {@link FaultIsolatingBatchInserter}, behind a bounded queue, so a
+ *              slow target throttles the producer instead of letting batches pile up in memory.
+ *
+ * @see jdbccmd.FaultIsolatingBatchInserter
+ * @see java.util.concurrent.ArrayBlockingQueue
+ */
+package jdbccmd;
+
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fans rows out to one insert pipeline per target database.
+ * <p>
+ * The first target is the primary: only its pipeline notifies the listener (e.g. to log the inserted
+ * rows and their generated keys) and it writes to the given reject file; the reject files of the
+ * other targets are prefixed with {@code target<n>-}. A target that fails (e.g. its connection
+ * drops) is dropped from the run while the others carry on. Rows are shared between the pipelines
+ * and must not be modified once added, except by the primary's listener.
+ * </p>
+ *
+ * @param <T> the type of row inserted
+ */
+public class FanOutInserter<T> implements AutoCloseable {
+
+	private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	/** How long the producer waits on a full queue before checking whether its target has failed */
+	private static final long OFFER_TIMEOUT_MS = 100;
+
+	/**
+	 * The outcome of one target.
+	 *
+	 * @param jdbcUrl The JDBC URL of the target
+	 * @param inserted The number of committed rows, including those committed before the target failed
+	 * @param rejected The number of rejected rows, including those rejected before the target failed
+	 * @param elapsedMillis How long the pipeline ran
+	 * @param failure Why the target was dropped, null if it completed
+	 */
+	public record TargetResult(String jdbcUrl, long inserted, long rejected, long elapsedMillis, Throwable failure) {
+	}
+
+	/**
+	 * Work done on a target's connection once its rows are loaded.
+	 */
+	@FunctionalInterface
+	public interface FinishTask {
+		void finish(Connection connection) throws SQLException;
+	}
+
+	/** The insert pipelines, the primary first */
+	protected final List<Target> targets = new ArrayList<>();
+	/** One thread per target */
+	protected final ExecutorService pool;
+	/** Number of rows per batch */
+	protected final int batchSize;
+	/** The batch being filled by the producer */
+	protected List<T> batch;
+
+	/**
+	 * Starts one insert pipeline per target.
+	 *
+	 * @param jdbcUrls The JDBC URLs of the targets, the primary first
+	 * @param dbProps Connection properties (user and password), the same for every target
+	 * @param prepareSql Statement each pipeline executes before loading (e.g. a TRUNCATE), may be null
+	 * @param insertSql The parameterized INSERT statement
+	 * @param finishTask Run by each pipeline once its rows are loaded (e.g. to advance an ID generator), may be null
+	 * @param batchSize The number of rows per batch
+	 * @param queueDepth The number of batches each target may fall behind before the producer waits
+	 * @param binder Binds a row to the INSERT statement
+	 * @param rejectFormatter Formats a rejected row for the reject file
+	 * @param rejectFile The reject file of the primary
+	 * @param primaryListener Notified of every row committed on the primary, may be null
+	 */
+	public FanOutInserter(List<String> jdbcUrls, Properties dbProps, String prepareSql, String insertSql,
+			FinishTask finishTask, int batchSize, int queueDepth, FaultIsolatingBatchInserter.RowBinder<T> binder, Function<T, String> rejectFormatter,
+			Path rejectFile, FaultIsolatingBatchInserter.InsertListener<T> primaryListener)
+	{
+		if (jdbcUrls.isEmpty())
+		{
+			throw new IllegalArgumentException("at least one target is needed");
+		}
+		if (batchSize < 1 || queueDepth < 1)
+		{
+			throw new IllegalArgumentException("batch size and queue depth must be at least 1");
+		}
+		this.batchSize = batchSize;
+		this.batch = new ArrayList<>(batchSize);
+		this.pool = Executors.newFixedThreadPool(jdbcUrls.size());
+		for (int i = 0; i < jdbcUrls.size(); i++)
+		{
+			Target target = new Target(jdbcUrls.get(i), dbProps, prepareSql, insertSql, finishTask, queueDepth, binder, rejectFormatter,
+					rejectFileOf(rejectFile, i), i == 0 ? primaryListener : null);
+			targets.add(target);
+			target.future = pool.submit(target::run);
+		}
+		pool.shutdown();
+	}
+
+	/**
+	 * Adds a row, handing a full batch to every live target.
+	 *
+	 * @param row The row to insert
+	 * @throws SQLException if every target has failed
+	 */
+	public void add(T row) throws SQLException
+	{
+		batch.add(row);
+		if (batch.size() >= batchSize)
+		{
+			publish();
+		}
+	}
+
+	/**
+	 * Hands the current batch to every live target, waiting while a target's queue is full.
+	 *
+	 * @throws SQLException if every target has failed
+	 */
+	protected void publish() throws SQLException
+	{
+		if (batch.isEmpty())
+		{
+			return;
+		}
+		List<T> shared = Collections.unmodifiableList(batch);
+		batch = new ArrayList<>(batchSize);
+		boolean delivered = false;
+		for (Target target : targets)
+		{
+			delivered |= target.offer(shared);
+		}
+		if (!delivered)
+		{
+			throw new SQLException("every target failed, see the log for the causes");
+		}
+	}
+
+	/**
+	 * Publishes the last batch and waits for every pipeline to finish, see {@link #getResults()}.
+	 *
+	 * @throws SQLException if every target has failed
+	 */
+	@Override
+	public void close() throws SQLException
+	{
+		try
+		{
+			publish();
+		}
+		finally
+		{
+			for (Target target : targets)
+			{
+				// an empty batch tells the pipeline the producer is done
+				target.offer(Collections.emptyList());
+			}
+			for (Target target : targets)
+			{
+				target.await();
+			}
+		}
+		if (targets.stream().allMatch(target -> target.failure != null))
+		{
+			throw new SQLException("every target failed, see the log for the causes");
+		}
+	}
+
+	/**
+	 * Gets the reject file of a target.
+	 *
+	 * @param rejectFile The reject file of the primary
+	 * @param target The index of the target, 0 for the primary
+	 * @return the reject file, prefixed with {@code target<n>-} for all but the primary.
+	 */
+	public static Path rejectFileOf(Path rejectFile, int target)
+	{
+		return target == 0 ? rejectFile : rejectFile.resolveSibling("target" + (target + 1) + "-" + rejectFile.getFileName());
+	}
+
+	/**
+	 * Gets the outcome of every target, once closed.
+	 *
+	 * @return the results, the primary first.
+	 */
+	public List<TargetResult> getResults()
+	{
+		List<TargetResult> results = new ArrayList<>(targets.size());
+		for (Target target : targets)
+		{
+			results.add(new TargetResult(target.jdbcUrl, target.inserted, target.rejected, target.elapsedMillis, target.failure));
+		}
+		return results;
+	}
+
+	/**
+	 * The insert pipeline of one target: a bounded queue of batches drained by one thread.
+	 */
+	protected class Target {
+
+		private final String jdbcUrl;
+		private final Properties dbProps;
+		private final String prepareSql;
+		private final String insertSql;
+		private final FinishTask finishTask;
+		private final BlockingQueue<List<T>> queue;
+		private final FaultIsolatingBatchInserter.RowBinder<T> binder;
+		private final Function<T, String> rejectFormatter;
+		private final Path rejectFile;
+		private final FaultIsolatingBatchInserter.InsertListener<T> listener;
+
+		private Future<?> future;
+		private volatile Throwable failure;
+		private long inserted;
+		private long rejected;
+		private long elapsedMillis;
+
+		Target(String jdbcUrl, Properties dbProps, String prepareSql, String insertSql, FinishTask finishTask, int queueDepth,
+				FaultIsolatingBatchInserter.RowBinder<T> binder, Function<T, String> rejectFormatter, Path rejectFile,
+				FaultIsolatingBatchInserter.InsertListener<T> listener)
+		{
+			this.jdbcUrl = jdbcUrl;
+			this.dbProps = dbProps;
+			this.prepareSql = prepareSql;
+			this.insertSql = insertSql;
+			this.finishTask = finishTask;
+			this.queue = new ArrayBlockingQueue<>(queueDepth);
+			this.binder = binder;
+			this.rejectFormatter = rejectFormatter;
+			this.rejectFile = rejectFile;
+			this.listener = listener;
+		}
+
+		/**
+		 * Queues a batch, blocking while the queue is full.
+		 *
+		 * @param rows The batch
+		 * @return false if this target has failed and the batch was dropped
+		 */
+		boolean offer(List<T> rows)
+		{
+			try
+			{
+				while (failure == null)
+				{
+					if (queue.offer(rows, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS))
+					{
+						return true;
+					}
+				}
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			return false;
+		}
+
+		/**
+		 * Loads the batches of the queue until the producer is done. Failures are kept in
+		 * {@link #failure} rather than thrown.
+		 *
+		 * @return null
+		 */
+		Void run()
+		{
+			Instant startTime = Instant.now();
+			try (
+				Connection connection = DriverManager.getConnection(jdbcUrl, dbProps);
+				Statement stmt = connection.createStatement();
+			)
+			{
+				if (prepareSql != null)
+				{
+					stmt.execute(prepareSql);
+				}
+				try (
+					FaultIsolatingBatchInserter<T> inserter = new FaultIsolatingBatchInserter<>(connection, insertSql,
+							batchSize, binder, rejectFormatter, rejectFile, listener);
+				)
+				{
+					try
+					{
+						for (List<T> rows = queue.take(); !rows.isEmpty(); rows = queue.take())
+						{
+							for (T row : rows)
+							{
+								inserter.add(row);
+							}
+							inserter.flush();
+						}
+					}
+					finally
+					{
+						// batches committed before a failure stay in the target, report them
+						inserted = inserter.getInsertedCount();
+						rejected = inserter.getRejectedCount();
+					}
+				}
+				if (finishTask != null)
+				{
+					finishTask.finish(connection);
+				}
+			}
+			catch (Exception e)
+			{
+				failure = e;
+				// unblock the producer, it stops feeding this target once it sees the failure
+				queue.clear();
+				logger.error("target {} failed after committing {} rows and is dropped from the load: {}", jdbcUrl, inserted,
+						e.getLocalizedMessage());
+			}
+			elapsedMillis = Duration.between(startTime, Instant.now()).toMillis();
+			return null;
+		}
+
+		/**
+		 * Waits for the pipeline to finish.
+		 */
+		void await()
+		{
+			try
+			{
+				future.get();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			catch (ExecutionException e)
+			{
+				failure = e.getCause();
+			}
+		}
+	}
+}
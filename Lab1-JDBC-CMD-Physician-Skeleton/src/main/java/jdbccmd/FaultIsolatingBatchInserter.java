@@ -0,0 +1,439 @@
+/*********************************************************************************************************
+ * File:  FaultIsolatingBatchInserter.java Course Materials CST8277
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 2024-09-14
+ *
+ * @description This class inserts rows in JDBC batches, one transaction per batch. When a batch fails
+ *              it is rolled back and split in halves, recursively, until the offending rows are
+ *              isolated. Those rows are written to a reject file and the load carries on, so a few bad
+ *              rows cost a handful of extra round trips instead of aborting the run or falling back
+ *              to row-at-a-time inserts.
+ *
+ * @see java.sql.PreparedStatement#addBatch()
+ * @see java.sql.PreparedStatement#executeBatch()
+ * @see java.sql.BatchUpdateException
+ */
+package jdbccmd;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Batched inserter that isolates failing rows by binary splitting.
+ * <p>
+ * Rows are buffered until {@code batchSize} are pending, then bound and executed as one batch in its
+ * own transaction. On failure the batch is rolled back and each half is retried; a single row that
+ * still fails is rejected. A batch with {@code k} bad rows therefore costs roughly
+ * {@code 1 + 2k log2(batchSize)} executions instead of {@code batchSize}.
+ * </p>
+ * <p>
+ * Errors that are not caused by the data (lost connection, SQLState class 08) are rethrown rather than
+ * split, since every half would fail the same way.
+ * </p>
+ *
+ * @param <T> the type of row being inserted
+ */
+public class FaultIsolatingBatchInserter<T> implements AutoCloseable {
+
+	private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	/** SQLState class for connection exceptions, these are never caused by a single row */
+	private static final String CONNECTION_EXCEPTION_CLASS = "08";
+
+	/**
+	 * Binds the values of one row to the insert statement.
+	 *
+	 * @param <T> the type of row being bound
+	 */
+	@FunctionalInterface
+	public interface RowBinder<T> {
+		void bind(PreparedStatement pstmt, T row) throws SQLException;
+	}
+
+	/**
+	 * Receives every row once its batch has been committed.
+	 *
+	 * @param <T> the type of row inserted
+	 */
+	@FunctionalInterface
+	public interface InsertListener<T> {
+		/**
+		 * @param row the committed row
+		 * @param generatedKey the generated primary key, or -1 if the driver did not return one
+		 */
+		void inserted(T row, long generatedKey);
+	}
+
+	/** The connection used for all batches, auto-commit is off while this inserter is open */
+	protected final Connection connection;
+	/** The insert statement, prepared to return generated keys */
+	protected final PreparedStatement pstmtInsert;
+	/** Binds one row to {@link #pstmtInsert} */
+	protected final RowBinder<T> binder;
+	/** Formats a rejected row as one line of the reject file */
+	protected final Function<T, String> rejectFormatter;
+	/** Notified of every committed row, may be null */
+	protected final InsertListener<T> listener;
+	/** Where rejected rows are written, opened on first reject */
+	protected final Path rejectFile;
+	/** Number of rows per batch */
+	protected final int batchSize;
+	/** Auto-commit setting to restore on close */
+	private final boolean previousAutoCommit;
+
+	/** Rows waiting for the next batch */
+	protected final List<T> pending;
+	/** Lazily opened reject file writer */
+	protected BufferedWriter rejectWriter;
+
+	/** Number of committed rows */
+	protected long insertedCount;
+	/** Number of rejected rows */
+	protected long rejectedCount;
+	/** Number of batch executions including retries, to show how much splitting cost */
+	protected long executions;
+
+	/**
+	 * Creates an inserter.
+	 *
+	 * @param connection The connection to insert with
+	 * @param insertSql The parameterized INSERT statement
+	 * @param batchSize The number of rows per batch
+	 * @param binder Binds a row to the INSERT statement
+	 * @param rejectFormatter Formats a rejected row for the reject file
+	 * @param rejectFile The file rejected rows are written to
+	 * @param listener Notified of every committed row, may be null
+	 * @throws SQLException if the statement cannot be prepared
+	 */
+	public FaultIsolatingBatchInserter(Connection connection, String insertSql, int batchSize, RowBinder<T> binder,
+			Function<T, String> rejectFormatter, Path rejectFile, InsertListener<T> listener) throws SQLException
+	{
+		if (batchSize < 1)
+		{
+			throw new IllegalArgumentException("batch size must be at least 1");
+		}
+		this.connection = connection;
+		this.binder = binder;
+		this.rejectFormatter = rejectFormatter;
+		this.rejectFile = rejectFile;
+		this.listener = listener;
+		this.batchSize = batchSize;
+		this.pending = new ArrayList<>(batchSize);
+		this.previousAutoCommit = connection.getAutoCommit();
+		this.pstmtInsert = connection.prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS);
+		connection.setAutoCommit(false);
+	}
+
+	/**
+	 * Queues a row, executing a batch once enough rows are pending.
+	 *
+	 * @param row The row to insert
+	 * @throws SQLException if the connection fails
+	 */
+	public void add(T row) throws SQLException
+	{
+		pending.add(row);
+		if (pending.size() >= batchSize)
+		{
+			flush();
+		}
+	}
+
+	/**
+	 * Executes the pending rows, isolating and rejecting any that fail.
+	 *
+	 * @throws SQLException if the connection fails
+	 */
+	public void flush() throws SQLException
+	{
+		if (!pending.isEmpty())
+		{
+			insertRange(0, pending.size());
+			pending.clear();
+		}
+	}
+
+	/**
+	 * Inserts {@code pending[from, to)} as one transaction, splitting it in halves on failure.
+	 *
+	 * @param from Index of the first row, inclusive
+	 * @param to Index of the last row, exclusive
+	 * @throws SQLException if the connection fails
+	 */
+	protected void insertRange(int from, int to) throws SQLException
+	{
+		long[] keys = new long[to - from];
+		try
+		{
+			executions++;
+			for (int i = from; i < to; i++)
+			{
+				binder.bind(pstmtInsert, pending.get(i));
+				pstmtInsert.addBatch();
+			}
+			pstmtInsert.executeBatch();
+			readGeneratedKeys(keys);
+			connection.commit();
+		}
+		catch (SQLException e)
+		{
+			// a rollback failing on a dead connection must not hide why the batch failed
+			boolean connectionFailure = isConnectionFailure(e);
+			try
+			{
+				pstmtInsert.clearBatch();
+				connection.rollback();
+			}
+			catch (SQLException rollbackFailure)
+			{
+				e.addSuppressed(rollbackFailure);
+				throw e;
+			}
+			if (connectionFailure)
+			{
+				throw e;
+			}
+			if (to - from == 1)
+			{
+				reject(pending.get(from), e);
+			}
+			else
+			{
+				int mid = (from + to) >>> 1;
+				logger.debug("batch of {} rows failed ({}), retrying as {} + {}", to - from, e.getLocalizedMessage(),
+						mid - from, to - mid);
+				insertRange(from, mid);
+				insertRange(mid, to);
+			}
+			return;
+		}
+
+		insertedCount += to - from;
+		if (listener != null)
+		{
+			for (int i = from; i < to; i++)
+			{
+				listener.inserted(pending.get(i), keys[i - from]);
+			}
+		}
+	}
+
+	/**
+	 * Reads the keys generated by the last batch, in row order.
+	 *
+	 * @param keys Filled with the generated keys, entries the driver did not return are left at -1
+	 * @throws SQLException if the keys cannot be read
+	 */
+	private void readGeneratedKeys(long[] keys) throws SQLException
+	{
+		int i = 0;
+		try (ResultSet generatedKeys = pstmtInsert.getGeneratedKeys())
+		{
+			while (i < keys.length && generatedKeys.next())
+			{
+				keys[i++] = generatedKeys.getLong(1);
+			}
+		}
+		while (i < keys.length)
+		{
+			keys[i++] = -1;
+		}
+	}
+
+	/**
+	 * Writes a row that failed on its own to the reject file.
+	 *
+	 * @param row The rejected row
+	 * @param cause Why the row was rejected
+	 * @throws SQLException if the reject file cannot be written, so rows are never silently lost
+	 */
+	protected void reject(T row, SQLException cause) throws SQLException
+	{
+		rejectedCount++;
+		logger.warn("rejected row {}: {}", row, cause.getLocalizedMessage());
+		try
+		{
+			if (rejectWriter == null)
+			{
+				rejectWriter = Files.newBufferedWriter(rejectFile, StandardCharsets.UTF_8);
+			}
+			rejectWriter.write(rejectFormatter.apply(row));
+			rejectWriter.write(',');
+			rejectWriter.write(csvField(cause.getSQLState() + " " + cause.getLocalizedMessage()));
+			rejectWriter.newLine();
+		}
+		catch (IOException e)
+		{
+			throw new SQLException("could not write rejected row to " + rejectFile, e);
+		}
+	}
+
+	/**
+	 * Checks whether an exception means the connection itself is unusable.
+	 *
+	 * @param e The exception thrown by the batch
+	 * @return true for SQLState class 08 errors or a closed connection, or if the connection cannot tell
+	 */
+	protected boolean isConnectionFailure(SQLException e)
+	{
+		String sqlState = e.getSQLState();
+		if (sqlState != null && sqlState.startsWith(CONNECTION_EXCEPTION_CLASS))
+		{
+			return true;
+		}
+		try
+		{
+			return connection.isClosed();
+		}
+		catch (SQLException closedFailure)
+		{
+			e.addSuppressed(closedFailure);
+			return true;
+		}
+	}
+
+	/**
+	 * Gets the number of rows committed so far.
+	 *
+	 * @return the number of inserted rows.
+	 */
+	public long getInsertedCount()
+	{
+		return insertedCount;
+	}
+
+	/**
+	 * Gets the number of rows written to the reject file so far.
+	 *
+	 * @return the number of rejected rows.
+	 */
+	public long getRejectedCount()
+	{
+		return rejectedCount;
+	}
+
+	/**
+	 * Gets the number of batch executions, including the retries caused by splitting.
+	 *
+	 * @return the number of executeBatch calls.
+	 */
+	public long getExecutions()
+	{
+		return executions;
+	}
+
+	/**
+	 * Flushes the pending rows, closes the statement and reject file and restores auto-commit. A
+	 * cleanup failing after the final batch failed is added to the batch's exception as suppressed,
+	 * so the cause of the failure is the one thrown.
+	 *
+	 * @throws SQLException if the final batch or the cleanup fails
+	 */
+	@Override
+	public void close() throws SQLException
+	{
+		Throwable failure = null;
+		try
+		{
+			flush();
+		}
+		catch (Throwable e)
+		{
+			failure = e;
+			throw e;
+		}
+		finally
+		{
+			SQLException cleanupFailure = cleanUp();
+			if (cleanupFailure != null)
+			{
+				if (failure == null)
+				{
+					throw cleanupFailure;
+				}
+				failure.addSuppressed(cleanupFailure);
+			}
+		}
+	}
+
+	/**
+	 * Closes the statement and reject file and restores auto-commit, each step running even if
+	 * one before it failed.
+	 *
+	 * @return the first failure, the later ones suppressed in it, or null if none failed
+	 */
+	private SQLException cleanUp()
+	{
+		SQLException failure = null;
+		try
+		{
+			pstmtInsert.close();
+		}
+		catch (SQLException e)
+		{
+			failure = e;
+		}
+		try
+		{
+			if (!connection.isClosed())
+			{
+				connection.setAutoCommit(previousAutoCommit);
+			}
+		}
+		catch (SQLException e)
+		{
+			if (failure == null)
+			{
+				failure = e;
+			}
+			else
+			{
+				failure.addSuppressed(e);
+			}
+		}
+		if (rejectWriter != null)
+		{
+			try
+			{
+				rejectWriter.close();
+			}
+			catch (IOException e)
+			{
+				logger.error("could not close reject file {}: {}", rejectFile, e.getLocalizedMessage());
+			}
+		}
+		return failure;
+	}
+
+	/**
+	 * Quotes a value for a CSV line, doubling embedded quotes. Null is written as an empty field.
+	 *
+	 * @param value The value to quote
+	 * @return the quoted field.
+	 */
+	public static String csvField(String value)
+	{
+		if (value == null)
+		{
+			return "";
+		}
+		return '"' + value.replace("\"", "\"\"") + '"';
+	}
+}
@@ -8,8 +8,11 @@
  * @description This class generates random physician records and inserts them into a database. 
  *              It uses the Picocli library for command-line argument parsing, the Podam library for 
  *              generating random data, and SLF4J for logging. The class includes methods to 
- *              truncate the existing data in the physician table, insert new records, and log 
- *              information about the generated records.
+ *              truncate the existing data in the physician table, insert new records in batches 
+ *              (isolating and rejecting bad rows) or seed the tables of a declarative seed spec, log 
+ *              information about the generated records and optionally run a read/write workload 
+ *              against the seeded table. The verify subcommand checks a loaded table against a 
+ *              seeded run or a snapshot, the sync subcommand applies the differences to a snapshot.
  * 
  * @see picocli.CommandLine
  * @see uk.co.jemos.podam.api.PodamFactory
@@ -21,9 +24,12 @@
  * @see java.sql.Connection
  * @see java.sql.DriverManager
  * @see java.sql.PreparedStatement
- * @see java.sql.ResultSet
  * @see java.sql.SQLException
- * @see java.sql.Statement
+ * @see jdbccmd.FaultIsolatingBatchInserter
+ * @see jdbccmd.FanOutInserter
+ * @see jdbccmd.PhysicianColumnStore
+ * @see jdbccmd.PhysicianVerifier
+ * @see jdbccmd.PhysicianSync
  * @see java.time.Duration
  * @see java.time.Instant
  * @see java.util.Properties
@@ -31,16 +37,17 @@
 
 package jdbccmd;
 
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.UncheckedIOException;
 import java.lang.invoke.MethodHandles;
-import java.sql.Connection;
-import java.sql.DriverManager;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.List;
 import java.util.Properties;
 
 import org.slf4j.Logger;
@@ -50,6 +57,7 @@ import jdbccmd.LoggingOutputStream.LogLevel;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.ParseResult;
 import uk.co.jemos.podam.api.ClassInfoStrategy;
 import uk.co.jemos.podam.api.DefaultClassInfoStrategy;
 import uk.co.jemos.podam.api.PodamFactory;
@@ -77,12 +85,18 @@ public class GenerateRandomPhysicianRecords {
 	/** Message for elapsed time logging */
 	protected static final String ELAPSED_TIME_MSG = "Elapsed time = {} ms";
 	
+	/** Message for inserted and rejected row counts */
+	protected static final String INSERTED_REJECTED_MSG = "Inserted = {}, rejected = {}";
+	
 	/** SQL statement to truncate the physician table */
 	private static final String TRUNC_PHYSICIAN = "TRUNCATE TABLE PHYSICIAN";
 	
 	/** SQL statement to insert a physician record */
 	protected static final String INSERT_PHYSICIAN = "INSERT INTO PHYSICIAN(LAST_NAME, FIRST_NAME, EMAIL, PHONE, SPECIALTY, CREATED) VALUES (?, ?, ?, ?, ?, now())";
 
+	/** SQL statement to insert a physician record with the id of its row, for seeded runs */
+	protected static final String INSERT_PHYSICIAN_WITH_ID = "INSERT INTO PHYSICIAN(ID, LAST_NAME, FIRST_NAME, EMAIL, PHONE, SPECIALTY, CREATED) VALUES (?, ?, ?, ?, ?, ?, now())";
+
 	/**
 	 * Main method to run the application.
 	 * <p>
@@ -94,12 +108,17 @@ public class GenerateRandomPhysicianRecords {
 	public static void main(String[] args) 
 	{
 		CmdLineOptions cmdLineOptions = new CmdLineOptions();
+		VerifyCmdLineOptions verifyOptions = new VerifyCmdLineOptions();
+		SyncCmdLineOptions syncOptions = new SyncCmdLineOptions();
 		CommandLine cmdLine = new CommandLine(cmdLineOptions);
 		cmdLine.setCommandName(MY_KLASSNAME.getName());
+		cmdLine.addSubcommand(VerifyCmdLineOptions.NAME, verifyOptions);
+		cmdLine.addSubcommand(SyncCmdLineOptions.NAME, syncOptions);
+		ParseResult parseResult = null;
 		
 		try 
 		{			
-			cmdLine.parseArgs(args);			
+			parseResult = cmdLine.parseArgs(args);			
 		}
 		catch (ParameterException e) 
 		{
@@ -112,22 +131,198 @@ public class GenerateRandomPhysicianRecords {
 		{
 			logCmdLineUsage(cmdLine, LogLevel.INFO);			
 		} 
+		else if (parseResult.hasSubcommand()) 
+		{
+			String subcommand = parseResult.subcommand().commandSpec().name();
+			if (verifyOptions.helpRequested || syncOptions.helpRequested) 
+			{
+				logCmdLineUsage(cmdLine.getSubcommands().get(subcommand), LogLevel.INFO);
+			}
+			else if (VerifyCmdLineOptions.NAME.equals(subcommand) ? !verify(cmdLineOptions, verifyOptions)
+					: !sync(cmdLineOptions, syncOptions)) 
+			{
+				System.exit(1);
+			}
+		}
 		else 
 		{
-			generatePhysicians(cmdLineOptions.jdbcUrl, cmdLineOptions.username, cmdLineOptions.password,
-					cmdLineOptions.count);
+			if (cmdLineOptions.spec != null) 
+			{
+				generateFromSpec(cmdLineOptions);
+			}
+			else 
+			{
+				generatePhysicians(cmdLineOptions.jdbcUrls, cmdLineOptions.username, cmdLineOptions.password,
+						cmdLineOptions.count, cmdLineOptions.batchSize, cmdLineOptions.queueDepth, cmdLineOptions.rejectFile,
+						cmdLineOptions.seed, cmdLineOptions.snapshot, cmdLineOptions.staged);
+			}
+			
+			if (cmdLineOptions.workloadDuration > 0) 
+			{
+				runWorkload(cmdLineOptions);
+			}
+		}
+	}
+
+	/**
+	 * Verifies the physician table against a seeded run or a snapshot.
+	 * 
+	 * @param cmdLineOptions The parsed command-line options holding the connection settings
+	 * @param verifyOptions The parsed options of the verify subcommand
+	 * @return true if the table matches, false if it does not or could not be verified
+	 */
+	public static boolean verify(CmdLineOptions cmdLineOptions, VerifyCmdLineOptions verifyOptions) 
+	{
+		if ((verifyOptions.seed == null) == (verifyOptions.snapshot == null)) 
+		{
+			logger.error("verify needs exactly one of --seed or --snapshot");
+			return false;
+		}
+		try 
+		{
+			PhysicianVerifier verifier = new PhysicianVerifier(cmdLineOptions.getPrimaryUrl(), cmdLineOptions.username,
+					cmdLineOptions.password, verifyOptions.threads, verifyOptions.rangeSize);
+			List<PhysicianVerifier.Mismatch> mismatches = verifyOptions.seed != null
+					? verifier.verifySeed(verifyOptions.seed, verifyOptions.count)
+					: verifier.verifySnapshot(verifyOptions.snapshot);
+			return mismatches.isEmpty();
+		} 
+		catch (IllegalArgumentException e) 
+		{
+			logger.error("invalid verify settings: {}", e.getLocalizedMessage());
+		}
+		catch (IOException e) 
+		{
+			logger.error("could not read snapshot {}: {}", verifyOptions.snapshot, e.getLocalizedMessage());
+		}
+		catch (SQLException e) 
+		{
+			logger.error("something went wrong verifying physicians, ", e);
+		}
+		return false;
+	}
+
+	/**
+	 * Brings the physician table in line with a snapshot.
+	 * 
+	 * @param cmdLineOptions The parsed command-line options holding the connection, batch and reject settings
+	 * @param syncOptions The parsed options of the sync subcommand
+	 * @return true if the sync completed, false if it failed
+	 */
+	public static boolean sync(CmdLineOptions cmdLineOptions, SyncCmdLineOptions syncOptions) 
+	{
+		try 
+		{
+			new PhysicianSync(cmdLineOptions.getPrimaryUrl(), cmdLineOptions.username, cmdLineOptions.password,
+					cmdLineOptions.batchSize, cmdLineOptions.rejectFile, syncOptions.dryRun).sync(syncOptions.snapshot);
+			return true;
+		} 
+		catch (IllegalArgumentException e) 
+		{
+			logger.error("invalid sync settings: {}", e.getLocalizedMessage());
+		}
+		catch (IOException e) 
+		{
+			logger.error("could not read snapshot {}: {}", syncOptions.snapshot, e.getLocalizedMessage());
+		}
+		catch (SQLException e) 
+		{
+			logger.error("something went wrong syncing physicians, ", e);
+		}
+		return false;
+	}
+
+	/**
+	 * Seeds the tables described by a seed spec instead of running the built-in physician generator.
+	 * 
+	 * @param cmdLineOptions The parsed command-line options holding the connection and spec settings
+	 */
+	public static void generateFromSpec(CmdLineOptions cmdLineOptions) 
+	{
+		Instant startTime = Instant.now();
+		try 
+		{
+			if (cmdLineOptions.jdbcUrls.size() > 1) 
+			{
+				logger.warn("seed specs are loaded into the primary {} only", cmdLineOptions.getPrimaryUrl());
+			}
+			SeedSpec spec = SeedSpec.load(cmdLineOptions.spec);
+			Path rejectDir = cmdLineOptions.rejectFile.toAbsolutePath().getParent();
+			new SpecSeeder(cmdLineOptions.getPrimaryUrl(), cmdLineOptions.username, cmdLineOptions.password, 
+					cmdLineOptions.count, cmdLineOptions.batchSize, rejectDir, cmdLineOptions.seedThreads).seed(spec);
+		} 
+		catch (IOException | IllegalArgumentException e) 
+		{
+			logger.error("invalid seed spec {}: {}", cmdLineOptions.spec, e.getLocalizedMessage());
+		}
+		catch (SQLException e) 
+		{
+			logger.error("something went wrong seeding from spec, ", e);
+		}
+		logger.info(ELAPSED_TIME_MSG, Duration.between(startTime, Instant.now()).toMillis());
+	}
+
+	/**
+	 * Runs the mixed read/write workload against the freshly seeded physician table.
+	 * 
+	 * @param cmdLineOptions The parsed command-line options holding the connection and workload settings
+	 */
+	public static void runWorkload(CmdLineOptions cmdLineOptions) 
+	{
+		try 
+		{
+			new PhysicianWorkload(cmdLineOptions.getPrimaryUrl(), cmdLineOptions.username, cmdLineOptions.password,
+					cmdLineOptions.workloadThreads, cmdLineOptions.workloadDuration, cmdLineOptions.workloadWarmup,
+					cmdLineOptions.workloadMix).run();
+		} 
+		catch (IllegalArgumentException e) 
+		{
+			logger.error("invalid workload settings: {}", e.getLocalizedMessage());
+		}
+		catch (SQLException e) 
+		{
+			logger.error("something went wrong running the workload, ", e);
 		}
 	}
 
 	/**
 	 * Generates random physician records and inserts them into the database.
+	 * <p>
+	 * Rows are inserted in batches of {@code batchSize}, one transaction per batch. Rows that fail are
+	 * isolated by {@link FaultIsolatingBatchInserter} and written to {@code rejectFile} instead of
+	 * aborting the run.
+	 * </p>
+	 * <p>
+	 * Each physician is generated once and loaded into every database through a 
+	 * {@link FanOutInserter}, one pipeline per database running concurrently.
+	 * </p>
+	 * <p>
+	 * With a seed, row {@code n} is always the same physician (see 
+	 * {@link PhysicianManufacturer#seededPhysician}), inserted with id {@code n + 1} rather than an
+	 * AUTO_INCREMENT value, and the run can be checked with the verify subcommand; so can any run
+	 * recorded to a snapshot. The explicit ids keep a rejected row from shifting the ids of the rows
+	 * after it, since InnoDB does not give back the AUTO_INCREMENT values of a rolled back batch.
+	 * </p>
+	 * <p>
+	 * Staged, every physician is generated into a {@link PhysicianColumnStore} first and the store is
+	 * then loaded by row number, so generation is not throttled by the slowest database and the
+	 * physicians are held off-heap in about a tenth of the memory. The data table is logged and the
+	 * snapshot written from the store once the load is done.
+	 * </p>
 	 * 
-	 * @param jdbcUrl The JDBC URL of the database
-	 * @param username The username for the database connection
-	 * @param password The password for the database connection
+	 * @param jdbcUrls The JDBC URLs of the databases to load, the primary first
+	 * @param username The username for the database connections
+	 * @param password The password for the database connections
 	 * @param genCount The number of physician records to generate
+	 * @param batchSize The number of rows per insert batch
+	 * @param queueDepth The number of batches a database may fall behind before generation waits for it
+	 * @param rejectFile The file rows that cannot be inserted into the primary are written to
+	 * @param seed The seed to generate reproducible physicians from, null to generate them with Podam
+	 * @param snapshot The file inserted physicians are recorded to, null for none
+	 * @param staged Whether to generate every physician into a column store before loading
 	 */
-	public static void generatePhysicians(String jdbcUrl, String username, String password, int genCount) 
+	public static void generatePhysicians(List<String> jdbcUrls, String username, String password, int genCount,
+			int batchSize, int queueDepth, Path rejectFile, Long seed, Path snapshot, boolean staged) 
 	{
 		Instant startTime = Instant.now();
 
@@ -135,62 +330,60 @@ public class GenerateRandomPhysicianRecords {
 		dbProps.put("user", username);
 		dbProps.put("password", password);
 
-		try ( 
-        	Connection connection = DriverManager.getConnection(jdbcUrl, dbProps);
-        	PreparedStatement pstmtTrunc = connection.prepareStatement(TRUNC_PHYSICIAN);        	
-        	PreparedStatement pstmtInsert = connection.prepareStatement(INSERT_PHYSICIAN, Statement.RETURN_GENERATED_KEYS);
-        )
-        {	
-        	pstmtTrunc.executeUpdate();
-        	
-			PodamFactory factory = new PodamFactoryImpl();
-			ClassInfoStrategy classInfoStrategy = factory.getClassStrategy();
-			((DefaultClassInfoStrategy) classInfoStrategy).addExcludedField(Physician.class, "id");
-			factory.getStrategy().addOrReplaceTypeManufacturer(String.class, new PhysicianManufacturer());
-			
-			logger.info("==========================================================================  PHYSICIAN DATA ==========================================================================");
-			logger.info("| ID  | Last Name  | First Name | Email                       | Phone Number  | Specialty                                     | Created                             |");
-			logger.info("=====================================================================================================================================================================");
-			
-			for (int cnt = 0, numRandomPhysicians = genCount; cnt < numRandomPhysicians; cnt++) 
+		PodamFactory factory = new PodamFactoryImpl();
+		ClassInfoStrategy classInfoStrategy = factory.getClassStrategy();
+		((DefaultClassInfoStrategy) classInfoStrategy).addExcludedField(Physician.class, "id");
+		factory.getStrategy().addOrReplaceTypeManufacturer(String.class, new PhysicianManufacturer());
+
+		List<FanOutInserter.TargetResult> results = List.of();
+
+		PhysicianColumnStore store = null;
+		if (staged) 
+		{
+			store = new PhysicianColumnStore();
+			for (int cnt = 0; cnt < genCount; cnt++) 
+			{
+				store.append(nextPhysician(factory, seed, cnt));
+			}
+			logger.info("staged {} physicians in {} bytes off-heap", store.size(), store.getOffHeapBytes());
+		}
+		
+		logger.info("==========================================================================  PHYSICIAN DATA ==========================================================================");
+		logger.info("| ID  | Last Name  | First Name | Email                       | Phone Number  | Specialty                                     | Created                             |");
+		logger.info("=====================================================================================================================================================================");
+		
+		try (
+			PhysicianSnapshot.Writer snapshotWriter = snapshot == null ? null : PhysicianSnapshot.create(snapshot);
+		)
+		{
+			if (store != null) 
 			{
-				Physician randomPhysician = factory.manufacturePojoWithFullData(Physician.class);
-				String formattedPhoneNumber = formatPhoneNumber(randomPhysician.getPhoneNumber());
-				
-				pstmtInsert.setString(1, randomPhysician.getLastName());
-				pstmtInsert.setString(2, randomPhysician.getFirstName());
-				pstmtInsert.setString(3, randomPhysician.getEmail());
-				pstmtInsert.setString(4, formattedPhoneNumber);
-				pstmtInsert.setString(5, randomPhysician.getSpecialty());
-				
-				pstmtInsert.execute();
-				
-				try (ResultSet generatedKeys = pstmtInsert.getGeneratedKeys()) 
+				results = loadStagedPhysicians(store, jdbcUrls, dbProps, batchSize, queueDepth, rejectFile, seed != null);
+				logStagedPhysicians(store, snapshotWriter);
+			}
+			else 
+			{
+				// every target truncates and loads on its own thread; only the primary logs and records rows
+				FanOutInserter<Physician> inserter = new FanOutInserter<>(jdbcUrls, dbProps, TRUNC_PHYSICIAN, 
+						seed == null ? INSERT_PHYSICIAN : INSERT_PHYSICIAN_WITH_ID, PhysicianIdGenerator::advance, batchSize,
+						queueDepth, seed == null ? GenerateRandomPhysicianRecords::bindPhysician : GenerateRandomPhysicianRecords::bindPhysicianWithId,
+						GenerateRandomPhysicianRecords::toRejectLine, rejectFile, (physician, id) -> {
+							long physicianId = seed == null ? id : physician.getId();
+							logInsertedPhysician(physician, physicianId);
+							recordInsertedPhysician(snapshotWriter, physician, physicianId);
+						});
+				try 
 				{
-					if (generatedKeys.next()) 
+					for (int cnt = 0; cnt < genCount; cnt++) 
 					{
-						int id = generatedKeys.getInt(1); 
-						randomPhysician.setId(id);
-						logger.debug("created random physician \r\n\t{}", randomPhysician);
-					
-						String logMessage = String.format(
-						    "| %-3s | %-10s | %-10s | %-27s | %-13s | %-45s | %-35s |", 
-						    id,
-						    randomPhysician.getLastName(),
-						    randomPhysician.getFirstName(),
-						    randomPhysician.getEmail(),
-						    formattedPhoneNumber,
-						    randomPhysician.getSpecialty(),
-						    randomPhysician.getCreated().toString()
-						);
-
-						logger.info(logMessage);
+						inserter.add(nextPhysician(factory, seed, cnt));
 					}
-					else 
-					{
-						logger.error("could not retrieve generated PK");
-					}
-				}				
+				}
+				finally 
+				{
+					inserter.close();
+					results = inserter.getResults();
+				}
 			}
 			logger.info("|                                                                                                                                                                   |"); 
 		} 
@@ -198,14 +391,305 @@ public class GenerateRandomPhysicianRecords {
         {
 			logger.error("something went wrong inserting new physician, ", e);
 		}
+        catch (IOException e) 
+        {
+			logger.error("could not write snapshot {}: {}", snapshot, e.getLocalizedMessage());
+		}
 
 		Instant endTime = Instant.now();
 		long elapsedTime = Duration.between(startTime, endTime).toMillis();
 		logger.info("| " + ELAPSED_TIME_MSG + "                                                                                                                                            |", elapsedTime);
+		for (int i = 0; i < results.size(); i++) 
+		{
+			FanOutInserter.TargetResult result = results.get(i);
+			logger.info("| {} ({} ms): " + INSERTED_REJECTED_MSG, result.jdbcUrl(), result.elapsedMillis(), result.inserted(), result.rejected());
+			if (result.failure() != null) 
+			{
+				logger.error("| {} failed: {}", result.jdbcUrl(), result.failure().getLocalizedMessage());
+			}
+			if (result.rejected() > 0) 
+			{
+				logger.warn("| rejected rows written to {}", FanOutInserter.rejectFileOf(rejectFile, i).toAbsolutePath());
+			}
+		}
 		logger.info("|                                                                                                                                                                   |"); 
 		logger.info("=====================================================================================================================================================================");
 	}
 
+	/**
+	 * Generates one physician.
+	 * 
+	 * @param factory The Podam factory used without a seed
+	 * @param seed The seed, null to generate with Podam
+	 * @param index The row number of the physician
+	 * @return the physician, with id {@code index + 1} when seeded and without an id otherwise.
+	 */
+	protected static Physician nextPhysician(PodamFactory factory, Long seed, int index) 
+	{
+		if (seed != null) 
+		{
+			Physician seededPhysician = PhysicianManufacturer.seededPhysician(seed, index);
+			seededPhysician.setId(index + 1);
+			return seededPhysician;
+		}
+		Physician randomPhysician = factory.manufacturePojoWithFullData(Physician.class);
+		randomPhysician.setPhoneNumber(formatPhoneNumber(randomPhysician.getPhoneNumber()));
+		return randomPhysician;
+	}
+
+	/**
+	 * Loads the rows of a column store into every database, by row number, and stores the ids of the
+	 * rows loaded into the primary in the id column: the generated keys, or the row number plus one
+	 * when the ids are explicit.
+	 * 
+	 * @param store The staged physicians
+	 * @param jdbcUrls The JDBC URLs of the databases to load, the primary first
+	 * @param dbProps The connection properties
+	 * @param batchSize The number of rows per insert batch
+	 * @param queueDepth The number of batches a database may fall behind before loading waits for it
+	 * @param rejectFile The file rows that cannot be inserted into the primary are written to
+	 * @param explicitIds Whether to insert row {@code n} with id {@code n + 1} rather than AUTO_INCREMENT
+	 * @return the outcome of every database, the primary first.
+	 * @throws SQLException if every database failed
+	 */
+	protected static List<FanOutInserter.TargetResult> loadStagedPhysicians(PhysicianColumnStore store,
+			List<String> jdbcUrls, Properties dbProps, int batchSize, int queueDepth, Path rejectFile, boolean explicitIds)
+			throws SQLException 
+	{
+		FanOutInserter<Integer> inserter = new FanOutInserter<>(jdbcUrls, dbProps, TRUNC_PHYSICIAN,
+				explicitIds ? INSERT_PHYSICIAN_WITH_ID : INSERT_PHYSICIAN, PhysicianIdGenerator::advance, batchSize, queueDepth,
+				(pstmtInsert, row) -> {
+					if (explicitIds) 
+					{
+						pstmtInsert.setInt(1, row + 1);
+					}
+					bindPhysician(pstmtInsert, explicitIds ? 2 : 1, store, row);
+				},
+				row -> toRejectLine(store, row), rejectFile, (row, id) -> {
+					if (explicitIds) 
+					{
+						store.setId(row, row + 1);
+					}
+					else if (id < 0) 
+					{
+						logger.error("could not retrieve generated PK");
+					}
+					else 
+					{
+						store.setId(row, (int) id);
+					}
+				});
+		try 
+		{
+			for (int row = 0; row < store.size(); row++) 
+			{
+				inserter.add(row);
+			}
+		}
+		finally 
+		{
+			inserter.close();
+		}
+		return inserter.getResults();
+	}
+
+	/**
+	 * Logs the loaded rows of a column store as the physician data table and records them to the 
+	 * snapshot, if there is one. Rows without an id were not loaded into the primary.
+	 * 
+	 * @param store The staged physicians, loaded
+	 * @param snapshotWriter The snapshot, null for none
+	 * @throws IOException if the snapshot cannot be written
+	 */
+	protected static void logStagedPhysicians(PhysicianColumnStore store, PhysicianSnapshot.Writer snapshotWriter) 
+			throws IOException 
+	{
+		for (PhysicianColumnStore.Cursor cursor = store.cursor(); cursor.next(); ) 
+		{
+			int id = cursor.getId();
+			if (id == 0) 
+			{
+				continue;
+			}
+			logPhysicianRow(id, cursor.getLastName(), cursor.getFirstName(), cursor.getEmail(), 
+					cursor.getPhoneNumber(), cursor.getSpecialty(), null);
+			if (snapshotWriter != null) 
+			{
+				snapshotWriter.write(id, cursor.getLastName(), cursor.getFirstName(), cursor.getEmail(), 
+						cursor.getPhoneNumber(), cursor.getSpecialty());
+			}
+		}
+	}
+
+	/**
+	 * Binds a physician to the parameters of {@link #INSERT_PHYSICIAN}.
+	 * 
+	 * @param pstmtInsert The insert statement
+	 * @param physician The physician to bind
+	 * @throws SQLException if a parameter cannot be set
+	 */
+	protected static void bindPhysician(PreparedStatement pstmtInsert, Physician physician) throws SQLException 
+	{
+		bindPhysician(pstmtInsert, 1, physician);
+	}
+
+	/**
+	 * Binds a physician and its id to the parameters of {@link #INSERT_PHYSICIAN_WITH_ID}.
+	 * 
+	 * @param pstmtInsert The insert statement
+	 * @param physician The physician to bind, with its id
+	 * @throws SQLException if a parameter cannot be set
+	 */
+	protected static void bindPhysicianWithId(PreparedStatement pstmtInsert, Physician physician) throws SQLException 
+	{
+		pstmtInsert.setInt(1, physician.getId());
+		bindPhysician(pstmtInsert, 2, physician);
+	}
+
+	/**
+	 * Binds the columns of a physician, from the last name on, to consecutive parameters.
+	 * 
+	 * @param pstmtInsert The insert statement
+	 * @param first The index of the last name parameter
+	 * @param physician The physician to bind
+	 * @throws SQLException if a parameter cannot be set
+	 */
+	private static void bindPhysician(PreparedStatement pstmtInsert, int first, Physician physician) throws SQLException 
+	{
+		pstmtInsert.setString(first, physician.getLastName());
+		pstmtInsert.setString(first + 1, physician.getFirstName());
+		pstmtInsert.setString(first + 2, physician.getEmail());
+		pstmtInsert.setString(first + 3, physician.getPhoneNumber());
+		pstmtInsert.setString(first + 4, physician.getSpecialty());
+	}
+
+	/**
+	 * Binds the columns of a row of a column store, from the last name on, to consecutive parameters
+	 * of {@link #INSERT_PHYSICIAN} or {@link #INSERT_PHYSICIAN_WITH_ID}.
+	 * 
+	 * @param pstmtInsert The insert statement
+	 * @param first The index of the last name parameter
+	 * @param store The staged physicians
+	 * @param row The row number to bind
+	 * @throws SQLException if a parameter cannot be set
+	 */
+	protected static void bindPhysician(PreparedStatement pstmtInsert, int first, PhysicianColumnStore store, int row)
+			throws SQLException 
+	{
+		pstmtInsert.setString(first, store.getLastName(row));
+		pstmtInsert.setString(first + 1, store.getFirstName(row));
+		pstmtInsert.setString(first + 2, store.getEmail(row));
+		pstmtInsert.setString(first + 3, store.getPhoneNumber(row));
+		pstmtInsert.setString(first + 4, store.getSpecialty(row));
+	}
+
+	/**
+	 * Formats a physician that could not be inserted as a CSV line for the reject file.
+	 * 
+	 * @param physician The rejected physician
+	 * @return the physician's columns in {@link #INSERT_PHYSICIAN} order, quoted for CSV.
+	 */
+	protected static String toRejectLine(Physician physician) 
+	{
+		return String.join(",",
+				FaultIsolatingBatchInserter.csvField(physician.getLastName()),
+				FaultIsolatingBatchInserter.csvField(physician.getFirstName()),
+				FaultIsolatingBatchInserter.csvField(physician.getEmail()),
+				FaultIsolatingBatchInserter.csvField(physician.getPhoneNumber()),
+				FaultIsolatingBatchInserter.csvField(physician.getSpecialty()));
+	}
+
+	/**
+	 * Formats a row of a column store that could not be inserted as a CSV line for the reject file.
+	 * 
+	 * @param store The staged physicians
+	 * @param row The rejected row number
+	 * @return the row's columns in {@link #INSERT_PHYSICIAN} order, quoted for CSV.
+	 */
+	protected static String toRejectLine(PhysicianColumnStore store, int row) 
+	{
+		return String.join(",",
+				FaultIsolatingBatchInserter.csvField(store.getLastName(row)),
+				FaultIsolatingBatchInserter.csvField(store.getFirstName(row)),
+				FaultIsolatingBatchInserter.csvField(store.getEmail(row)),
+				FaultIsolatingBatchInserter.csvField(store.getPhoneNumber(row)),
+				FaultIsolatingBatchInserter.csvField(store.getSpecialty(row)));
+	}
+
+	/**
+	 * Logs a committed physician as one row of the physician data table.
+	 * 
+	 * @param physician The committed physician
+	 * @param id The generated primary key, or -1 if it could not be retrieved
+	 */
+	protected static void logInsertedPhysician(Physician physician, long id) 
+	{
+		if (id < 0) 
+		{
+			logger.error("could not retrieve generated PK");
+			return;
+		}
+		physician.setId((int) id);
+		logger.debug("created random physician \r\n\t{}", physician);
+		logPhysicianRow(id, physician.getLastName(), physician.getFirstName(), physician.getEmail(),
+				physician.getPhoneNumber(), physician.getSpecialty(), physician.getCreated());
+	}
+
+	/**
+	 * Logs one row of the physician data table.
+	 * 
+	 * @param id The primary key
+	 * @param lastName The last name
+	 * @param firstName The first name
+	 * @param email The email address
+	 * @param phoneNumber The phone number
+	 * @param specialty The specialty
+	 * @param created The creation time, null (e.g. for staged rows) leaves the column blank
+	 */
+	protected static void logPhysicianRow(long id, String lastName, String firstName, String email, String phoneNumber,
+			String specialty, Object created) 
+	{
+		String logMessage = String.format(
+		    "| %-3s | %-10s | %-10s | %-27s | %-13s | %-45s | %-35s |", 
+		    id,
+		    lastName,
+		    firstName,
+		    email,
+		    phoneNumber,
+		    specialty,
+		    created == null ? "" : created
+		);
+
+		logger.info(logMessage);
+	}
+
+	/**
+	 * Records a committed physician to the snapshot, if there is one.
+	 * 
+	 * @param snapshotWriter The snapshot, null for none
+	 * @param physician The committed physician
+	 * @param id The generated primary key, or -1 if it could not be retrieved
+	 * @throws UncheckedIOException if the snapshot cannot be written, which fails the primary target:
+	 *         {@link FanOutInserter} drops it from the load, with the batches it committed so far, while
+	 *         the other targets carry on, and the summary reports its failure
+	 */
+	protected static void recordInsertedPhysician(PhysicianSnapshot.Writer snapshotWriter, Physician physician, long id) 
+	{
+		if (snapshotWriter == null || id < 0) 
+		{
+			return;
+		}
+		physician.setId((int) id);
+		try 
+		{
+			snapshotWriter.write(physician);
+		}
+		catch (IOException e) 
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
 	/**
 	 * Prints the content of the command-line usage to the logger.
 	 * 
@@ -215,7 +699,7 @@ public class GenerateRandomPhysicianRecords {
 	protected static void logCmdLineUsage(CommandLine cmdLine, LogLevel level) 
 	{		
 		LoggingOutputStream los = new LoggingOutputStream(logger, level);
-		PrintWriter pw = new PrintWriter(los);
+		PrintWriter pw = new PrintWriter(los, false, StandardCharsets.UTF_8);
 		cmdLine.usage(pw);
 		pw.flush();
 		los.line();
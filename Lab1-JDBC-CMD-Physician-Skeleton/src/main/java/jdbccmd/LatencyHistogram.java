@@ -0,0 +1,172 @@
+/*********************************************************************************************************
+ * File:  LatencyHistogram.java Course Materials CST8277
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 2024-09-14
+ *
+ * @description A small, fixed-size log-linear histogram used to record operation latencies in
+ *              nanoseconds. Each power of two is split into a fixed number of linear sub-buckets,
+ *              which keeps the relative error of any reported percentile below about 3% while using
+ *              a few KB per histogram no matter how many values are recorded.
+ */
+package jdbccmd;
+
+/**
+ * A log-linear latency histogram.
+ * <p>
+ * Instances are not thread-safe: each worker thread records into its own histogram and the results
+ * are combined with {@link #merge(LatencyHistogram)} once the workers have finished. This keeps the
+ * recording path free of locks and shared cache lines.
+ * </p>
+ */
+public class LatencyHistogram {
+
+	/** Number of linear sub-buckets per power of two (must be a power of two) */
+	private static final int SUB_BUCKET_BITS = 5;
+	/** Number of linear sub-buckets per power of two */
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	/** Enough buckets to cover every positive long value */
+	private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	/** Count of recorded values per bucket */
+	protected final long[] counts = new long[BUCKETS];
+	/** Total number of recorded values */
+	protected long totalCount;
+	/** Sum of all recorded values, used for the mean */
+	protected long totalNanos;
+	/** Smallest recorded value */
+	protected long minNanos = Long.MAX_VALUE;
+	/** Largest recorded value */
+	protected long maxNanos;
+
+	/**
+	 * Records a single latency.
+	 *
+	 * @param nanos The latency in nanoseconds, negative values are treated as zero.
+	 */
+	public void record(long nanos)
+	{
+		long value = Math.max(0, nanos);
+		counts[bucketIndex(value)]++;
+		totalCount++;
+		totalNanos += value;
+		minNanos = Math.min(minNanos, value);
+		maxNanos = Math.max(maxNanos, value);
+	}
+
+	/**
+	 * Adds all values recorded by another histogram to this one.
+	 *
+	 * @param other The histogram to merge into this one.
+	 */
+	public void merge(LatencyHistogram other)
+	{
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			counts[i] += other.counts[i];
+		}
+		totalCount += other.totalCount;
+		totalNanos += other.totalNanos;
+		minNanos = Math.min(minNanos, other.minNanos);
+		maxNanos = Math.max(maxNanos, other.maxNanos);
+	}
+
+	/**
+	 * Gets the number of recorded values.
+	 *
+	 * @return the number of recorded values.
+	 */
+	public long getCount()
+	{
+		return totalCount;
+	}
+
+	/**
+	 * Gets the mean of the recorded values.
+	 *
+	 * @return the mean latency in nanoseconds, or 0 if nothing was recorded.
+	 */
+	public double getMeanNanos()
+	{
+		return totalCount == 0 ? 0 : (double) totalNanos / totalCount;
+	}
+
+	/**
+	 * Gets the largest recorded value.
+	 *
+	 * @return the maximum latency in nanoseconds, or 0 if nothing was recorded.
+	 */
+	public long getMaxNanos()
+	{
+		return maxNanos;
+	}
+
+	/**
+	 * Gets the value at a given percentile.
+	 * <p>
+	 * The value returned is the upper bound of the bucket holding the requested rank, clamped to
+	 * the observed min and max, so it never under-reports a latency.
+	 * </p>
+	 *
+	 * @param percentile The percentile to look up, between 0 and 100.
+	 * @return the latency in nanoseconds at the given percentile, or 0 if nothing was recorded.
+	 */
+	public long getValueAtPercentile(double percentile)
+	{
+		if (totalCount == 0)
+		{
+			return 0;
+		}
+
+		long rank = (long) Math.ceil((percentile / 100.0) * totalCount);
+		rank = Math.min(Math.max(rank, 1), totalCount);
+
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			seen += counts[i];
+			if (seen >= rank)
+			{
+				return Math.min(Math.max(bucketUpperBound(i), minNanos), maxNanos);
+			}
+		}
+		return maxNanos;
+	}
+
+	/**
+	 * Maps a value to its bucket. Values below {@link #SUB_BUCKETS} get an exact bucket each, larger
+	 * values are grouped by their highest set bit and then by the next {@link #SUB_BUCKET_BITS} bits.
+	 *
+	 * @param value A non-negative value.
+	 * @return the index of the bucket the value belongs to.
+	 */
+	private static int bucketIndex(long value)
+	{
+		if (value < SUB_BUCKETS)
+		{
+			return (int) value;
+		}
+		int magnitude = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+		int shift = magnitude - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+		return (shift + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * Gets the largest value that maps to a given bucket.
+	 *
+	 * @param index The bucket index.
+	 * @return the inclusive upper bound of the bucket.
+	 */
+	private static long bucketUpperBound(int index)
+	{
+		if (index < SUB_BUCKETS)
+		{
+			return index;
+		}
+		int shift = index / SUB_BUCKETS - 1;
+		long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+		return ((subBucket + 1) << shift) - 1;
+	}
+}
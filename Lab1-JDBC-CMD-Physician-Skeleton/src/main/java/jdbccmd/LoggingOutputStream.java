@@ -4,37 +4,227 @@
  */
 package jdbccmd;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.slf4j.Logger;
+import org.slf4j.helpers.Util;
 
 /**
- * Helper class that wraps an (ByteArray) OutputStream for SLF4J output. </br>
- * When the {@link LoggingOutputStream#line} method is called, the internal {@link ByteArrayOutputStream} is flushed to
- * the {@link Logger}.
+ * Helper class that wraps an OutputStream for SLF4J output. </br>
+ * Every line written (terminated by {@code \n}, a trailing {@code \r} is dropped) is logged as one
+ * message as soon as it is complete, so large output is never held in memory as a whole. Bytes are
+ * decoded through buffers that are reused from line to line.
+ * <p>
+ * Lines are handed to a shared ring buffer that a background appender thread delivers to the
+ * {@link Logger}, so writing does not wait for the logging backend. If the ring is full the writer
+ * delivers the queued lines itself rather than dropping them. {@link #line()}, {@link #flush()} and
+ * {@link #close()} deliver everything queued before returning, so lines never overtake messages
+ * logged directly afterwards.
+ * </p>
  */
 public class LoggingOutputStream extends OutputStream {
 
 	private static final int BUF_SIZE = 1000;
 
+	/** Number of lines the ring buffer holds before writers deliver them themselves */
+	private static final int RING_SIZE = 1024;
+
 	public enum LogLevel {
 		TRACE, DEBUG, INFO, WARN, ERROR,
 	}
 
-	protected ByteArrayOutputStream baos = new ByteArrayOutputStream(BUF_SIZE);
+	/** A line waiting in the ring buffer */
+	private record Line(Logger logger, LogLevel level, String message) {
+	}
+
+	/** Lines waiting to be delivered, from every stream */
+	private static final BlockingQueue<Line> RING = new ArrayBlockingQueue<>(RING_SIZE);
+	/** Held while delivering, so lines are delivered in ring order */
+	private static final ReentrantLock DELIVERY = new ReentrantLock();
+	/** The lines being delivered, only used under {@link #DELIVERY} */
+	private static final List<Line> DELIVERING = new ArrayList<>(RING_SIZE);
+	/** Delivers queued lines in the background */
+	private static final Thread APPENDER = startAppender();
+
 	protected Logger logger;
 	protected LogLevel level;
 
+	protected final CharsetDecoder decoder;
+	protected final ByteBuffer bytes = ByteBuffer.allocate(BUF_SIZE);
+	protected final CharBuffer chars = CharBuffer.allocate(BUF_SIZE);
+	protected final StringBuilder line = new StringBuilder(BUF_SIZE);
+
 	public LoggingOutputStream(Logger logger, LogLevel level) {
+		this(logger, level, StandardCharsets.UTF_8);
+	}
+
+	public LoggingOutputStream(Logger logger, LogLevel level, Charset charset) {
 		this.logger = logger;
 		this.level = level;
+		this.decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
 	}
 
+	/**
+	 * Logs the current partial line, if any, and delivers every queued line.
+	 */
 	public void line() {
-		String line = baos.toString();
-		baos.reset();
+		if (bytes.position() > 0 || line.length() > 0) {
+			endLine();
+		}
+		flush();
+	}
+
+	@Override
+	public void write(int b) {
+		if (b == '\n') {
+			endLine();
+			return;
+		}
+		bytes.put((byte) b);
+		if (!bytes.hasRemaining()) {
+			decode(false);
+		}
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) {
+		int end = off + len;
+		while (off < end) {
+			int n = Math.min(end - off, bytes.remaining());
+			int newline = -1;
+			for (int i = off; i < off + n; i++) {
+				if (b[i] == '\n') {
+					newline = i;
+					break;
+				}
+			}
+			if (newline >= 0) {
+				bytes.put(b, off, newline - off);
+				endLine();
+				off = newline + 1;
+			} else {
+				bytes.put(b, off, n);
+				off += n;
+				if (!bytes.hasRemaining()) {
+					decode(false);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Delivers every queued line; a partial line is kept until its newline, see {@link #line()}.
+	 */
+	@Override
+	public void flush() {
+		deliverQueued();
+	}
+
+	@Override
+	public void close() {
+		line();
+	}
+
+	/**
+	 * Decodes the buffered bytes into the current line. Bytes of an incomplete character are kept
+	 * for the next call unless this is the end of the line.
+	 *
+	 * @param endOfLine whether the line is complete
+	 */
+	protected void decode(boolean endOfLine) {
+		bytes.flip();
+		CoderResult result;
+		do {
+			result = decoder.decode(bytes, chars, endOfLine);
+			appendChars();
+		} while (result.isOverflow());
+		if (endOfLine) {
+			while (decoder.flush(chars).isOverflow()) {
+				appendChars();
+			}
+			appendChars();
+			decoder.reset();
+		}
+		bytes.compact();
+	}
+
+	private void appendChars() {
+		chars.flip();
+		line.append(chars);
+		chars.clear();
+	}
+
+	/**
+	 * Queues the current line for the appender and starts a new one.
+	 */
+	protected void endLine() {
+		decode(true);
+		int length = line.length();
+		if (length > 0 && line.charAt(length - 1) == '\r') {
+			line.setLength(length - 1);
+		}
+		Line queued = new Line(logger, level, line.toString());
+		line.setLength(0);
+		while (!RING.offer(queued)) {
+			// the appender is behind, help it rather than wait for it
+			deliverQueued();
+		}
+		LockSupport.unpark(APPENDER);
+	}
+
+	/**
+	 * Delivers the queued lines of every stream, in order.
+	 *
+	 * @return false if there were none.
+	 */
+	protected static boolean deliverQueued() {
+		DELIVERY.lock();
+		try {
+			RING.drainTo(DELIVERING);
+			for (Line queued : DELIVERING) {
+				try {
+					log(queued.logger(), queued.level(), queued.message());
+				} catch (RuntimeException e) {
+					// a failing backend must not lose the lines after it, nor be logged through itself
+					Util.report("could not log a line written to a LoggingOutputStream", e);
+				}
+			}
+			return !DELIVERING.isEmpty();
+		} finally {
+			DELIVERING.clear();
+			DELIVERY.unlock();
+		}
+	}
+
+	private static Thread startAppender() {
+		Thread appender = new Thread(() -> {
+			while (true) {
+				if (!deliverQueued()) {
+					LockSupport.park();
+				}
+			}
+		}, "logging-output-appender");
+		appender.setDaemon(true);
+		appender.start();
+		return appender;
+	}
+
+	protected static void log(Logger logger, LogLevel level, String line) {
 		switch (level) {
 			case TRACE:
 				logger.trace(line);
@@ -54,16 +244,6 @@ public class LoggingOutputStream extends OutputStream {
 		}
 	}
 
-	@Override
-	public void write(int b) {
-		baos.write(b);
-	}
-
-	@Override
-	public void write(byte[] b, int off, int len) throws IOException {
-		baos.write(b, off, len);
-	}
-	
 }
 
 /*
@@ -0,0 +1,309 @@
+/*********************************************************************************************************
+ * File:  NamePool.java Course Materials CST8277
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 2024-09-14
+ *
+ * @description This class holds a pool of names (or any other lines, e.g. specialties) for the
+ *              generators. A pool is one contiguous block of UTF-8 bytes plus an offsets array, and
+ *              entries are decoded only when they are picked. Pools precompiled into the binary
+ *              {@value #COMPILED_EXTENSION} format are memory-mapped, so loading a pool of millions of
+ *              entries takes neither time nor heap; plain text pools are still read as the fallback.
+ *
+ * @see jdbccmd.PhysicianManufacturer
+ * @see jdbccmd.ColumnGenerator
+ * @see java.nio.channels.FileChannel#map
+ */
+package jdbccmd;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * An immutable, compact list of pool entries.
+ * <p>
+ * The compiled layout is the magic {@code NAMEPOL1}, the entry count as an int, {@code count + 1}
+ * int offsets into the blob (the last one is the blob length) and the blob of UTF-8 bytes, all
+ * big-endian. Text pools hold one entry per line; blank lines are skipped.
+ * </p>
+ * <p>
+ * {@link #load} prefers a compiled pool next to the requested text pool ({@code lastnamePool.pool}
+ * for {@code lastnamePool.txt}), so compiling a pool with {@link #main} is all it takes to switch a
+ * spec or the physician generator over. Pools are safe to read from several threads.
+ * </p>
+ */
+public class NamePool extends AbstractList<String> implements RandomAccess {
+
+	/** File name extension of compiled pools */
+	public static final String COMPILED_EXTENSION = ".pool";
+
+	/** File name extension of text pools */
+	public static final String TEXT_EXTENSION = ".txt";
+
+	/** First bytes of a compiled pool */
+	private static final byte[] MAGIC = "NAMEPOL1".getBytes(StandardCharsets.US_ASCII);
+
+	/** Offset of the offsets array in a compiled pool */
+	private static final int OFFSETS_START = MAGIC.length + Integer.BYTES;
+
+	/** The compiled pool, mapped or on the heap */
+	protected final ByteBuffer data;
+	/** Number of entries */
+	protected final int count;
+	/** Offset of the blob in {@link #data} */
+	protected final int blobStart;
+
+	/**
+	 * Wraps a compiled pool.
+	 *
+	 * @param data The compiled pool
+	 * @param source Where the pool came from, for error messages
+	 * @throws IllegalArgumentException if the data is not a compiled pool
+	 */
+	protected NamePool(ByteBuffer data, String source)
+	{
+		byte[] magic = new byte[MAGIC.length];
+		if (data.capacity() >= OFFSETS_START)
+		{
+			data.get(0, magic);
+		}
+		if (!Arrays.equals(magic, MAGIC))
+		{
+			throw new IllegalArgumentException(source + " is not a compiled pool");
+		}
+		this.data = data;
+		this.count = data.getInt(MAGIC.length);
+		long offsetsEnd = OFFSETS_START + (count + 1L) * Integer.BYTES;
+		if (count < 0 || offsetsEnd > data.capacity() || offsetsEnd + offset(count) != data.capacity())
+		{
+			throw new IllegalArgumentException(source + " is truncated or corrupt");
+		}
+		this.blobStart = (int) offsetsEnd;
+	}
+
+	/**
+	 * Loads a pool from the file system, falling back to the classpath. For a text pool, a compiled
+	 * pool of the same name is used instead if there is one.
+	 *
+	 * @param resource A file path or classpath resource name
+	 * @return the pool
+	 * @throws IllegalArgumentException if the pool cannot be found or read
+	 */
+	public static NamePool load(String resource)
+	{
+		try
+		{
+			if (resource.endsWith(TEXT_EXTENSION))
+			{
+				String compiled = resource.substring(0, resource.length() - TEXT_EXTENSION.length()) + COMPILED_EXTENSION;
+				NamePool pool = loadCompiled(compiled);
+				if (pool != null)
+				{
+					return pool;
+				}
+			}
+			else if (resource.endsWith(COMPILED_EXTENSION))
+			{
+				NamePool pool = loadCompiled(resource);
+				if (pool == null)
+				{
+					throw new IllegalArgumentException("pool not found: " + resource);
+				}
+				return pool;
+			}
+			try (InputStream in = open(resource))
+			{
+				if (in == null)
+				{
+					throw new IllegalArgumentException("pool not found: " + resource);
+				}
+				return fromText(in, resource);
+			}
+		}
+		catch (IOException e)
+		{
+			throw new IllegalArgumentException("could not read pool " + resource + ": " + e.getLocalizedMessage(), e);
+		}
+	}
+
+	/**
+	 * Loads a compiled pool, memory-mapping it if it is a file.
+	 *
+	 * @param resource A file path or classpath resource name
+	 * @return the pool, null if there is none
+	 * @throws IOException if the pool cannot be read
+	 */
+	protected static NamePool loadCompiled(String resource) throws IOException
+	{
+		Path path = Path.of(resource);
+		if (!Files.isRegularFile(path))
+		{
+			URL url = NamePool.class.getClassLoader().getResource(resource);
+			if (url == null)
+			{
+				return null;
+			}
+			if (!"file".equals(url.getProtocol()))
+			{
+				// e.g. inside a jar, where it cannot be mapped
+				try (InputStream in = url.openStream())
+				{
+					return new NamePool(ByteBuffer.wrap(in.readAllBytes()), resource);
+				}
+			}
+			try
+			{
+				path = Path.of(url.toURI());
+			}
+			catch (URISyntaxException e)
+			{
+				throw new IOException(e);
+			}
+		}
+		try (FileChannel channel = FileChannel.open(path))
+		{
+			return new NamePool(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), resource);
+		}
+	}
+
+	private static InputStream open(String resource) throws IOException
+	{
+		Path path = Path.of(resource);
+		return Files.isRegularFile(path) ? Files.newInputStream(path)
+				: NamePool.class.getClassLoader().getResourceAsStream(resource);
+	}
+
+	/**
+	 * Reads a text pool into the compiled layout on the heap.
+	 *
+	 * @param in The text, one entry per line
+	 * @param source Where the pool came from, for error messages
+	 * @return the pool
+	 * @throws IOException if the text cannot be read
+	 */
+	protected static NamePool fromText(InputStream in, String source) throws IOException
+	{
+		ByteArrayOutputStream compiled = new ByteArrayOutputStream();
+		compile(in, compiled);
+		return new NamePool(ByteBuffer.wrap(compiled.toByteArray()), source);
+	}
+
+	/**
+	 * Compiles a text pool.
+	 *
+	 * @param in The text, one entry per line
+	 * @param out Where the compiled pool is written to
+	 * @throws IOException if the text cannot be read or the pool cannot be written
+	 */
+	public static void compile(InputStream in, OutputStream out) throws IOException
+	{
+		ByteArrayOutputStream blob = new ByteArrayOutputStream();
+		int[] offsets = new int[1024];
+		int count = 0;
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		for (String line = reader.readLine(); line != null; line = reader.readLine())
+		{
+			if (line.isBlank())
+			{
+				continue;
+			}
+			if (count + 1 == offsets.length)
+			{
+				offsets = Arrays.copyOf(offsets, offsets.length * 2);
+			}
+			blob.write(line.getBytes(StandardCharsets.UTF_8));
+			offsets[++count] = blob.size();
+		}
+
+		DataOutputStream dataOut = new DataOutputStream(out);
+		dataOut.write(MAGIC);
+		dataOut.writeInt(count);
+		for (int i = 0; i <= count; i++)
+		{
+			dataOut.writeInt(offsets[i]);
+		}
+		blob.writeTo(dataOut);
+		dataOut.flush();
+	}
+
+	/**
+	 * Gets an entry, decoding it from the blob.
+	 *
+	 * @param index The index of the entry
+	 * @return the entry.
+	 */
+	@Override
+	public String get(int index)
+	{
+		if (index < 0 || index >= count)
+		{
+			throw new IndexOutOfBoundsException("entry " + index + " of " + count);
+		}
+		int from = offset(index);
+		byte[] bytes = new byte[offset(index + 1) - from];
+		data.get(blobStart + from, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public int size()
+	{
+		return count;
+	}
+
+	private int offset(int index)
+	{
+		return data.getInt(OFFSETS_START + index * Integer.BYTES);
+	}
+
+	/**
+	 * Compiles text pools, each next to its text file unless an output file is given.
+	 * <p>
+	 * Usage: {@code NamePool <pool.txt> [<pool.pool>]} or {@code NamePool <pool.txt>...}
+	 * </p>
+	 *
+	 * @param args The text pools, or one text pool and its compiled file
+	 * @throws IOException if a pool cannot be read or written
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length == 2 && args[1].endsWith(COMPILED_EXTENSION))
+		{
+			compileFile(Path.of(args[0]), Path.of(args[1]));
+			return;
+		}
+		for (String arg : args)
+		{
+			String compiled = (arg.endsWith(TEXT_EXTENSION) ? arg.substring(0, arg.length() - TEXT_EXTENSION.length()) : arg)
+					+ COMPILED_EXTENSION;
+			compileFile(Path.of(arg), Path.of(compiled));
+		}
+	}
+
+	private static void compileFile(Path text, Path compiled) throws IOException
+	{
+		try (
+			InputStream in = Files.newInputStream(text);
+			OutputStream out = Files.newOutputStream(compiled);
+		)
+		{
+			compile(in, out);
+		}
+	}
+}
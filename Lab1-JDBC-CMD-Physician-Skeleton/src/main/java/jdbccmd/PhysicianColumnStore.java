@@ -0,0 +1,543 @@
+/*********************************************************************************************************
+ * File:  PhysicianColumnStore.java Course Materials CST8277
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 2024-09-14
+ *
+ * @description This class holds physicians in a compact, columnar, off-heap form so that tens of
+ *              millions of generated rows can be staged in memory (for replay into several targets,
+ *              key reconstruction or deduplication) at 32 bytes a row instead of the 200+ bytes of a
+ *              {@link Physician} and its Strings. Names and specialties are dictionary encoded, phone
+ *              numbers and generated email addresses are packed into a long each, and every column
+ *              lives in direct {@link ByteBuffer} chunks outside the Java heap.
+ *
+ * @see java.nio.ByteBuffer#allocateDirect
+ * @see jdbccmd.PhysicianColumnStore.Cursor
+ */
+package jdbccmd;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * An append-only, off-heap column store of physicians.
+ * <p>
+ * Rows are addressed by their zero-based row number and read either by row through the getters or
+ * sequentially through a {@link Cursor}; neither materializes {@link Physician} objects. Name and
+ * specialty getters return the dictionary's own String, phone and email getters decode a new one.
+ * Values that do not fit the packed formats (e.g. an email that was not generated) are kept in an
+ * overflow dictionary, so every String round-trips.
+ * </p>
+ * <p>
+ * Appending is single-threaded; once appending is done, any number of threads may read, and
+ * {@link #setId} may be called for different rows concurrently with reads.
+ * </p>
+ */
+public class PhysicianColumnStore {
+
+	/** Rows per chunk, a power of two so the chunk and slot of a row are a shift and a mask */
+	protected static final int CHUNK_SHIFT = 16;
+	/** Number of rows per chunk */
+	protected static final int CHUNK_ROWS = 1 << CHUNK_SHIFT;
+
+	/** Offset of the id column (int) in a chunk */
+	private static final int ID_COLUMN = 0;
+	/** Offset of the last name column (dictionary id, int) in a chunk */
+	private static final int LASTNAME_COLUMN = ID_COLUMN + Integer.BYTES * CHUNK_ROWS;
+	/** Offset of the first name column (dictionary id, int) in a chunk */
+	private static final int FIRSTNAME_COLUMN = LASTNAME_COLUMN + Integer.BYTES * CHUNK_ROWS;
+	/** Offset of the specialty column (dictionary id, int) in a chunk */
+	private static final int SPECIALTY_COLUMN = FIRSTNAME_COLUMN + Integer.BYTES * CHUNK_ROWS;
+	/** Offset of the phone column (packed, long) in a chunk */
+	private static final int PHONE_COLUMN = SPECIALTY_COLUMN + Integer.BYTES * CHUNK_ROWS;
+	/** Offset of the email column (packed, long) in a chunk */
+	private static final int EMAIL_COLUMN = PHONE_COLUMN + Long.BYTES * CHUNK_ROWS;
+	/** Size of a chunk in bytes */
+	private static final int CHUNK_BYTES = EMAIL_COLUMN + Long.BYTES * CHUNK_ROWS;
+
+	/** Bytes per row across all columns */
+	public static final int ROW_BYTES = CHUNK_BYTES / CHUNK_ROWS;
+
+	/** Encoded null, for dictionary ids and packed values */
+	private static final long NULL = -1;
+
+	/** Digits of a packed phone number */
+	private static final int PHONE_DIGITS = 10;
+	/** Flag of a packed phone number appended in the dashed form, above the 34 bits of its digits */
+	private static final long PHONE_DASHED = 1L << 40;
+
+	/** Letters of a packed email local part */
+	private static final int EMAIL_LETTERS = 3;
+	/** Digits of a packed email local part */
+	private static final int EMAIL_DIGITS = 5;
+	/** Bits per packed email letter */
+	private static final int EMAIL_LETTER_BITS = 5;
+	/** Bits of the packed email digits, enough for 99999 */
+	private static final int EMAIL_DIGIT_BITS = 17;
+	/** Bits of the packed email domain id */
+	private static final int EMAIL_DOMAIN_BITS = 31;
+
+	/**
+	 * Maps the distinct values of a column to dense int ids.
+	 */
+	protected static class Dictionary {
+
+		private final Map<String, Integer> ids = new HashMap<>();
+		private final List<String> values = new ArrayList<>();
+
+		/**
+		 * Gets the id of a value, adding it if it is new.
+		 *
+		 * @param value The value, may be null
+		 * @return the id, {@link PhysicianColumnStore#NULL} for null.
+		 */
+		int encode(String value)
+		{
+			if (value == null)
+			{
+				return (int) NULL;
+			}
+			Integer id = ids.get(value);
+			if (id == null)
+			{
+				id = values.size();
+				ids.put(value, id);
+				values.add(value);
+			}
+			return id;
+		}
+
+		/**
+		 * Gets the value of an id.
+		 *
+		 * @param id The id
+		 * @return the value, null for {@link PhysicianColumnStore#NULL}.
+		 */
+		String decode(int id)
+		{
+			return id == NULL ? null : values.get(id);
+		}
+
+		/**
+		 * Gets the number of distinct values.
+		 *
+		 * @return the dictionary size.
+		 */
+		int size()
+		{
+			return values.size();
+		}
+	}
+
+	/** The column chunks, each holding {@link #CHUNK_ROWS} rows of every column */
+	protected final List<ByteBuffer> chunks = new ArrayList<>();
+	/** Last names */
+	protected final Dictionary lastNames = new Dictionary();
+	/** First names */
+	protected final Dictionary firstNames = new Dictionary();
+	/** Specialties */
+	protected final Dictionary specialties = new Dictionary();
+	/** Email domains of packed emails */
+	protected final Dictionary emailDomains = new Dictionary();
+	/** Phone numbers and emails that do not fit their packed format */
+	protected final Dictionary overflow = new Dictionary();
+	/** Number of rows */
+	protected int size;
+
+	/**
+	 * Appends a physician.
+	 *
+	 * @param physician The physician
+	 * @return the row number.
+	 */
+	public int append(Physician physician)
+	{
+		return append(physician.getId(), physician.getLastName(), physician.getFirstName(), physician.getEmail(),
+				physician.getPhoneNumber(), physician.getSpecialty());
+	}
+
+	/**
+	 * Appends a physician given by its columns.
+	 *
+	 * @param id The id, 0 if not known yet
+	 * @param lastName The last name
+	 * @param firstName The first name
+	 * @param email The email address
+	 * @param phoneNumber The phone number
+	 * @param specialty The specialty
+	 * @return the row number.
+	 */
+	public int append(int id, String lastName, String firstName, String email, String phoneNumber, String specialty)
+	{
+		int row = size;
+		if ((row & (CHUNK_ROWS - 1)) == 0)
+		{
+			chunks.add(ByteBuffer.allocateDirect(CHUNK_BYTES));
+		}
+		ByteBuffer chunk = chunks.get(row >>> CHUNK_SHIFT);
+		int slot = row & (CHUNK_ROWS - 1);
+		chunk.putInt(ID_COLUMN + slot * Integer.BYTES, id);
+		chunk.putInt(LASTNAME_COLUMN + slot * Integer.BYTES, lastNames.encode(lastName));
+		chunk.putInt(FIRSTNAME_COLUMN + slot * Integer.BYTES, firstNames.encode(firstName));
+		chunk.putInt(SPECIALTY_COLUMN + slot * Integer.BYTES, specialties.encode(specialty));
+		chunk.putLong(PHONE_COLUMN + slot * Long.BYTES, packPhone(phoneNumber));
+		chunk.putLong(EMAIL_COLUMN + slot * Long.BYTES, packEmail(email));
+		size++;
+		return row;
+	}
+
+	/**
+	 * Gets the number of rows.
+	 *
+	 * @return the row count.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Gets the off-heap memory held by the columns, not counting the (small) dictionaries.
+	 *
+	 * @return the size in bytes.
+	 */
+	public long getOffHeapBytes()
+	{
+		return (long) chunks.size() * CHUNK_BYTES;
+	}
+
+	/**
+	 * Sets the id of a row, e.g. once the database generated it.
+	 *
+	 * @param row The row number
+	 * @param id The id
+	 */
+	public void setId(int row, int id)
+	{
+		chunk(row).putInt(ID_COLUMN + slot(row) * Integer.BYTES, id);
+	}
+
+	/**
+	 * Gets the id of a row.
+	 *
+	 * @param row The row number
+	 * @return the id, 0 if not set.
+	 */
+	public int getId(int row)
+	{
+		return chunk(row).getInt(ID_COLUMN + slot(row) * Integer.BYTES);
+	}
+
+	/**
+	 * Gets the last name of a row.
+	 *
+	 * @param row The row number
+	 * @return the last name.
+	 */
+	public String getLastName(int row)
+	{
+		return lastNames.decode(chunk(row).getInt(LASTNAME_COLUMN + slot(row) * Integer.BYTES));
+	}
+
+	/**
+	 * Gets the first name of a row.
+	 *
+	 * @param row The row number
+	 * @return the first name.
+	 */
+	public String getFirstName(int row)
+	{
+		return firstNames.decode(chunk(row).getInt(FIRSTNAME_COLUMN + slot(row) * Integer.BYTES));
+	}
+
+	/**
+	 * Gets the specialty of a row.
+	 *
+	 * @param row The row number
+	 * @return the specialty.
+	 */
+	public String getSpecialty(int row)
+	{
+		return specialties.decode(chunk(row).getInt(SPECIALTY_COLUMN + slot(row) * Integer.BYTES));
+	}
+
+	/**
+	 * Gets the phone number of a row.
+	 *
+	 * @param row The row number
+	 * @return the phone number.
+	 */
+	public String getPhoneNumber(int row)
+	{
+		return unpackPhone(chunk(row).getLong(PHONE_COLUMN + slot(row) * Long.BYTES));
+	}
+
+	/**
+	 * Gets the email address of a row.
+	 *
+	 * @param row The row number
+	 * @return the email address.
+	 */
+	public String getEmail(int row)
+	{
+		return unpackEmail(chunk(row).getLong(EMAIL_COLUMN + slot(row) * Long.BYTES));
+	}
+
+	/**
+	 * Opens a cursor positioned before the first row.
+	 *
+	 * @return the cursor.
+	 */
+	public Cursor cursor()
+	{
+		return new Cursor();
+	}
+
+	private ByteBuffer chunk(int row)
+	{
+		if (row < 0 || row >= size)
+		{
+			throw new IndexOutOfBoundsException("row " + row + " of " + size);
+		}
+		return chunks.get(row >>> CHUNK_SHIFT);
+	}
+
+	private static int slot(int row)
+	{
+		return row & (CHUNK_ROWS - 1);
+	}
+
+	/**
+	 * Packs a phone number of ten digits, plain as generated ({@code 6135551234}) or dashed as
+	 * formatted ({@code 613-555-1234}), into the digits and a flag telling the two forms apart.
+	 *
+	 * @param phoneNumber The phone number
+	 * @return the packed value, or a negative overflow reference if the number has another form.
+	 */
+	protected long packPhone(String phoneNumber)
+	{
+		if (phoneNumber == null)
+		{
+			return NULL;
+		}
+		boolean dashed = phoneNumber.length() == PHONE_DIGITS + 2 && phoneNumber.charAt(3) == '-'
+				&& phoneNumber.charAt(7) == '-';
+		if (!dashed && phoneNumber.length() != PHONE_DIGITS)
+		{
+			return toOverflow(phoneNumber);
+		}
+		long digits = 0;
+		for (int i = 0; i < phoneNumber.length(); i++)
+		{
+			if (dashed && (i == 3 || i == 7))
+			{
+				continue;
+			}
+			char c = phoneNumber.charAt(i);
+			if (c < '0' || c > '9')
+			{
+				return toOverflow(phoneNumber);
+			}
+			digits = digits * 10 + (c - '0');
+		}
+		return dashed ? digits | PHONE_DASHED : digits;
+	}
+
+	/**
+	 * Unpacks a phone number.
+	 *
+	 * @param packed The packed value
+	 * @return the phone number, in the form it was appended.
+	 */
+	protected String unpackPhone(long packed)
+	{
+		if (packed < 0)
+		{
+			return fromOverflow(packed);
+		}
+		boolean dashed = (packed & PHONE_DASHED) != 0;
+		long digits = packed & ~PHONE_DASHED;
+		char[] chars = new char[dashed ? PHONE_DIGITS + 2 : PHONE_DIGITS];
+		for (int i = chars.length - 1; i >= 0; i--)
+		{
+			if (dashed && (i == 3 || i == 7))
+			{
+				chars[i] = '-';
+				continue;
+			}
+			chars[i] = (char) ('0' + digits % 10);
+			digits /= 10;
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * Packs an email of the generated form, three lower-case letters and five digits at a domain, into
+	 * the letters, the digits and the dictionary id of the domain.
+	 *
+	 * @param email The email address
+	 * @return the packed value, or a negative overflow reference if the email has another form.
+	 */
+	protected long packEmail(String email)
+	{
+		if (email == null)
+		{
+			return NULL;
+		}
+		int at = email.indexOf('@');
+		if (at != EMAIL_LETTERS + EMAIL_DIGITS)
+		{
+			return toOverflow(email);
+		}
+		long packed = 0;
+		for (int i = 0; i < EMAIL_LETTERS; i++)
+		{
+			char c = email.charAt(i);
+			if (c < 'a' || c > 'z')
+			{
+				return toOverflow(email);
+			}
+			packed = (packed << EMAIL_LETTER_BITS) | (c - 'a');
+		}
+		int digits = 0;
+		for (int i = EMAIL_LETTERS; i < at; i++)
+		{
+			char c = email.charAt(i);
+			if (c < '0' || c > '9')
+			{
+				return toOverflow(email);
+			}
+			digits = digits * 10 + (c - '0');
+		}
+		int domain = emailDomains.encode(email.substring(at + 1));
+		if (domain >>> EMAIL_DOMAIN_BITS != 0)
+		{
+			return toOverflow(email);
+		}
+		return (((packed << EMAIL_DIGIT_BITS) | digits) << EMAIL_DOMAIN_BITS) | domain;
+	}
+
+	/**
+	 * Unpacks an email address.
+	 *
+	 * @param packed The packed value
+	 * @return the email address.
+	 */
+	protected String unpackEmail(long packed)
+	{
+		if (packed < 0)
+		{
+			return fromOverflow(packed);
+		}
+		String domain = emailDomains.decode((int) (packed & ((1L << EMAIL_DOMAIN_BITS) - 1)));
+		long rest = packed >>> EMAIL_DOMAIN_BITS;
+		int digits = (int) (rest & ((1 << EMAIL_DIGIT_BITS) - 1));
+		rest >>>= EMAIL_DIGIT_BITS;
+
+		StringBuilder sb = new StringBuilder(EMAIL_LETTERS + EMAIL_DIGITS + 1 + domain.length());
+		for (int i = EMAIL_LETTERS - 1; i >= 0; i--)
+		{
+			sb.append((char) ('a' + ((rest >>> (i * EMAIL_LETTER_BITS)) & ((1 << EMAIL_LETTER_BITS) - 1))));
+		}
+		String digitString = Integer.toString(digits);
+		for (int i = digitString.length(); i < EMAIL_DIGITS; i++)
+		{
+			sb.append('0');
+		}
+		return sb.append(digitString).append('@').append(domain).toString();
+	}
+
+	private long toOverflow(String value)
+	{
+		return -2L - overflow.encode(value);
+	}
+
+	private String fromOverflow(long packed)
+	{
+		return packed == NULL ? null : overflow.decode((int) (-2L - packed));
+	}
+
+	/**
+	 * Reads the rows of the store in order.
+	 */
+	public class Cursor {
+
+		private int row = -1;
+
+		/**
+		 * Moves to the next row.
+		 *
+		 * @return false if there are no more rows.
+		 */
+		public boolean next()
+		{
+			if (row + 1 >= size)
+			{
+				row = size;
+				return false;
+			}
+			row++;
+			return true;
+		}
+
+		/**
+		 * Gets the number of the current row.
+		 *
+		 * @return the row number.
+		 */
+		public int getRow()
+		{
+			check();
+			return row;
+		}
+
+		/** @return the id of the current row. */
+		public int getId()
+		{
+			return PhysicianColumnStore.this.getId(getRow());
+		}
+
+		/** @return the last name of the current row. */
+		public String getLastName()
+		{
+			return PhysicianColumnStore.this.getLastName(getRow());
+		}
+
+		/** @return the first name of the current row. */
+		public String getFirstName()
+		{
+			return PhysicianColumnStore.this.getFirstName(getRow());
+		}
+
+		/** @return the email address of the current row. */
+		public String getEmail()
+		{
+			return PhysicianColumnStore.this.getEmail(getRow());
+		}
+
+		/** @return the phone number of the current row. */
+		public String getPhoneNumber()
+		{
+			return PhysicianColumnStore.this.getPhoneNumber(getRow());
+		}
+
+		/** @return the specialty of the current row. */
+		public String getSpecialty()
+		{
+			return PhysicianColumnStore.this.getSpecialty(getRow());
+		}
+
+		private void check()
+		{
+			if (row < 0 || row >= size)
+			{
+				throw new NoSuchElementException("cursor is not on a row");
+			}
+		}
+	}
+}
@@ -0,0 +1,73 @@
+/*********************************************************************************************************
+ * File:  PhysicianIdGenerator.java Course Materials CST8277
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 2024-09-14
+ *
+ * @description This class keeps the DataBank web app's ID generator ahead of the physician table. The
+ *              web app reserves blocks of physician IDs from the {@code id_generator} table rather than
+ *              AUTO_INCREMENT, so rows this lab loads must move its {@code next_val} past them, or the
+ *              web app would hand out IDs that are already taken.
+ *
+ * @see jdbccmd.GenerateRandomPhysicianRecords
+ * @see jdbccmd.SpecSeeder
+ * @see jdbccmd.PhysicianSync
+ */
+package jdbccmd;
+
+import java.lang.invoke.MethodHandles;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Moves the web app's physician ID generator past the IDs of the physician table.
+ */
+public final class PhysicianIdGenerator {
+
+	private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	/** The table whose IDs the generator hands out */
+	public static final String PHYSICIAN_TABLE = "physician";
+
+	/** SQL statement to move the generator past the largest physician ID, never back */
+	private static final String ADVANCE_ID_GENERATOR = "UPDATE ID_GENERATOR SET NEXT_VAL = GREATEST(NEXT_VAL,"
+			+ " (SELECT COALESCE(MAX(ID), 0) + 1 FROM PHYSICIAN)) WHERE SEQUENCE_NAME = 'physician'";
+
+	/** SQLState of a missing table, e.g. a target database without the web app's tables */
+	private static final String TABLE_NOT_FOUND = "42S02";
+
+	private PhysicianIdGenerator()
+	{
+	}
+
+	/**
+	 * Moves the generator past the physicians loaded, in the connection's current transaction or
+	 * auto-committed. A database without an {@code id_generator} table is left alone.
+	 *
+	 * @param connection The connection the physicians were loaded with
+	 * @throws SQLException if the generator cannot be updated
+	 */
+	public static void advance(Connection connection) throws SQLException
+	{
+		try (Statement stmt = connection.createStatement())
+		{
+			if (stmt.executeUpdate(ADVANCE_ID_GENERATOR) == 0)
+			{
+				logger.warn("no physician row in id_generator, run lab01-databank.sql before starting the web app");
+			}
+		}
+		catch (SQLException e)
+		{
+			if (!TABLE_NOT_FOUND.equals(e.getSQLState()))
+			{
+				throw e;
+			}
+			logger.debug("no id_generator table, nothing to advance: {}", e.getLocalizedMessage());
+		}
+	}
+}
@@ -8,8 +8,8 @@
  * @description This class extends `StringTypeManufacturerImpl` from the PODAM library to provide 
  *              custom random data generation for fields in the `Physician` class. It uses predefined 
  *              pools of data (e.g., last names, first names, specialties) and generates random email 
- *              addresses and phone numbers. It initializes these data pools from text files and uses a 
- *              `SecureRandom` instance for generating random values.
+ *              addresses and phone numbers. It loads these data pools lazily, memory-mapped if they were 
+ *              compiled, and uses a `SecureRandom` instance for generating random values.
  * 
  * @see uk.co.jemos.podam.typeManufacturers.StringTypeManufacturerImpl
  * @see uk.co.jemos.podam.api.AttributeMetadata
@@ -17,19 +17,17 @@
  * @see java.security.SecureRandom
  * @see java.util.List
  * @see java.util.Map
- * @see java.util.Scanner
+ * @see java.util.Random
+ * @see jdbccmd.NamePool
  */
 package jdbccmd;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Type;
 import java.security.SecureRandom;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
+import java.util.Random;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,7 +40,7 @@ import uk.co.jemos.podam.typeManufacturers.StringTypeManufacturerImpl;
  * Custom implementation of `StringTypeManufacturerImpl` to generate random data for fields in the 
  * `Physician` class. This implementation is specifically used to provide random values for attributes
  * such as last names, first names, email addresses, phone numbers, and specialties.
- * The class uses predefined pools of data loaded from text files and a `SecureRandom` instance for 
+ * The class uses predefined pools of data loaded as {@link NamePool}s and a `SecureRandom` instance for 
  * generating random values. The email addresses and phone numbers are generated according to specific 
  * formats, while other attributes are selected from the loaded data pools.
  * 
@@ -52,7 +50,7 @@ import uk.co.jemos.podam.typeManufacturers.StringTypeManufacturerImpl;
  * @see java.security.SecureRandom
  * @see java.util.List
  * @see java.util.Map
- * @see java.util.Scanner
+ * @see jdbccmd.NamePool
  */
 public class PhysicianManufacturer extends StringTypeManufacturerImpl {
 	
@@ -83,48 +81,58 @@ public class PhysicianManufacturer extends StringTypeManufacturerImpl {
 	/** Secure random number generator for better randomness */
 	protected static SecureRandom rnd = new SecureRandom();
 	
-	/** List of last names loaded from file */
-	protected static List<String> poolOfLastnames = new ArrayList<>();
-	/** List of first names loaded from file */
-	protected static List<String> poolOfFirstnames = new ArrayList<>();
-	/** List of specialties loaded from file */
-	protected static List<String> poolOfSpecialties = new ArrayList<>();
-
-	/** Static block to initialize data pools from files */
-	static {
-		ClassLoader theClassLoader = MethodHandles.lookup().lookupClass().getClassLoader();
-		
-		try (
-			InputStream firstnamePoolInputStream = theClassLoader.getResourceAsStream(POOL_OF_FIRSTNAMES);
-			InputStream lastnamePoolInputStream = theClassLoader.getResourceAsStream(POOL_OF_LASTNAMES);
-			InputStream specialtyPoolInputStream = theClassLoader.getResourceAsStream(POOL_OF_SPECIALTIES);
-			Scanner lastnamePoolScanner = new Scanner(lastnamePoolInputStream);
-			Scanner firstnamePoolScanner = new Scanner(firstnamePoolInputStream);
-			Scanner specialtyPoolScanner = new Scanner(specialtyPoolInputStream);
-			) 
+	/** Holds the last names, loaded the first time they are used rather than with the class */
+	private static final class LastnamePool {
+		static final List<String> POOL = loadPool(POOL_OF_LASTNAMES);
+	}
+
+	/** Holds the first names, loaded the first time they are used */
+	private static final class FirstnamePool {
+		static final List<String> POOL = loadPool(POOL_OF_FIRSTNAMES);
+	}
+
+	/** Holds the specialties, loaded the first time they are used */
+	private static final class SpecialtyPool {
+		static final List<String> POOL = loadPool(POOL_OF_SPECIALTIES);
+	}
+
+	/**
+	 * Loads a data pool, compiled if there is a compiled version (see {@link NamePool}).
+	 * 
+	 * @param resource The text pool
+	 * @return the pool, empty if it cannot be loaded.
+	 */
+	private static List<String> loadPool(String resource) 
+	{
+		try 
 		{
-			while (lastnamePoolScanner.hasNext()) 
-			{
-				poolOfLastnames.add(lastnamePoolScanner.nextLine());
-			}
-
-			while (firstnamePoolScanner.hasNext()) 
-			{
-				poolOfFirstnames.add(firstnamePoolScanner.nextLine());
-			}
-			
-			while (specialtyPoolScanner.hasNext()) 
-			{
-				poolOfSpecialties.add(specialtyPoolScanner.nextLine());
-			}
-	
+			return NamePool.load(resource);
 		} 
-		catch (IOException e) 
+		catch (IllegalArgumentException e) 
 		{
 			logger.error("Error loading data pools: {}", e.getLocalizedMessage());
+			return List.of();
 		}
 	}
 
+	/** @return the pool of last names. */
+	protected static List<String> poolOfLastnames() 
+	{
+		return LastnamePool.POOL;
+	}
+
+	/** @return the pool of first names. */
+	protected static List<String> poolOfFirstnames() 
+	{
+		return FirstnamePool.POOL;
+	}
+
+	/** @return the pool of specialties. */
+	protected static List<String> poolOfSpecialties() 
+	{
+		return SpecialtyPool.POOL;
+	}
+
 	/**
 	 * Generates a random value for a given attribute based on its name.
 	 * <p>
@@ -147,42 +155,23 @@ public class PhysicianManufacturer extends StringTypeManufacturerImpl {
 		
 		if (EMAIL_FIELD.equals(attributeMetadata.getAttributeName())) 
 		{
-			// Generate a random email address
-			StringBuilder sb = new StringBuilder();
-			
-			while (sb.length() < 3) 
-			{
-				int index = (int) (rnd.nextFloat() * ALPHA_LETTERS.length());
-				sb.append(ALPHA_LETTERS.charAt(index));
-			}
-			
-			while (sb.length() < 8) 
-			{
-				int index = (int) (rnd.nextFloat() * DIGITS.length());
-				sb.append(DIGITS.charAt(index));
-			}
-			
-			sb.append("@algonquinlive.com");
-			stringType = sb.toString();
-			
+			stringType = randomEmail(rnd);
 		} 
 		else if (LASTNAME_FIELD.equals(attributeMetadata.getAttributeName())) 
 		{
-			stringType = poolOfLastnames.get(rnd.nextInt(poolOfLastnames.size()));
+			stringType = pick(poolOfLastnames(), rnd);
 		}
 		else if (FIRSTNAME_FIELD.equals(attributeMetadata.getAttributeName())) 
 		{
-			stringType = poolOfFirstnames.get(rnd.nextInt(poolOfFirstnames.size()));			
+			stringType = pick(poolOfFirstnames(), rnd);			
 		} 
 		else if (PHONENUMBER_FIELD.equals(attributeMetadata.getAttributeName())) 
 		{
-			int npa = rnd.nextInt(643) + 100;
-			int extension = rnd.nextInt(9000) + 1000;
-			stringType = String.format("613%03d%04d", npa, extension);
+			stringType = randomPhoneNumber(rnd);
 		}
 		else if (SPECIALTY_FIELD.equals(attributeMetadata.getAttributeName())) 
 		{
-			stringType = poolOfSpecialties.get(rnd.nextInt(poolOfSpecialties.size()));			
+			stringType = pick(poolOfSpecialties(), rnd);			
 		}
 		else 
 		{			
@@ -191,4 +180,99 @@ public class PhysicianManufacturer extends StringTypeManufacturerImpl {
 		return stringType;
 	}
 
+	/**
+	 * Generates the physician at a given position of a seeded run.
+	 * <p>
+	 * Every row draws from its own generator, derived from the seed and the row index, so the same
+	 * seed always produces the same rows and any range of rows can be regenerated on its own (e.g. by
+	 * the verify subcommand, one range per thread) without replaying the rows before it.
+	 * </p>
+	 * 
+	 * @param seed The seed of the run.
+	 * @param index The zero-based position of the row in the run.
+	 * @return A physician without id or created timestamp, phone number already formatted.
+	 */
+	public static Physician seededPhysician(long seed, long index) 
+	{
+		Random random = new Random(rowSeed(seed, index));
+		Physician physician = new Physician();
+		physician.setLastName(pick(poolOfLastnames(), random));
+		physician.setFirstName(pick(poolOfFirstnames(), random));
+		physician.setEmail(randomEmail(random));
+		physician.setPhoneNumber(GenerateRandomPhysicianRecords.formatPhoneNumber(randomPhoneNumber(random)));
+		physician.setSpecialty(pick(poolOfSpecialties(), random));
+		return physician;
+	}
+
+	/**
+	 * Picks a random entry of a pool.
+	 * 
+	 * @param pool The pool.
+	 * @param random The random source.
+	 * @return The entry.
+	 */
+	protected static String pick(List<String> pool, Random random) 
+	{
+		return pool.get(random.nextInt(pool.size()));
+	}
+
+	/**
+	 * Derives the seed of one row with the SplitMix64 finalizer. {@link Random} scrambles its seed 
+	 * only lightly, so seeding it with consecutive values would give visibly correlated first draws.
+	 * 
+	 * @param seed The seed of the run.
+	 * @param index The position of the row.
+	 * @return The seed of the row.
+	 */
+	protected static long rowSeed(long seed, long index) 
+	{
+		long z = seed + (index + 1) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Generates a random email address of the form three letters, five digits, then the college domain.
+	 * <p>
+	 * The random source is passed in so that callers running on several threads (e.g. the workload 
+	 * driver) can use their own generator instead of contending on the shared `SecureRandom`.
+	 * </p>
+	 * 
+	 * @param random The random number generator to draw from.
+	 * @return A random email address.
+	 */
+	public static String randomEmail(Random random) 
+	{
+		StringBuilder sb = new StringBuilder();
+		
+		while (sb.length() < 3) 
+		{
+			int index = (int) (random.nextFloat() * ALPHA_LETTERS.length());
+			sb.append(ALPHA_LETTERS.charAt(index));
+		}
+		
+		while (sb.length() < 8) 
+		{
+			int index = (int) (random.nextFloat() * DIGITS.length());
+			sb.append(DIGITS.charAt(index));
+		}
+		
+		sb.append("@algonquinlive.com");
+		return sb.toString();
+	}
+
+	/**
+	 * Generates a random, unformatted 10 digit phone number in the 613 area code.
+	 * 
+	 * @param random The random number generator to draw from.
+	 * @return A random phone number, e.g. "6134561234".
+	 */
+	public static String randomPhoneNumber(Random random) 
+	{
+		int npa = random.nextInt(643) + 100;
+		int extension = random.nextInt(9000) + 1000;
+		return String.format("613%03d%04d", npa, extension);
+	}
+
 }
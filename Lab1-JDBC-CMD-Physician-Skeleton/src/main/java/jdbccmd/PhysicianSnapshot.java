@@ -0,0 +1,418 @@
+/*********************************************************************************************************
+ * File:  PhysicianSnapshot.java Course Materials CST8277
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 2024-09-14
+ *
+ * @description This class reads and writes physician snapshot files. A snapshot records the rows a
+ *              run inserted (id and data columns, in id order, as CSV or in a compact binary
+ *              layout) so that the table can later be checked against it with the verify
+ *              subcommand, or brought back in line with it by the sync subcommand.
+ *
+ * @see jdbccmd.PhysicianVerifier
+ * @see jdbccmd.PhysicianSync
+ * @see jdbccmd.FaultIsolatingBatchInserter#csvField
+ */
+package jdbccmd;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Physician snapshot files.
+ * <p>
+ * The CSV layout is a header line followed by {@code id,last_name,first_name,email,phone,specialty}
+ * lines, values quoted as in the reject files and null written as an empty, unquoted field.
+ * </p>
+ * <p>
+ * Files ending in {@value #BINARY_EXTENSION} use the binary layout instead: the magic
+ * {@code PHYSNAP1}, then per row a null mask byte (bit {@code n} set when string column {@code n} is
+ * null), the id as an int and the non-null string columns in modified UTF-8
+ * ({@link DataOutputStream#writeUTF}). It is about half the size of the CSV and needs no quoting or
+ * splitting to read. Readers detect the layout from the content, not the file name.
+ * </p>
+ */
+public class PhysicianSnapshot {
+
+	/** Header line of a CSV snapshot */
+	public static final String CSV_HEADER = "id,last_name,first_name,email,phone,specialty";
+
+	/** File name extension selecting the binary layout when writing */
+	public static final String BINARY_EXTENSION = ".bin";
+
+	/** First bytes of a binary snapshot */
+	private static final byte[] BINARY_MAGIC = "PHYSNAP1".getBytes(StandardCharsets.US_ASCII);
+
+	/** Buffer size of the snapshot streams */
+	private static final int BUF_SIZE = 1 << 16;
+
+	private PhysicianSnapshot()
+	{
+	}
+
+	/**
+	 * Opens a snapshot for writing, replacing any existing file. The layout is binary if the file name
+	 * ends in {@value #BINARY_EXTENSION}, CSV otherwise.
+	 *
+	 * @param file The snapshot file
+	 * @return the writer
+	 * @throws IOException if the file cannot be created
+	 */
+	public static Writer create(Path file) throws IOException
+	{
+		if (file.getFileName().toString().endsWith(BINARY_EXTENSION))
+		{
+			return new BinaryWriter(new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUF_SIZE)));
+		}
+		return new CsvWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Opens a snapshot for reading, in either layout.
+	 *
+	 * @param file The snapshot file
+	 * @return the reader
+	 * @throws IOException if the file cannot be opened or is not a physician snapshot
+	 */
+	public static Reader open(Path file) throws IOException
+	{
+		BufferedInputStream in = new BufferedInputStream(Files.newInputStream(file), BUF_SIZE);
+		try
+		{
+			in.mark(BINARY_MAGIC.length);
+			if (Arrays.equals(in.readNBytes(BINARY_MAGIC.length), BINARY_MAGIC))
+			{
+				return new BinaryReader(new DataInputStream(in), file);
+			}
+			in.reset();
+			BufferedReader csv = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+			String header = csv.readLine();
+			if (!CSV_HEADER.equals(header))
+			{
+				throw new IOException(file + " is not a physician snapshot, expected header " + CSV_HEADER);
+			}
+			return new CsvReader(csv, file);
+		}
+		catch (IOException e)
+		{
+			in.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes the rows of a snapshot.
+	 */
+	public abstract static class Writer implements Closeable {
+
+		/**
+		 * Appends one physician.
+		 *
+		 * @param physician The physician, its id must be set
+		 * @throws IOException if the row cannot be written
+		 */
+		public void write(Physician physician) throws IOException
+		{
+			write(physician.getId(), physician.getLastName(), physician.getFirstName(), physician.getEmail(),
+					physician.getPhoneNumber(), physician.getSpecialty());
+		}
+
+		/**
+		 * Appends one physician given by its columns, e.g. read from a {@link PhysicianColumnStore}.
+		 *
+		 * @param id The id
+		 * @param lastName The last name
+		 * @param firstName The first name
+		 * @param email The email address
+		 * @param phoneNumber The phone number
+		 * @param specialty The specialty
+		 * @throws IOException if the row cannot be written
+		 */
+		public abstract void write(int id, String lastName, String firstName, String email, String phoneNumber,
+				String specialty) throws IOException;
+	}
+
+	/**
+	 * Reads the rows of a snapshot in file order.
+	 */
+	public abstract static class Reader implements Closeable {
+
+		/**
+		 * Reads the next physician.
+		 *
+		 * @return the physician, or null at the end of the snapshot
+		 * @throws IOException if the file cannot be read or a row is malformed
+		 */
+		public abstract Physician next() throws IOException;
+	}
+
+	/**
+	 * Writes the CSV layout.
+	 */
+	private static class CsvWriter extends Writer {
+
+		private final BufferedWriter out;
+
+		CsvWriter(BufferedWriter out) throws IOException
+		{
+			this.out = out;
+			out.write(CSV_HEADER);
+			out.newLine();
+		}
+
+		@Override
+		public void write(int id, String lastName, String firstName, String email, String phoneNumber,
+				String specialty) throws IOException
+		{
+			out.write(Integer.toString(id));
+			out.write(',');
+			out.write(FaultIsolatingBatchInserter.csvField(lastName));
+			out.write(',');
+			out.write(FaultIsolatingBatchInserter.csvField(firstName));
+			out.write(',');
+			out.write(FaultIsolatingBatchInserter.csvField(email));
+			out.write(',');
+			out.write(FaultIsolatingBatchInserter.csvField(phoneNumber));
+			out.write(',');
+			out.write(FaultIsolatingBatchInserter.csvField(specialty));
+			out.newLine();
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			out.close();
+		}
+	}
+
+	/**
+	 * Reads the CSV layout.
+	 */
+	private static class CsvReader extends Reader {
+
+		private final BufferedReader in;
+		private final Path file;
+		private long lineNumber = 1;
+
+		CsvReader(BufferedReader in, Path file)
+		{
+			this.in = in;
+			this.file = file;
+		}
+
+		@Override
+		public Physician next() throws IOException
+		{
+			String line = in.readLine();
+			lineNumber++;
+			while (line != null && line.isEmpty())
+			{
+				line = in.readLine();
+				lineNumber++;
+			}
+			if (line == null)
+			{
+				return null;
+			}
+
+			List<String> fields = parseCsvLine(line);
+			if (fields.size() != 6)
+			{
+				throw new IOException(file + ":" + lineNumber + " has " + fields.size() + " fields, expected 6");
+			}
+			Physician physician = new Physician();
+			try
+			{
+				physician.setId(Integer.parseInt(fields.get(0)));
+			}
+			catch (NumberFormatException e)
+			{
+				throw new IOException(file + ":" + lineNumber + " has an invalid id: " + fields.get(0), e);
+			}
+			physician.setLastName(fields.get(1));
+			physician.setFirstName(fields.get(2));
+			physician.setEmail(fields.get(3));
+			physician.setPhoneNumber(fields.get(4));
+			physician.setSpecialty(fields.get(5));
+			return physician;
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			in.close();
+		}
+	}
+
+	/**
+	 * Writes the binary layout.
+	 */
+	private static class BinaryWriter extends Writer {
+
+		private final DataOutputStream out;
+
+		BinaryWriter(DataOutputStream out) throws IOException
+		{
+			this.out = out;
+			out.write(BINARY_MAGIC);
+		}
+
+		@Override
+		public void write(int id, String lastName, String firstName, String email, String phoneNumber,
+				String specialty) throws IOException
+		{
+			String[] columns = { lastName, firstName, email, phoneNumber, specialty };
+			int nullMask = 0;
+			for (int i = 0; i < columns.length; i++)
+			{
+				if (columns[i] == null)
+				{
+					nullMask |= 1 << i;
+				}
+			}
+			out.writeByte(nullMask);
+			out.writeInt(id);
+			for (String column : columns)
+			{
+				if (column != null)
+				{
+					out.writeUTF(column);
+				}
+			}
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			out.close();
+		}
+	}
+
+	/**
+	 * Reads the binary layout.
+	 */
+	private static class BinaryReader extends Reader {
+
+		private final DataInputStream in;
+		private final Path file;
+		private final String[] columns = new String[5];
+		private long row;
+
+		BinaryReader(DataInputStream in, Path file)
+		{
+			this.in = in;
+			this.file = file;
+		}
+
+		@Override
+		public Physician next() throws IOException
+		{
+			int nullMask = in.read();
+			if (nullMask < 0)
+			{
+				return null;
+			}
+			row++;
+			Physician physician = new Physician();
+			try
+			{
+				physician.setId(in.readInt());
+				for (int i = 0; i < columns.length; i++)
+				{
+					columns[i] = (nullMask & (1 << i)) != 0 ? null : in.readUTF();
+				}
+			}
+			catch (EOFException e)
+			{
+				throw new IOException(file + " is truncated in row " + row, e);
+			}
+			physician.setLastName(columns[0]);
+			physician.setFirstName(columns[1]);
+			physician.setEmail(columns[2]);
+			physician.setPhoneNumber(columns[3]);
+			physician.setSpecialty(columns[4]);
+			return physician;
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			in.close();
+		}
+	}
+
+	/**
+	 * Splits a CSV line written with {@link FaultIsolatingBatchInserter#csvField}.
+	 *
+	 * @param line The line
+	 * @return the fields, null for empty unquoted fields
+	 */
+	protected static List<String> parseCsvLine(String line)
+	{
+		List<String> fields = new ArrayList<>();
+		int pos = 0;
+		while (true)
+		{
+			if (pos < line.length() && line.charAt(pos) == '"')
+			{
+				StringBuilder field = new StringBuilder();
+				pos++;
+				while (pos < line.length())
+				{
+					char c = line.charAt(pos++);
+					if (c == '"')
+					{
+						if (pos < line.length() && line.charAt(pos) == '"')
+						{
+							field.append('"');
+							pos++;
+						}
+						else
+						{
+							break;
+						}
+					}
+					else
+					{
+						field.append(c);
+					}
+				}
+				fields.add(field.toString());
+			}
+			else
+			{
+				int comma = line.indexOf(',', pos);
+				int end = comma < 0 ? line.length() : comma;
+				fields.add(end == pos ? null : line.substring(pos, end));
+				pos = end;
+			}
+
+			if (pos >= line.length())
+			{
+				return fields;
+			}
+			// skip the separator
+			pos++;
+			if (pos == line.length())
+			{
+				fields.add(null);
+				return fields;
+			}
+		}
+	}
+}
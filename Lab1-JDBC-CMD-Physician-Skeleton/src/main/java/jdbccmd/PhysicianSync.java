@@ -0,0 +1,364 @@
+/*********************************************************************************************************
+ * File:  PhysicianSync.java Course Materials CST8277
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 2024-09-14
+ *
+ * @description This class brings the physician table in line with a snapshot file by issuing only the
+ *              inserts, updates and deletes needed, instead of truncating and reloading the table.
+ *              The snapshot and the table are both read in id order, the table as a streamed result
+ *              set, and merge-joined, so neither side is ever held in memory. Changes are written on a
+ *              second connection through {@link FaultIsolatingBatchInserter}s, which batch them and
+ *              reject rows that fail without stopping the sync.
+ *
+ * @see jdbccmd.PhysicianSnapshot
+ * @see jdbccmd.FaultIsolatingBatchInserter
+ */
+package jdbccmd;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Incremental diff-and-sync of the physician table against a snapshot.
+ * <p>
+ * The snapshot must be sorted by id, as written by the generator's {@code --snapshot} option; the
+ * sync stops at the first row out of order. {@code CREATED} is not compared, inserted rows get the
+ * current time.
+ * </p>
+ */
+public class PhysicianSync {
+
+	private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	/** SQL statement to stream the physician table in id order */
+	private static final String SELECT_PHYSICIANS_BY_ID = "SELECT ID, LAST_NAME, FIRST_NAME, EMAIL, PHONE, SPECIALTY FROM PHYSICIAN ORDER BY ID";
+	/** SQL statement to insert a physician with the id of the snapshot */
+	private static final String INSERT_PHYSICIAN_WITH_ID = "INSERT INTO PHYSICIAN(ID, LAST_NAME, FIRST_NAME, EMAIL, PHONE, SPECIALTY, CREATED) VALUES (?, ?, ?, ?, ?, ?, now())";
+	/** SQL statement to update the data columns of a physician, bumping the version the web app locks it with */
+	private static final String UPDATE_PHYSICIAN = "UPDATE PHYSICIAN SET LAST_NAME = ?, FIRST_NAME = ?, EMAIL = ?, PHONE = ?, SPECIALTY = ?,"
+			+ " VERSION = VERSION + 1 WHERE ID = ?";
+	/** SQL statement to delete a physician */
+	private static final String DELETE_PHYSICIAN = "DELETE FROM PHYSICIAN WHERE ID = ?";
+
+	/** Prefix of the reject file of refused inserts */
+	private static final String INSERT_REJECTS_PREFIX = "insert-";
+	/** Prefix of the reject file of refused updates */
+	private static final String UPDATE_REJECTS_PREFIX = "update-";
+	/** Prefix of the reject file of refused deletes */
+	private static final String DELETE_REJECTS_PREFIX = "delete-";
+
+	/**
+	 * The changes a sync made, or would make on a dry run.
+	 *
+	 * @param inserted Rows only in the snapshot
+	 * @param updated Rows in both whose columns differ
+	 * @param deleted Rows only in the table
+	 * @param unchanged Rows in both with the same columns
+	 * @param rejected Changes the database refused, written to the reject files
+	 */
+	public record Result(long inserted, long updated, long deleted, long unchanged, long rejected) {
+	}
+
+	/** The JDBC URL of the database */
+	protected final String jdbcUrl;
+	/** Connection properties (user and password) */
+	protected final Properties dbProps;
+	/** Number of changes per batch, per statement */
+	protected final int batchSize;
+	/** The reject file name, prefixed per statement */
+	protected final Path rejectFile;
+	/** Whether to only count the changes */
+	protected final boolean dryRun;
+
+	/**
+	 * Creates a sync.
+	 *
+	 * @param jdbcUrl The JDBC URL of the database
+	 * @param username The username for the database connection
+	 * @param password The password for the database connection
+	 * @param batchSize The number of changes per batch
+	 * @param rejectFile The reject file, e.g. physician-rejects.csv becomes insert-physician-rejects.csv
+	 * @param dryRun Whether to only count the changes instead of making them
+	 */
+	public PhysicianSync(String jdbcUrl, String username, String password, int batchSize, Path rejectFile, boolean dryRun)
+	{
+		this.jdbcUrl = jdbcUrl;
+		this.dbProps = new Properties();
+		this.dbProps.put("user", username);
+		this.dbProps.put("password", password);
+		this.batchSize = batchSize;
+		this.rejectFile = rejectFile.toAbsolutePath();
+		this.dryRun = dryRun;
+	}
+
+	/**
+	 * Syncs the table with a snapshot and logs what changed.
+	 *
+	 * @param snapshot The snapshot file, sorted by id
+	 * @return the changes made
+	 * @throws IOException if the snapshot cannot be read or is not sorted
+	 * @throws SQLException if the table cannot be read or written
+	 */
+	public Result sync(Path snapshot) throws IOException, SQLException
+	{
+		Instant startTime = Instant.now();
+		long inserted = 0;
+		long updated = 0;
+		long deleted = 0;
+		long unchanged = 0;
+
+		try (
+			PhysicianSnapshot.Reader reader = PhysicianSnapshot.open(snapshot);
+			Connection readConnection = DriverManager.getConnection(jdbcUrl, dbProps);
+			Connection writeConnection = DriverManager.getConnection(jdbcUrl, dbProps);
+			Statement stmt = readConnection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			FaultIsolatingBatchInserter<Physician> inserts = dryRun ? null : new FaultIsolatingBatchInserter<>(writeConnection,
+					INSERT_PHYSICIAN_WITH_ID, batchSize, PhysicianSync::bindInsert, PhysicianSync::toRejectLine,
+					rejectFile(INSERT_REJECTS_PREFIX), null);
+			FaultIsolatingBatchInserter<Physician> updates = dryRun ? null : new FaultIsolatingBatchInserter<>(writeConnection,
+					UPDATE_PHYSICIAN, batchSize, PhysicianSync::bindUpdate, PhysicianSync::toRejectLine,
+					rejectFile(UPDATE_REJECTS_PREFIX), null);
+			FaultIsolatingBatchInserter<Physician> deletes = dryRun ? null : new FaultIsolatingBatchInserter<>(writeConnection,
+					DELETE_PHYSICIAN, batchSize, PhysicianSync::bindDelete, PhysicianSync::toRejectLine,
+					rejectFile(DELETE_REJECTS_PREFIX), null);
+		)
+		{
+			// Connector/J streams the result row by row for this fetch size instead of buffering the table
+			stmt.setFetchSize(Integer.MIN_VALUE);
+			try (ResultSet rs = stmt.executeQuery(SELECT_PHYSICIANS_BY_ID))
+			{
+				SortedReader expectedRows = new SortedReader(reader, snapshot);
+				Physician expected = expectedRows.next();
+				Physician actual = readRow(rs);
+				while (expected != null || actual != null)
+				{
+					if (actual == null || (expected != null && expected.getId() < actual.getId()))
+					{
+						add(inserts, expected);
+						inserted++;
+						expected = expectedRows.next();
+					}
+					else if (expected == null || expected.getId() > actual.getId())
+					{
+						add(deletes, actual);
+						deleted++;
+						actual = readRow(rs);
+					}
+					else
+					{
+						if (sameColumns(expected, actual))
+						{
+							unchanged++;
+						}
+						else
+						{
+							add(updates, expected);
+							updated++;
+						}
+						expected = expectedRows.next();
+						actual = readRow(rs);
+					}
+				}
+			}
+
+			long rejected = 0;
+			if (!dryRun)
+			{
+				inserts.flush();
+				updates.flush();
+				deletes.flush();
+				rejected = inserts.getRejectedCount() + updates.getRejectedCount() + deletes.getRejectedCount();
+				// inserted rows keep the snapshot's IDs, which the web app's generator must not hand out again
+				PhysicianIdGenerator.advance(writeConnection);
+				writeConnection.commit();
+			}
+			Result result = new Result(inserted, updated, deleted, unchanged, rejected);
+			logReport(result, Duration.between(startTime, Instant.now()).toMillis());
+			return result;
+		}
+	}
+
+	/**
+	 * Queues a change, or does nothing on a dry run.
+	 *
+	 * @param statement The batch of the change's statement, null on a dry run
+	 * @param physician The row to change
+	 * @throws SQLException if the connection fails
+	 */
+	protected void add(FaultIsolatingBatchInserter<Physician> statement, Physician physician) throws SQLException
+	{
+		if (statement != null)
+		{
+			statement.add(physician);
+		}
+	}
+
+	/**
+	 * Gets the reject file of one statement.
+	 *
+	 * @param prefix The statement's prefix
+	 * @return the reject file next to the configured one.
+	 */
+	protected Path rejectFile(String prefix)
+	{
+		return rejectFile.resolveSibling(prefix + rejectFile.getFileName());
+	}
+
+	/**
+	 * Reads the next row of the streamed table.
+	 *
+	 * @param rs The result set of {@link #SELECT_PHYSICIANS_BY_ID}
+	 * @return the physician, or null after the last row
+	 * @throws SQLException if the row cannot be read
+	 */
+	protected static Physician readRow(ResultSet rs) throws SQLException
+	{
+		if (!rs.next())
+		{
+			return null;
+		}
+		Physician physician = new Physician();
+		physician.setId(rs.getInt(1));
+		physician.setLastName(rs.getString(2));
+		physician.setFirstName(rs.getString(3));
+		physician.setEmail(rs.getString(4));
+		physician.setPhoneNumber(rs.getString(5));
+		physician.setSpecialty(rs.getString(6));
+		return physician;
+	}
+
+	/**
+	 * Compares the synced columns of two rows with the same id.
+	 *
+	 * @param expected The snapshot row
+	 * @param actual The table row
+	 * @return true if no update is needed.
+	 */
+	protected static boolean sameColumns(Physician expected, Physician actual)
+	{
+		return Objects.equals(expected.getLastName(), actual.getLastName())
+				&& Objects.equals(expected.getFirstName(), actual.getFirstName())
+				&& Objects.equals(expected.getEmail(), actual.getEmail())
+				&& Objects.equals(expected.getPhoneNumber(), actual.getPhoneNumber())
+				&& Objects.equals(expected.getSpecialty(), actual.getSpecialty());
+	}
+
+	/**
+	 * Binds a physician to the parameters of {@link #INSERT_PHYSICIAN_WITH_ID}.
+	 */
+	protected static void bindInsert(PreparedStatement pstmt, Physician physician) throws SQLException
+	{
+		pstmt.setInt(1, physician.getId());
+		pstmt.setString(2, physician.getLastName());
+		pstmt.setString(3, physician.getFirstName());
+		pstmt.setString(4, physician.getEmail());
+		pstmt.setString(5, physician.getPhoneNumber());
+		pstmt.setString(6, physician.getSpecialty());
+	}
+
+	/**
+	 * Binds a physician to the parameters of {@link #UPDATE_PHYSICIAN}.
+	 */
+	protected static void bindUpdate(PreparedStatement pstmt, Physician physician) throws SQLException
+	{
+		pstmt.setString(1, physician.getLastName());
+		pstmt.setString(2, physician.getFirstName());
+		pstmt.setString(3, physician.getEmail());
+		pstmt.setString(4, physician.getPhoneNumber());
+		pstmt.setString(5, physician.getSpecialty());
+		pstmt.setInt(6, physician.getId());
+	}
+
+	/**
+	 * Binds a physician to the parameters of {@link #DELETE_PHYSICIAN}.
+	 */
+	protected static void bindDelete(PreparedStatement pstmt, Physician physician) throws SQLException
+	{
+		pstmt.setInt(1, physician.getId());
+	}
+
+	/**
+	 * Formats a change the database refused as a CSV line for the reject file.
+	 *
+	 * @param physician The rejected row
+	 * @return the id and columns of the row, quoted for CSV.
+	 */
+	protected static String toRejectLine(Physician physician)
+	{
+		return physician.getId() + "," + GenerateRandomPhysicianRecords.toRejectLine(physician);
+	}
+
+	/**
+	 * Logs the changes of the sync.
+	 *
+	 * @param result The changes
+	 * @param elapsedTime The elapsed time in ms
+	 */
+	protected void logReport(Result result, long elapsedTime)
+	{
+		logger.info("===============================  SYNC RESULTS{}  ===============================", dryRun ? " (DRY RUN)" : "");
+		logger.info("| Inserted     | Updated      | Deleted      | Unchanged    | Rejected   |");
+		logger.info("==========================================================================");
+		logger.info(String.format("| %-12d | %-12d | %-12d | %-12d | %-10d |", result.inserted(), result.updated(),
+				result.deleted(), result.unchanged(), result.rejected()));
+		logger.info("==========================================================================");
+		logger.info("| " + GenerateRandomPhysicianRecords.ELAPSED_TIME_MSG, elapsedTime);
+		if (result.rejected() > 0)
+		{
+			logger.warn("| rejected changes written to {}, {} and {}", rejectFile(INSERT_REJECTS_PREFIX),
+					rejectFile(UPDATE_REJECTS_PREFIX), rejectFile(DELETE_REJECTS_PREFIX));
+		}
+	}
+
+	/**
+	 * Reads a snapshot and checks that its ids are strictly increasing, which the merge-join relies on.
+	 */
+	protected static class SortedReader {
+
+		private final PhysicianSnapshot.Reader reader;
+		private final Path snapshot;
+		private long lastId = Long.MIN_VALUE;
+
+		SortedReader(PhysicianSnapshot.Reader reader, Path snapshot)
+		{
+			this.reader = reader;
+			this.snapshot = snapshot;
+		}
+
+		/**
+		 * Reads the next physician.
+		 *
+		 * @return the physician, or null at the end of the snapshot
+		 * @throws IOException if the snapshot cannot be read or is out of order
+		 */
+		Physician next() throws IOException
+		{
+			Physician physician = reader.next();
+			if (physician != null)
+			{
+				if (physician.getId() <= lastId)
+				{
+					throw new IOException(snapshot + " is not sorted by id: " + physician.getId() + " follows " + lastId);
+				}
+				lastId = physician.getId();
+			}
+			return physician;
+		}
+	}
+}
@@ -0,0 +1,425 @@
+/*********************************************************************************************************
+ * File:  PhysicianVerifier.java Course Materials CST8277
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 2024-09-14
+ *
+ * @description This class checks that the physician table holds exactly the rows a run generated.
+ *              The id space is split into fixed-size ranges which a pool of worker threads, each with
+ *              its own connection, checksums in the database and from the expected rows (regenerated
+ *              from the seed of the run, or read from its snapshot). The checksums are order
+ *              independent (row count, XOR and sum of a CRC32 per row) so neither side has to sort,
+ *              and only the ranges that differ are reported.
+ *
+ * @see jdbccmd.PhysicianManufacturer#seededPhysician
+ * @see jdbccmd.PhysicianSnapshot
+ * @see java.util.zip.CRC32
+ */
+package jdbccmd;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Range-partitioned, parallel checksum verification of the physician table.
+ * <p>
+ * The row checksum is the CRC32 of {@code CONCAT_WS('|', ID, LAST_NAME, FIRST_NAME, EMAIL, PHONE,
+ * SPECIALTY)} in UTF-8, computed by MySQL on the database side and by {@link #rowChecksum} on the
+ * expected side. {@code CREATED} is not part of it since it is set by the database at insert time.
+ * </p>
+ */
+public class PhysicianVerifier {
+
+	private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	/** SQL statement to find the largest physician id */
+	private static final String SELECT_MAX_ID = "SELECT MAX(ID) FROM PHYSICIAN";
+	/** Expression of the per-row checksum, must match {@link #rowChecksum} */
+	private static final String ROW_CRC = "CRC32(CONCAT_WS('|', ID, LAST_NAME, FIRST_NAME, EMAIL, PHONE, SPECIALTY))";
+	/** SQL statement to checksum one range of ids */
+	private static final String SELECT_RANGE_CHECKSUM = "SELECT COUNT(*), BIT_XOR(" + ROW_CRC + "), SUM(" + ROW_CRC
+			+ ") FROM PHYSICIAN WHERE ID BETWEEN ? AND ?";
+	/** Separator used by the row checksum */
+	private static final String SEPARATOR = "|";
+
+	/**
+	 * The checksum of a set of rows: their count, and the XOR and sum of their row checksums. XOR alone
+	 * would cancel out duplicated rows, the sum catches those.
+	 */
+	public static class RangeChecksum {
+
+		private long count;
+		private long xor;
+		private long sum;
+
+		/**
+		 * Adds one row.
+		 *
+		 * @param rowChecksum The CRC32 of the row
+		 */
+		public void add(long rowChecksum)
+		{
+			count++;
+			xor ^= rowChecksum;
+			sum += rowChecksum;
+		}
+
+		/**
+		 * Gets the number of rows.
+		 *
+		 * @return the row count.
+		 */
+		public long getCount()
+		{
+			return count;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+			{
+				return true;
+			}
+			if (!(obj instanceof RangeChecksum))
+			{
+				return false;
+			}
+			RangeChecksum other = (RangeChecksum) obj;
+			return count == other.count && xor == other.xor && sum == other.sum;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash(count, xor, sum);
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format("%08x/%x", xor, sum);
+		}
+	}
+
+	/**
+	 * A range of ids whose rows differ between the database and the expected rows.
+	 *
+	 * @param fromId The first id of the range
+	 * @param toId The last id of the range
+	 * @param actual The checksum of the rows in the database
+	 * @param expected The checksum of the expected rows
+	 */
+	public record Mismatch(long fromId, long toId, RangeChecksum actual, RangeChecksum expected) {
+	}
+
+	/**
+	 * Computes the checksum of the expected rows of one range.
+	 */
+	@FunctionalInterface
+	protected interface ExpectedRows {
+		RangeChecksum checksum(long fromId, long toId);
+	}
+
+	/** The JDBC URL of the database */
+	protected final String jdbcUrl;
+	/** Connection properties (user and password) */
+	protected final Properties dbProps;
+	/** Number of worker threads, each holding one connection */
+	protected final int threads;
+	/** Number of ids per range */
+	protected final int rangeSize;
+
+	/**
+	 * Creates a verifier.
+	 *
+	 * @param jdbcUrl The JDBC URL of the database
+	 * @param username The username for the database connection
+	 * @param password The password for the database connection
+	 * @param threads The number of worker threads
+	 * @param rangeSize The number of ids per range
+	 * @throws IllegalArgumentException if threads or range size are not positive
+	 */
+	public PhysicianVerifier(String jdbcUrl, String username, String password, int threads, int rangeSize)
+	{
+		if (threads < 1)
+		{
+			throw new IllegalArgumentException("threads must be at least 1");
+		}
+		if (rangeSize < 1)
+		{
+			throw new IllegalArgumentException("range size must be at least 1");
+		}
+		this.jdbcUrl = jdbcUrl;
+		this.dbProps = new Properties();
+		this.dbProps.put("user", username);
+		this.dbProps.put("password", password);
+		this.threads = threads;
+		this.rangeSize = rangeSize;
+	}
+
+	/**
+	 * Verifies the table against a seeded run, which inserted row {@code n} with id {@code n + 1}, for
+	 * rows 0 to {@code count - 1}, into a freshly truncated table. The ids are explicit, so a rejected
+	 * row only leaves its own range mismatching. Each worker regenerates the expected rows of its own
+	 * ranges.
+	 *
+	 * @param seed The seed of the run
+	 * @param count The number of rows the run generated
+	 * @return the mismatching ranges, empty if the table matches
+	 * @throws SQLException if the table cannot be read
+	 */
+	public List<Mismatch> verifySeed(long seed, int count) throws SQLException
+	{
+		return verify(count, (fromId, toId) -> {
+			RangeChecksum checksum = new RangeChecksum();
+			CRC32 crc = new CRC32();
+			for (long id = fromId, last = Math.min(toId, count); id <= last; id++)
+			{
+				Physician physician = PhysicianManufacturer.seededPhysician(seed, id - 1);
+				physician.setId((int) id);
+				checksum.add(rowChecksum(crc, physician));
+			}
+			return checksum;
+		});
+	}
+
+	/**
+	 * Verifies the table against a snapshot. The snapshot is read once, up front, into one checksum per
+	 * range, so its rows do not have to be in any particular order.
+	 *
+	 * @param snapshot The snapshot file
+	 * @return the mismatching ranges, empty if the table matches
+	 * @throws IOException if the snapshot cannot be read
+	 * @throws SQLException if the table cannot be read
+	 */
+	public List<Mismatch> verifySnapshot(Path snapshot) throws IOException, SQLException
+	{
+		Map<Long, RangeChecksum> expected = new HashMap<>();
+		long maxId = 0;
+		CRC32 crc = new CRC32();
+		try (PhysicianSnapshot.Reader reader = PhysicianSnapshot.open(snapshot))
+		{
+			for (Physician physician = reader.next(); physician != null; physician = reader.next())
+			{
+				if (physician.getId() < 1)
+				{
+					throw new IOException(snapshot + " holds a non-positive id: " + physician.getId());
+				}
+				maxId = Math.max(maxId, physician.getId());
+				expected.computeIfAbsent(rangeIndex(physician.getId()), k -> new RangeChecksum())
+						.add(rowChecksum(crc, physician));
+			}
+		}
+		return verify(maxId, (fromId, toId) -> expected.getOrDefault(rangeIndex(fromId), new RangeChecksum()));
+	}
+
+	/**
+	 * Checksums every range up to the larger of the expected and the actual largest id, and logs the
+	 * ranges that do not match.
+	 *
+	 * @param expectedMaxId The largest expected id
+	 * @param expectedRows The checksum of the expected rows of a range
+	 * @return the mismatching ranges, ordered by id
+	 * @throws SQLException if the table cannot be read or a worker failed
+	 */
+	protected List<Mismatch> verify(long expectedMaxId, ExpectedRows expectedRows) throws SQLException
+	{
+		Instant startTime = Instant.now();
+		long maxId = Math.max(expectedMaxId, readMaxId());
+		long ranges = (maxId + rangeSize - 1) / rangeSize;
+		logger.info("verifying ids [1, {}] in {} range(s) of {} on {} thread(s)", maxId, ranges, rangeSize, threads);
+
+		AtomicLong nextRange = new AtomicLong();
+		AtomicLong rowsChecked = new AtomicLong();
+		Queue<Mismatch> mismatches = new ConcurrentLinkedQueue<>();
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<?>> futures = new ArrayList<>(threads);
+		for (int i = 0; i < threads; i++)
+		{
+			futures.add(pool.submit(() -> {
+				try (
+					Connection connection = DriverManager.getConnection(jdbcUrl, dbProps);
+					PreparedStatement pstmt = connection.prepareStatement(SELECT_RANGE_CHECKSUM);
+				)
+				{
+					for (long range = nextRange.getAndIncrement(); range < ranges; range = nextRange.getAndIncrement())
+					{
+						long fromId = range * rangeSize + 1;
+						long toId = fromId + rangeSize - 1;
+						RangeChecksum actual = readChecksum(pstmt, fromId, toId);
+						RangeChecksum expected = expectedRows.checksum(fromId, toId);
+						rowsChecked.addAndGet(actual.getCount());
+						if (!actual.equals(expected))
+						{
+							mismatches.add(new Mismatch(fromId, toId, actual, expected));
+						}
+					}
+				}
+				return null;
+			}));
+		}
+		pool.shutdown();
+
+		for (Future<?> future : futures)
+		{
+			try
+			{
+				future.get();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new SQLException("interrupted while waiting for verify workers", e);
+			}
+			catch (ExecutionException e)
+			{
+				pool.shutdownNow();
+				// a failed worker leaves ranges unchecked, so the table cannot be reported as verified
+				throw new SQLException("verify worker failed: " + e.getCause().getLocalizedMessage(), e.getCause());
+			}
+		}
+
+		List<Mismatch> result = new ArrayList<>(mismatches);
+		result.sort(Comparator.comparingLong(Mismatch::fromId));
+		logReport(result, rowsChecked.get(), ranges, Duration.between(startTime, Instant.now()).toMillis());
+		return result;
+	}
+
+	/**
+	 * Reads the largest physician id.
+	 *
+	 * @return the largest id, 0 if the table is empty.
+	 * @throws SQLException if the table cannot be read.
+	 */
+	protected long readMaxId() throws SQLException
+	{
+		try (
+			Connection connection = DriverManager.getConnection(jdbcUrl, dbProps);
+			Statement stmt = connection.createStatement();
+			ResultSet rs = stmt.executeQuery(SELECT_MAX_ID);
+		)
+		{
+			return rs.next() ? rs.getLong(1) : 0;
+		}
+	}
+
+	/**
+	 * Checksums one range of ids in the database.
+	 *
+	 * @param pstmt The prepared {@link #SELECT_RANGE_CHECKSUM} statement
+	 * @param fromId The first id of the range
+	 * @param toId The last id of the range
+	 * @return the checksum of the rows in the range
+	 * @throws SQLException if the query fails
+	 */
+	protected RangeChecksum readChecksum(PreparedStatement pstmt, long fromId, long toId) throws SQLException
+	{
+		pstmt.setLong(1, fromId);
+		pstmt.setLong(2, toId);
+		RangeChecksum checksum = new RangeChecksum();
+		try (ResultSet rs = pstmt.executeQuery())
+		{
+			if (rs.next())
+			{
+				checksum.count = rs.getLong(1);
+				checksum.xor = rs.getLong(2);
+				// SUM is null for an empty range, which getLong reads as 0
+				checksum.sum = rs.getLong(3);
+			}
+		}
+		return checksum;
+	}
+
+	/**
+	 * Gets the range an id belongs to.
+	 *
+	 * @param id The id
+	 * @return the zero-based range index.
+	 */
+	protected long rangeIndex(long id)
+	{
+		return (id - 1) / rangeSize;
+	}
+
+	/**
+	 * Computes the checksum of one row the way {@link #ROW_CRC} does in MySQL. Like {@code CONCAT_WS},
+	 * null columns are skipped together with their separator.
+	 *
+	 * @param crc A reusable CRC32 instance
+	 * @param physician The row
+	 * @return the CRC32 of the row.
+	 */
+	public static long rowChecksum(CRC32 crc, Physician physician)
+	{
+		StringBuilder sb = new StringBuilder(96).append(physician.getId());
+		for (String column : new String[] { physician.getLastName(), physician.getFirstName(), physician.getEmail(),
+				physician.getPhoneNumber(), physician.getSpecialty() })
+		{
+			if (column != null)
+			{
+				sb.append(SEPARATOR).append(column);
+			}
+		}
+		crc.reset();
+		crc.update(sb.toString().getBytes(StandardCharsets.UTF_8));
+		return crc.getValue();
+	}
+
+	/**
+	 * Logs the mismatching ranges and a summary line.
+	 *
+	 * @param mismatches The mismatching ranges
+	 * @param rows The number of rows checksummed in the database
+	 * @param ranges The number of ranges checked
+	 * @param elapsedTime The elapsed time in ms
+	 */
+	protected void logReport(List<Mismatch> mismatches, long rows, long ranges, long elapsedTime)
+	{
+		logger.info("==================================================  VERIFY RESULTS  ==================================================");
+		if (!mismatches.isEmpty())
+		{
+			logger.info("| From id      | To id        | DB rows      | Expected     | DB checksum              | Expected checksum        |");
+			logger.info("======================================================================================================================");
+			for (Mismatch mismatch : mismatches)
+			{
+				logger.info(String.format("| %-12d | %-12d | %-12d | %-12d | %-24s | %-24s |", mismatch.fromId(), mismatch.toId(),
+						mismatch.actual().getCount(), mismatch.expected().getCount(), mismatch.actual(), mismatch.expected()));
+			}
+			logger.info("======================================================================================================================");
+		}
+		logger.info(String.format("| %d row(s) in %d range(s) verified in %d ms, %d range(s) mismatch", rows, ranges, elapsedTime,
+				mismatches.size()));
+		logger.info("======================================================================================================================");
+	}
+}
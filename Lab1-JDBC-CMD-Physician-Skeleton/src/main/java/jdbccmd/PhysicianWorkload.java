@@ -0,0 +1,478 @@
+/*********************************************************************************************************
+ * File:  PhysicianWorkload.java Course Materials CST8277
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 2024-09-14
+ *
+ * @description This class runs a mixed read/write OLTP workload against the physician table once it
+ *              has been seeded. A fixed pool of worker threads, each holding its own JDBC connection
+ *              and prepared statements, picks operations according to a weighted mix for a set
+ *              duration. Per-operation throughput and latency percentiles are reported through SLF4J
+ *              so that index and configuration changes can be benchmarked repeatably.
+ *
+ * @see jdbccmd.LatencyHistogram
+ * @see java.util.concurrent.ExecutorService
+ * @see java.util.concurrent.ThreadLocalRandom
+ */
+package jdbccmd;
+
+import java.lang.invoke.MethodHandles;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A timed, multi-threaded workload driver for the physician table.
+ * <p>
+ * Each worker owns one connection (so the pool size equals the thread count) and records latencies
+ * into thread-private {@link LatencyHistogram}s which are merged when the run is over. Operations
+ * issued during the warm-up period are executed but not recorded.
+ * </p>
+ */
+public class PhysicianWorkload {
+
+	private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	/** SQL statement to find the current range of physician ids */
+	private static final String SELECT_ID_RANGE = "SELECT MIN(ID), MAX(ID) FROM PHYSICIAN";
+	/** SQL statement to read a physician by primary key */
+	private static final String SELECT_PHYSICIAN_BY_ID = "SELECT ID, LAST_NAME, FIRST_NAME, EMAIL, PHONE, SPECIALTY, CREATED FROM PHYSICIAN WHERE ID = ?";
+	/** SQL statement to read physicians by last name prefix */
+	private static final String SELECT_PHYSICIAN_BY_PREFIX = "SELECT ID, LAST_NAME, FIRST_NAME, EMAIL, PHONE, SPECIALTY, CREATED FROM PHYSICIAN WHERE LAST_NAME LIKE ? LIMIT ?";
+	/** SQL statement to update the contact details of a physician, bumping the version the web app locks it with */
+	private static final String UPDATE_PHYSICIAN_CONTACT = "UPDATE PHYSICIAN SET PHONE = ?, EMAIL = ?, VERSION = VERSION + 1 WHERE ID = ?";
+	/** SQL statement to delete a physician */
+	private static final String DELETE_PHYSICIAN = "DELETE FROM PHYSICIAN WHERE ID = ?";
+
+	/** Maximum number of rows returned by a prefix search, mimics one page of the web tier */
+	protected static final int PREFIX_SEARCH_LIMIT = 25;
+
+	/** Default mix used when none is given on the command line */
+	public static final String DEFAULT_MIX = "select-id=50,select-prefix=20,update=20,delete=10";
+
+	/**
+	 * The operations the workload can issue, keyed by the name used in the mix option.
+	 */
+	public enum Operation {
+		SELECT_BY_ID("select-id"),
+		SELECT_BY_PREFIX("select-prefix"),
+		UPDATE("update"),
+		DELETE("delete");
+
+		private final String mixName;
+
+		Operation(String mixName)
+		{
+			this.mixName = mixName;
+		}
+
+		/**
+		 * Gets the name of this operation as used in the mix option.
+		 *
+		 * @return the mix name.
+		 */
+		public String getMixName()
+		{
+			return mixName;
+		}
+
+		/**
+		 * Looks up an operation by its mix name.
+		 *
+		 * @param mixName The name used in the mix option.
+		 * @return the matching operation.
+		 * @throws IllegalArgumentException if no operation has that name.
+		 */
+		public static Operation fromMixName(String mixName)
+		{
+			for (Operation op : values())
+			{
+				if (op.mixName.equalsIgnoreCase(mixName))
+				{
+					return op;
+				}
+			}
+			throw new IllegalArgumentException("unknown workload operation: " + mixName);
+		}
+	}
+
+	/** The JDBC URL of the database */
+	protected final String jdbcUrl;
+	/** Connection properties (user and password) */
+	protected final Properties dbProps;
+	/** Number of worker threads, and therefore connections */
+	protected final int threads;
+	/** Measured duration of the run in seconds */
+	protected final int durationSeconds;
+	/** Warm-up period in seconds, not included in the results */
+	protected final int warmupSeconds;
+	/** Operations in mix order */
+	protected final Operation[] operations;
+	/** Cumulative weights matching {@link #operations}, used to pick an operation */
+	protected final int[] cumulativeWeights;
+
+	/**
+	 * Creates a workload driver.
+	 *
+	 * @param jdbcUrl The JDBC URL of the database
+	 * @param username The username for the database connection
+	 * @param password The password for the database connection
+	 * @param threads The number of concurrent workers (and connections)
+	 * @param durationSeconds How long to measure for, in seconds
+	 * @param warmupSeconds How long to run before measuring, in seconds
+	 * @param mix The operation mix, e.g. {@value #DEFAULT_MIX}
+	 */
+	public PhysicianWorkload(String jdbcUrl, String username, String password, int threads, int durationSeconds,
+			int warmupSeconds, String mix)
+	{
+		if (threads < 1)
+		{
+			throw new IllegalArgumentException("workload needs at least one thread");
+		}
+		if (durationSeconds < 1)
+		{
+			throw new IllegalArgumentException("workload duration must be at least one second");
+		}
+		this.jdbcUrl = jdbcUrl;
+		this.dbProps = new Properties();
+		this.dbProps.put("user", username);
+		this.dbProps.put("password", password);
+		this.threads = threads;
+		this.durationSeconds = durationSeconds;
+		this.warmupSeconds = Math.max(0, warmupSeconds);
+
+		Map<Operation, Integer> weights = parseMix(mix);
+		this.operations = weights.keySet().toArray(new Operation[0]);
+		this.cumulativeWeights = new int[operations.length];
+		int total = 0;
+		for (int i = 0; i < operations.length; i++)
+		{
+			total += weights.get(operations[i]);
+			cumulativeWeights[i] = total;
+		}
+	}
+
+	/**
+	 * Parses a mix such as "select-id=50,update=50" into operation weights.
+	 *
+	 * @param mix The mix definition.
+	 * @return the weight of every operation with a positive weight, in declaration order.
+	 * @throws IllegalArgumentException if the mix is malformed or has no positive weights.
+	 */
+	protected static Map<Operation, Integer> parseMix(String mix)
+	{
+		Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+		for (String entry : mix.split(","))
+		{
+			if (entry.isBlank())
+			{
+				continue;
+			}
+			String[] nameAndWeight = entry.split("=");
+			if (nameAndWeight.length != 2)
+			{
+				throw new IllegalArgumentException("workload mix entries must look like name=weight: " + entry);
+			}
+			int weight = Integer.parseInt(nameAndWeight[1].trim());
+			if (weight < 0)
+			{
+				throw new IllegalArgumentException("workload mix weights cannot be negative: " + entry);
+			}
+			if (weight > 0)
+			{
+				weights.put(Operation.fromMixName(nameAndWeight[0].trim()), weight);
+			}
+		}
+		if (weights.isEmpty())
+		{
+			throw new IllegalArgumentException("workload mix has no operations: " + mix);
+		}
+		return weights;
+	}
+
+	/**
+	 * Runs the workload and logs a per-operation report.
+	 *
+	 * @return the merged latency histogram of every operation.
+	 * @throws SQLException if the id range of the physician table cannot be read.
+	 */
+	public Map<Operation, LatencyHistogram> run() throws SQLException
+	{
+		int[] idRange = readIdRange();
+		logger.info("running workload {} on {} thread(s) for {}s (+{}s warm-up) over ids [{}, {}]",
+				describeMix(), threads, durationSeconds, warmupSeconds, idRange[0], idRange[1]);
+
+		long startNanos = System.nanoTime();
+		long measureFromNanos = startNanos + TimeUnit.SECONDS.toNanos(warmupSeconds);
+		long endNanos = measureFromNanos + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<Worker>> futures = new ArrayList<>(threads);
+		for (int i = 0; i < threads; i++)
+		{
+			futures.add(pool.submit(new Worker(idRange[0], idRange[1], measureFromNanos, endNanos)::call));
+		}
+		pool.shutdown();
+
+		Map<Operation, LatencyHistogram> merged = new EnumMap<>(Operation.class);
+		Map<Operation, long[]> mergedCounters = new EnumMap<>(Operation.class);
+		for (Operation op : operations)
+		{
+			merged.put(op, new LatencyHistogram());
+			mergedCounters.put(op, new long[2]);
+		}
+		for (Future<Worker> future : futures)
+		{
+			try
+			{
+				Worker worker = future.get();
+				for (Operation op : operations)
+				{
+					merged.get(op).merge(worker.histograms.get(op));
+					mergedCounters.get(op)[0] += worker.rows.get(op)[0];
+					mergedCounters.get(op)[1] += worker.errors.get(op)[0];
+				}
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new SQLException("interrupted while waiting for workload workers", e);
+			}
+			catch (ExecutionException e)
+			{
+				logger.error("workload worker failed, its results are not included: {}", e.getCause().getLocalizedMessage());
+			}
+		}
+
+		logReport(merged, mergedCounters);
+		return merged;
+	}
+
+	/**
+	 * Reads the smallest and largest physician id, the key space the workload draws from.
+	 *
+	 * @return a two element array holding the min and max id.
+	 * @throws SQLException if the table is empty or cannot be read.
+	 */
+	protected int[] readIdRange() throws SQLException
+	{
+		try (
+			Connection connection = DriverManager.getConnection(jdbcUrl, dbProps);
+			Statement stmt = connection.createStatement();
+			ResultSet rs = stmt.executeQuery(SELECT_ID_RANGE);
+		)
+		{
+			if (!rs.next() || rs.getObject(1) == null)
+			{
+				throw new SQLException("physician table is empty, nothing to run the workload against");
+			}
+			return new int[] { rs.getInt(1), rs.getInt(2) };
+		}
+	}
+
+	/**
+	 * Formats the effective mix as percentages for the log.
+	 *
+	 * @return the mix, e.g. "[select-id 50%, update 50%]".
+	 */
+	protected String describeMix()
+	{
+		int total = cumulativeWeights[cumulativeWeights.length - 1];
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < operations.length; i++)
+		{
+			int weight = cumulativeWeights[i] - (i == 0 ? 0 : cumulativeWeights[i - 1]);
+			if (i > 0)
+			{
+				sb.append(", ");
+			}
+			sb.append(operations[i].getMixName()).append(' ').append(Math.round(100.0 * weight / total)).append('%');
+		}
+		return sb.append(']').toString();
+	}
+
+	/**
+	 * Logs throughput and latency percentiles for each operation.
+	 *
+	 * @param histograms The merged latency histogram for each operation.
+	 * @param counters The merged rows-affected and error counters for each operation.
+	 */
+	protected void logReport(Map<Operation, LatencyHistogram> histograms, Map<Operation, long[]> counters)
+	{
+		logger.info("=========================================================  WORKLOAD RESULTS  =========================================================");
+		logger.info("| Operation     | Ops        | Ops/s      | Rows       | Errors   | Mean (ms) | p50 (ms)  | p95 (ms)  | p99 (ms)  | Max (ms)  |");
+		logger.info("======================================================================================================================================");
+
+		long totalOps = 0;
+		for (Operation op : operations)
+		{
+			LatencyHistogram histogram = histograms.get(op);
+			totalOps += histogram.getCount();
+			logger.info(String.format("| %-13s | %-10d | %-10.1f | %-10d | %-8d | %-9.3f | %-9.3f | %-9.3f | %-9.3f | %-9.3f |",
+					op.getMixName(),
+					histogram.getCount(),
+					(double) histogram.getCount() / durationSeconds,
+					counters.get(op)[0],
+					counters.get(op)[1],
+					histogram.getMeanNanos() / 1_000_000.0,
+					histogram.getValueAtPercentile(50) / 1_000_000.0,
+					histogram.getValueAtPercentile(95) / 1_000_000.0,
+					histogram.getValueAtPercentile(99) / 1_000_000.0,
+					histogram.getMaxNanos() / 1_000_000.0));
+		}
+		logger.info("======================================================================================================================================");
+		logger.info(String.format("| Total ops = %d, %.1f ops/s over %d connection(s)", totalOps, (double) totalOps / durationSeconds, threads));
+		logger.info("======================================================================================================================================");
+	}
+
+	/**
+	 * One worker thread of the workload, holding its own connection, statements and histograms.
+	 */
+	protected class Worker {
+
+		private final int minId;
+		private final int maxId;
+		private final long measureFromNanos;
+		private final long endNanos;
+
+		/** Latencies per operation, recorded only after the warm-up */
+		protected final Map<Operation, LatencyHistogram> histograms = new EnumMap<>(Operation.class);
+		/** Rows read or affected per operation */
+		protected final Map<Operation, long[]> rows = new EnumMap<>(Operation.class);
+		/** Failed statements per operation */
+		protected final Map<Operation, long[]> errors = new EnumMap<>(Operation.class);
+
+		Worker(int minId, int maxId, long measureFromNanos, long endNanos)
+		{
+			this.minId = minId;
+			this.maxId = maxId;
+			this.measureFromNanos = measureFromNanos;
+			this.endNanos = endNanos;
+			for (Operation op : operations)
+			{
+				histograms.put(op, new LatencyHistogram());
+				rows.put(op, new long[1]);
+				errors.put(op, new long[1]);
+			}
+		}
+
+		/**
+		 * Issues operations until the end of the run.
+		 *
+		 * @return this worker, holding its results.
+		 * @throws SQLException if the connection cannot be opened.
+		 */
+		Worker call() throws SQLException
+		{
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			int totalWeight = cumulativeWeights[cumulativeWeights.length - 1];
+
+			try (
+				Connection connection = DriverManager.getConnection(jdbcUrl, dbProps);
+				PreparedStatement pstmtById = connection.prepareStatement(SELECT_PHYSICIAN_BY_ID);
+				PreparedStatement pstmtByPrefix = connection.prepareStatement(SELECT_PHYSICIAN_BY_PREFIX);
+				PreparedStatement pstmtUpdate = connection.prepareStatement(UPDATE_PHYSICIAN_CONTACT);
+				PreparedStatement pstmtDelete = connection.prepareStatement(DELETE_PHYSICIAN);
+			)
+			{
+				long now;
+				while ((now = System.nanoTime()) < endNanos)
+				{
+					int pick = random.nextInt(totalWeight);
+					int opIndex = 0;
+					while (cumulativeWeights[opIndex] <= pick)
+					{
+						opIndex++;
+					}
+					Operation op = operations[opIndex];
+
+					int affected = 0;
+					boolean failed = false;
+					try
+					{
+						switch (op)
+						{
+							case SELECT_BY_ID:
+								pstmtById.setInt(1, randomId(random));
+								affected = drain(pstmtById);
+								break;
+							case SELECT_BY_PREFIX:
+								pstmtByPrefix.setString(1, randomLastNamePrefix(random) + "%");
+								pstmtByPrefix.setInt(2, PREFIX_SEARCH_LIMIT);
+								affected = drain(pstmtByPrefix);
+								break;
+							case UPDATE:
+								pstmtUpdate.setString(1, GenerateRandomPhysicianRecords.formatPhoneNumber(PhysicianManufacturer.randomPhoneNumber(random)));
+								pstmtUpdate.setString(2, PhysicianManufacturer.randomEmail(random));
+								pstmtUpdate.setInt(3, randomId(random));
+								affected = pstmtUpdate.executeUpdate();
+								break;
+							case DELETE:
+								pstmtDelete.setInt(1, randomId(random));
+								affected = pstmtDelete.executeUpdate();
+								break;
+						}
+					}
+					catch (SQLException e)
+					{
+						failed = true;
+						logger.debug("workload {} failed: {}", op.getMixName(), e.getLocalizedMessage());
+					}
+
+					if (now >= measureFromNanos)
+					{
+						histograms.get(op).record(System.nanoTime() - now);
+						rows.get(op)[0] += affected;
+						if (failed)
+						{
+							errors.get(op)[0]++;
+						}
+					}
+				}
+			}
+			return this;
+		}
+
+		private int randomId(ThreadLocalRandom random)
+		{
+			return random.nextInt(minId, maxId + 1);
+		}
+
+		private String randomLastNamePrefix(ThreadLocalRandom random)
+		{
+			String lastName = PhysicianManufacturer.pick(PhysicianManufacturer.poolOfLastnames(), random);
+			return lastName.substring(0, Math.min(lastName.length(), 1 + random.nextInt(3)));
+		}
+
+		private int drain(PreparedStatement pstmt) throws SQLException
+		{
+			int count = 0;
+			try (ResultSet rs = pstmt.executeQuery())
+			{
+				while (rs.next())
+				{
+					count++;
+				}
+			}
+			return count;
+		}
+	}
+}
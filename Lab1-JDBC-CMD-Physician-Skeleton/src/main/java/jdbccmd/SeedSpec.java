@@ -0,0 +1,191 @@
+/*********************************************************************************************************
+ * File:  SeedSpec.java Course Materials CST8277
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 2024-09-14
+ *
+ * @description This class reads a declarative seed spec from a properties file. The spec lists the
+ *              tables to seed, how many rows each gets and which {@link ColumnGenerator} fills each
+ *              column. Columns are matched against the live table through {@code DatabaseMetaData}
+ *              when the spec is compiled into a {@link TableProducer}.
+ *
+ * @see jdbccmd.ColumnGenerator
+ * @see jdbccmd.TableProducer
+ * @see java.util.Properties
+ */
+package jdbccmd;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * A parsed seed spec.
+ * <p>
+ * Example:
+ * </p>
+ * <pre>
+ * tables = physician
+ * physician.rows = 1000
+ * physician.column.last_name = pool:lastnamePool.txt
+ * physician.column.email = pattern:???#####@algonquinlive.com
+ * physician.column.created = now
+ * </pre>
+ * <p>
+ * {@code <table>.rows} may be omitted to use the row count from the command line, or set to
+ * {@code *} to load as many rows as the bounded generators (e.g. a sequential pool) allow.
+ * </p>
+ */
+public class SeedSpec {
+
+	/** Key listing the tables to seed */
+	protected static final String TABLES_KEY = "tables";
+	/** Suffix of the per-table row count key */
+	protected static final String ROWS_SUFFIX = ".rows";
+	/** Infix of the per-column generator keys */
+	protected static final String COLUMN_INFIX = ".column.";
+	/** Row count meaning "as many as the generators allow" */
+	protected static final String ALL_ROWS = "*";
+	/** Row count value used internally for {@link #ALL_ROWS} */
+	public static final long UNBOUNDED_ROWS = -1;
+
+	/**
+	 * The spec of one table.
+	 *
+	 * @param name The table name as written in the spec
+	 * @param rows The number of rows to load, {@link SeedSpec#UNBOUNDED_ROWS} for "*", or null for the default
+	 * @param columns Generator definitions keyed by lower-case column name
+	 */
+	public record TableSpec(String name, Long rows, Map<String, String> columns) {
+
+		/**
+		 * Gets the tables this table samples foreign keys from.
+		 *
+		 * @return the lower-case names of the referenced tables.
+		 */
+		public Set<String> referencedTables()
+		{
+			Set<String> referenced = new LinkedHashSet<>();
+			for (String definition : columns.values())
+			{
+				String table = ColumnGenerator.referencedTable(definition);
+				if (table != null)
+				{
+					referenced.add(table.toLowerCase(Locale.ROOT));
+				}
+			}
+			return referenced;
+		}
+	}
+
+	/** The tables of the spec, in the order they are listed */
+	protected final List<TableSpec> tables;
+
+	/**
+	 * Creates a spec from its tables.
+	 *
+	 * @param tables The table specs
+	 */
+	protected SeedSpec(List<TableSpec> tables)
+	{
+		this.tables = Collections.unmodifiableList(tables);
+	}
+
+	/**
+	 * Gets the table specs in the order they are listed.
+	 *
+	 * @return the table specs.
+	 */
+	public List<TableSpec> getTables()
+	{
+		return tables;
+	}
+
+	/**
+	 * Loads a spec from a file, falling back to a classpath resource of the same name.
+	 *
+	 * @param location A file path or classpath resource name
+	 * @return the parsed spec
+	 * @throws IOException if the spec cannot be read
+	 * @throws IllegalArgumentException if the spec is malformed
+	 */
+	public static SeedSpec load(String location) throws IOException
+	{
+		Path path = Path.of(location);
+		try (
+			InputStream in = Files.isRegularFile(path) ? Files.newInputStream(path)
+					: SeedSpec.class.getClassLoader().getResourceAsStream(location);
+		)
+		{
+			if (in == null)
+			{
+				throw new IOException("seed spec not found: " + location);
+			}
+			Properties props = new Properties();
+			props.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+			return parse(props);
+		}
+	}
+
+	/**
+	 * Parses a spec from properties.
+	 *
+	 * @param props The spec properties
+	 * @return the parsed spec
+	 * @throws IllegalArgumentException if the spec is malformed
+	 */
+	public static SeedSpec parse(Properties props)
+	{
+		String tableList = props.getProperty(TABLES_KEY);
+		if (tableList == null || tableList.isBlank())
+		{
+			throw new IllegalArgumentException("seed spec must list its tables in '" + TABLES_KEY + "'");
+		}
+
+		List<TableSpec> tables = new ArrayList<>();
+		for (String table : tableList.split(","))
+		{
+			String name = table.trim();
+			if (name.isEmpty())
+			{
+				continue;
+			}
+
+			Long rows = null;
+			String rowsValue = props.getProperty(name + ROWS_SUFFIX);
+			if (rowsValue != null)
+			{
+				rows = ALL_ROWS.equals(rowsValue.trim()) ? UNBOUNDED_ROWS : Long.parseLong(rowsValue.trim());
+			}
+
+			String columnPrefix = name + COLUMN_INFIX;
+			Map<String, String> columns = new LinkedHashMap<>();
+			for (String key : props.stringPropertyNames())
+			{
+				if (key.startsWith(columnPrefix))
+				{
+					columns.put(key.substring(columnPrefix.length()).trim().toLowerCase(Locale.ROOT), props.getProperty(key).trim());
+				}
+			}
+			if (columns.isEmpty())
+			{
+				throw new IllegalArgumentException("seed spec has no columns for table " + name);
+			}
+			tables.add(new TableSpec(name, rows, columns));
+		}
+		return new SeedSpec(tables);
+	}
+}
@@ -0,0 +1,332 @@
+/*********************************************************************************************************
+ * File:  SpecSeeder.java Course Materials CST8277
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 2024-09-14
+ *
+ * @description This class seeds the tables of a {@link SeedSpec}. Tables are scheduled in foreign
+ *              key order and independent tables are loaded concurrently. Each table is compiled into
+ *              a {@link TableProducer} once, truncated, and loaded through a
+ *              {@link FaultIsolatingBatchInserter}, so spec-driven loads get the same batching and
+ *              reject handling as the physician generator.
+ *
+ * @see jdbccmd.SeedSpec
+ * @see jdbccmd.TableProducer
+ * @see jdbccmd.FaultIsolatingBatchInserter
+ * @see java.util.concurrent.CompletableFuture
+ */
+package jdbccmd;
+
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads the tables of a seed spec in dependency order, in parallel where the dependencies allow.
+ */
+public class SpecSeeder {
+
+	private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	/** Disables foreign key checks so parent tables can be truncated, MySQL specific */
+	private static final String DISABLE_FK_CHECKS = "SET FOREIGN_KEY_CHECKS = 0";
+	/** Re-enables foreign key checks */
+	private static final String ENABLE_FK_CHECKS = "SET FOREIGN_KEY_CHECKS = 1";
+	/** Suffix of the per-table reject files */
+	protected static final String REJECT_FILE_SUFFIX = "-rejects.csv";
+
+	/** The JDBC URL of the database */
+	protected final String jdbcUrl;
+	/** Connection properties (user and password) */
+	protected final Properties dbProps;
+	/** Row count for tables whose spec does not set one */
+	protected final int defaultRows;
+	/** Number of rows per insert batch */
+	protected final int batchSize;
+	/** Directory the per-table reject files are written to */
+	protected final Path rejectDir;
+	/** Maximum number of tables loaded at the same time */
+	protected final int threads;
+
+	/**
+	 * Creates a seeder.
+	 *
+	 * @param jdbcUrl The JDBC URL of the database
+	 * @param username The username for the database connection
+	 * @param password The password for the database connection
+	 * @param defaultRows The row count for tables whose spec does not set one
+	 * @param batchSize The number of rows per insert batch
+	 * @param rejectDir The directory the per-table reject files are written to
+	 * @param threads The maximum number of tables loaded at the same time
+	 */
+	public SpecSeeder(String jdbcUrl, String username, String password, int defaultRows, int batchSize, Path rejectDir,
+			int threads)
+	{
+		this.jdbcUrl = jdbcUrl;
+		this.dbProps = new Properties();
+		this.dbProps.put("user", username);
+		this.dbProps.put("password", password);
+		this.defaultRows = defaultRows;
+		this.batchSize = batchSize;
+		this.rejectDir = rejectDir;
+		this.threads = threads;
+	}
+
+	/**
+	 * Seeds every table of the spec in one parallel run.
+	 * <p>
+	 * A table starts once every table it depends on has been loaded, and independent tables load
+	 * concurrently, each on its own connection. Dependencies come from the foreign keys declared in
+	 * the schema and from the {@code fk:} samplers of the spec. If a table fails, the tables that
+	 * depend on it are skipped.
+	 * </p>
+	 *
+	 * @param spec The seed spec
+	 * @throws SQLException if the schema cannot be read, or if any table failed to load
+	 */
+	public void seed(SeedSpec spec) throws SQLException
+	{
+		Map<String, Set<String>> dependencies;
+		try (Connection connection = DriverManager.getConnection(jdbcUrl, dbProps))
+		{
+			dependencies = readDependencies(connection, spec);
+		}
+		List<SeedSpec.TableSpec> order = loadOrder(spec, dependencies);
+
+		Map<String, List<String>> pools = new ConcurrentHashMap<>();
+		LocalDateTime now = LocalDateTime.now();
+
+		logger.info("=====================================  SEED RESULTS  =====================================");
+		logger.info("| Table                | Inserted     | Rejected   | Elapsed (ms) | Rows/s       |");
+		logger.info("==========================================================================================");
+
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, order.size())));
+		Map<String, CompletableFuture<Void>> loads = new LinkedHashMap<>();
+		try
+		{
+			for (SeedSpec.TableSpec table : order)
+			{
+				String key = table.name().toLowerCase(Locale.ROOT);
+				CompletableFuture<?>[] parents = dependencies.get(key).stream().map(loads::get).toArray(CompletableFuture[]::new);
+				loads.put(key, CompletableFuture.allOf(parents).thenRunAsync(() -> {
+					try (Connection connection = DriverManager.getConnection(jdbcUrl, dbProps))
+					{
+						seedTable(connection, table, pools, now, ThreadLocalRandom.current());
+					}
+					catch (SQLException e)
+					{
+						throw new CompletionException(e);
+					}
+				}, pool));
+			}
+
+			SQLException failure = null;
+			for (Map.Entry<String, CompletableFuture<Void>> load : loads.entrySet())
+			{
+				try
+				{
+					load.getValue().join();
+				}
+				catch (CompletionException e)
+				{
+					Throwable cause = e.getCause();
+					logger.error("table {} was not seeded: {}", load.getKey(), cause.getLocalizedMessage());
+					if (failure == null)
+					{
+						failure = cause instanceof SQLException ? (SQLException) cause : new SQLException(cause);
+					}
+				}
+			}
+			logger.info("==========================================================================================");
+			if (failure != null)
+			{
+				throw failure;
+			}
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Collects, for every table of the spec, the other spec tables it must wait for.
+	 *
+	 * @param connection The connection to read the foreign keys with
+	 * @param spec The seed spec
+	 * @return the parent tables of each table, keyed and valued by lower-case table name
+	 * @throws SQLException if the foreign keys cannot be read
+	 */
+	protected Map<String, Set<String>> readDependencies(Connection connection, SeedSpec spec) throws SQLException
+	{
+		Set<String> specTables = new HashSet<>();
+		for (SeedSpec.TableSpec table : spec.getTables())
+		{
+			specTables.add(table.name().toLowerCase(Locale.ROOT));
+		}
+
+		DatabaseMetaData metaData = connection.getMetaData();
+		Map<String, Set<String>> dependencies = new HashMap<>();
+		for (SeedSpec.TableSpec table : spec.getTables())
+		{
+			String key = table.name().toLowerCase(Locale.ROOT);
+			Set<String> parents = new LinkedHashSet<>(table.referencedTables());
+			String tableName = TableProducer.resolveTableName(metaData, connection.getCatalog(), table.name());
+			try (ResultSet importedKeys = metaData.getImportedKeys(connection.getCatalog(), null, tableName))
+			{
+				while (importedKeys.next())
+				{
+					parents.add(importedKeys.getString("PKTABLE_NAME").toLowerCase(Locale.ROOT));
+				}
+			}
+			// parents outside the spec are already populated (or are not ours to seed), self references need no ordering
+			parents.retainAll(specTables);
+			parents.remove(key);
+			dependencies.put(key, parents);
+		}
+		return dependencies;
+	}
+
+	/**
+	 * Orders the tables so that every table comes after the tables it depends on.
+	 *
+	 * @param spec The seed spec
+	 * @param dependencies The parent tables of each table
+	 * @return the tables in a valid load order, ties kept in spec order
+	 * @throws IllegalArgumentException if the dependencies contain a cycle
+	 */
+	protected static List<SeedSpec.TableSpec> loadOrder(SeedSpec spec, Map<String, Set<String>> dependencies)
+	{
+		List<SeedSpec.TableSpec> order = new ArrayList<>();
+		Set<String> placed = new HashSet<>();
+		List<SeedSpec.TableSpec> remaining = new ArrayList<>(spec.getTables());
+		while (!remaining.isEmpty())
+		{
+			boolean progress = false;
+			for (Iterator<SeedSpec.TableSpec> it = remaining.iterator(); it.hasNext();)
+			{
+				SeedSpec.TableSpec table = it.next();
+				String key = table.name().toLowerCase(Locale.ROOT);
+				if (placed.containsAll(dependencies.get(key)))
+				{
+					order.add(table);
+					placed.add(key);
+					it.remove();
+					progress = true;
+				}
+			}
+			if (!progress)
+			{
+				throw new IllegalArgumentException("seed spec tables have circular dependencies: " + remaining);
+			}
+		}
+		return order;
+	}
+
+	/**
+	 * Compiles, truncates and loads one table.
+	 *
+	 * @param connection The connection to load with
+	 * @param table The table spec
+	 * @param pools Cache of pools shared by every table of the spec
+	 * @param now The value of the {@code now} generator
+	 * @param random The random number generator for this table
+	 * @throws SQLException if the table cannot be compiled or loaded
+	 */
+	protected void seedTable(Connection connection, SeedSpec.TableSpec table, Map<String, List<String>> pools,
+			LocalDateTime now, Random random) throws SQLException
+	{
+		Instant startTime = Instant.now();
+		TableProducer producer = TableProducer.compile(table, connection, pools, now);
+		long rows = rowCount(table, producer);
+
+		try (Statement stmt = connection.createStatement())
+		{
+			stmt.execute(DISABLE_FK_CHECKS);
+			stmt.execute("TRUNCATE TABLE " + producer.getQuotedTableName());
+			stmt.execute(ENABLE_FK_CHECKS);
+		}
+
+		long inserted;
+		long rejected;
+		try (
+			FaultIsolatingBatchInserter<Object[]> inserter = new FaultIsolatingBatchInserter<>(connection,
+					producer.getInsertSql(), batchSize, producer::bind, producer::toRejectLine,
+					rejectDir.resolve(producer.getTableName() + REJECT_FILE_SUFFIX), null);
+		)
+		{
+			for (long cnt = 0; cnt < rows; cnt++)
+			{
+				inserter.add(producer.nextRow(random));
+			}
+			inserter.flush();
+			inserted = inserter.getInsertedCount();
+			rejected = inserter.getRejectedCount();
+		}
+		if (PhysicianIdGenerator.PHYSICIAN_TABLE.equalsIgnoreCase(producer.getTableName()))
+		{
+			PhysicianIdGenerator.advance(connection);
+		}
+
+		long elapsedTime = Math.max(1, Duration.between(startTime, Instant.now()).toMillis());
+		logger.info(String.format("| %-20s | %-12d | %-10d | %-12d | %-12d |", producer.getTableName(), inserted,
+				rejected, elapsedTime, inserted * 1000 / elapsedTime));
+	}
+
+	/**
+	 * Works out how many rows to load into a table.
+	 *
+	 * @param table The table spec
+	 * @param producer The compiled table
+	 * @return the number of rows to generate, never more than the generators can produce.
+	 * @throws IllegalArgumentException if the spec asks for "*" rows but no generator is bounded
+	 */
+	protected long rowCount(SeedSpec.TableSpec table, TableProducer producer)
+	{
+		long requested = table.rows() == null ? defaultRows : table.rows();
+		if (requested == SeedSpec.UNBOUNDED_ROWS)
+		{
+			if (producer.getRowLimit() == Long.MAX_VALUE)
+			{
+				throw new IllegalArgumentException("table " + table.name() + " asks for all rows but no generator is bounded");
+			}
+			return producer.getRowLimit();
+		}
+		if (requested > producer.getRowLimit())
+		{
+			logger.warn("table {} asks for {} rows but its generators only allow {}", table.name(), requested, producer.getRowLimit());
+			return producer.getRowLimit();
+		}
+		return requested;
+	}
+}
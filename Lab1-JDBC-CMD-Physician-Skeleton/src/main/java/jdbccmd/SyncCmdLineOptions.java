@@ -0,0 +1,55 @@
+/*********************************************************************************************************
+ * File:  SyncCmdLineOptions.java Course Materials CST8277
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 2024-09-14
+ *
+ * @description This class defines the command-line options of the sync subcommand, which brings the
+ *              physician table in line with a snapshot file. The connection, batch size and reject
+ *              file options are those of the main command and come before the subcommand name, e.g.
+ *              {@code -url=... -b=1000 sync --snapshot=nightly.bin}.
+ *
+ * @see picocli.CommandLine.Command
+ * @see picocli.CommandLine.Option
+ * @see jdbccmd.PhysicianSync
+ */
+package jdbccmd;
+
+import java.nio.file.Path;
+
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/**
+ * A class that holds annotated member fields representing the sync subcommand's arguments.
+ */
+@Command(name = SyncCmdLineOptions.NAME, description = "Insert, update and delete physicians until the table matches a snapshot")
+public class SyncCmdLineOptions {
+
+    /** Name of the subcommand */
+    public static final String NAME = "sync";
+
+    /** Option flag for the snapshot */
+    protected static final String SNAPSHOT_LONGOPT = CmdLineOptions.DASHDASH + "snapshot";
+    /** Snapshot option description */
+    protected static final String SNAPSHOT_USAGE = "CSV or binary (" + PhysicianSnapshot.BINARY_EXTENSION + ") snapshot to sync the table with, sorted by id";
+
+    /** Option flag for dry run */
+    protected static final String DRYRUN_LONGOPT = CmdLineOptions.DASHDASH + "dry-run";
+    /** Dry run option description */
+    protected static final String DRYRUN_USAGE = "only count the changes, do not make them";
+
+    /** Flag indicating whether help was requested */
+    @Option(names = {CmdLineOptions.HELP_SHORTOPT, CmdLineOptions.HELP_LONGOPT}, usageHelp = true, description = CmdLineOptions.HELP_USAGE)
+    public boolean helpRequested = false;
+
+    /** The snapshot to sync the table with */
+    @Option(names = {SNAPSHOT_LONGOPT}, required = true, description = SNAPSHOT_USAGE)
+    public Path snapshot;
+
+    /** Whether to only count the changes */
+    @Option(names = {DRYRUN_LONGOPT}, description = DRYRUN_USAGE)
+    public boolean dryRun = false;
+
+}
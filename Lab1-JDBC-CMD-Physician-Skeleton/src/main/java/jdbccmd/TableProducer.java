@@ -0,0 +1,325 @@
+/*********************************************************************************************************
+ * File:  TableProducer.java Course Materials CST8277
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 2024-09-14
+ *
+ * @description This class is a seed spec table compiled against the live schema. Compiling resolves
+ *              the table and its columns through {@code DatabaseMetaData}, builds the INSERT
+ *              statement, checks every mandatory column has a generator and picks a typed parameter
+ *              setter per column. Producing and binding a row afterwards is a loop over arrays with
+ *              no name lookups, which keeps spec-driven loads as fast as the hand-written physician
+ *              path.
+ *
+ * @see jdbccmd.SeedSpec
+ * @see jdbccmd.ColumnGenerator
+ * @see java.sql.DatabaseMetaData#getColumns
+ */
+package jdbccmd;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Produces and binds the rows of one table.
+ * <p>
+ * Columns without a generator are left out of the INSERT when they are auto-increment, generated,
+ * nullable or have a default; any other column without a generator is a spec error.
+ * </p>
+ */
+public class TableProducer {
+
+	/**
+	 * Sets one parameter of the insert statement, chosen once per column from its JDBC type.
+	 */
+	@FunctionalInterface
+	protected interface ParameterSetter {
+		void set(PreparedStatement pstmt, int index, Object value) throws SQLException;
+	}
+
+	/** The table name as resolved in the database */
+	protected final String tableName;
+	/** The table name quoted for use in SQL */
+	protected final String quotedTableName;
+	/** The parameterized INSERT statement */
+	protected final String insertSql;
+	/** The inserted columns, in table order */
+	protected final String[] columnNames;
+	/** The generator of each inserted column */
+	protected final ColumnGenerator[] generators;
+	/** The JDBC type of each inserted column */
+	protected final int[] sqlTypes;
+	/** The typed parameter setter of each inserted column */
+	protected final ParameterSetter[] setters;
+	/** The most rows the generators can produce */
+	protected final long rowLimit;
+
+	/**
+	 * Creates a compiled table, see {@link #compile}.
+	 */
+	protected TableProducer(String tableName, String quotedTableName, String[] columnNames, ColumnGenerator[] generators,
+			int[] sqlTypes, String quote)
+	{
+		this.tableName = tableName;
+		this.quotedTableName = quotedTableName;
+		this.columnNames = columnNames;
+		this.generators = generators;
+		this.sqlTypes = sqlTypes;
+
+		StringBuilder columns = new StringBuilder();
+		StringBuilder params = new StringBuilder();
+		this.setters = new ParameterSetter[columnNames.length];
+		long limit = Long.MAX_VALUE;
+		for (int i = 0; i < columnNames.length; i++)
+		{
+			if (i > 0)
+			{
+				columns.append(", ");
+				params.append(", ");
+			}
+			columns.append(quote).append(columnNames[i]).append(quote);
+			params.append('?');
+			setters[i] = setterFor(sqlTypes[i]);
+			limit = Math.min(limit, generators[i].limit());
+		}
+		this.rowLimit = limit;
+		this.insertSql = "INSERT INTO " + quotedTableName + "(" + columns + ") VALUES (" + params + ")";
+	}
+
+	/**
+	 * Compiles a table spec against the live schema.
+	 *
+	 * @param spec The table spec
+	 * @param connection The connection to read the metadata with
+	 * @param pools Cache of pools shared by every table of the spec
+	 * @param now The value of the {@code now} generator
+	 * @return the compiled table
+	 * @throws SQLException if the metadata or a foreign-key parent cannot be read
+	 * @throws IllegalArgumentException if the spec does not match the table
+	 */
+	public static TableProducer compile(SeedSpec.TableSpec spec, Connection connection, Map<String, List<String>> pools,
+			LocalDateTime now) throws SQLException
+	{
+		DatabaseMetaData metaData = connection.getMetaData();
+		String quote = metaData.getIdentifierQuoteString().trim();
+		String tableName = resolveTableName(metaData, connection.getCatalog(), spec.name());
+
+		List<String> columnNames = new ArrayList<>();
+		List<ColumnGenerator> generators = new ArrayList<>();
+		List<Integer> sqlTypes = new ArrayList<>();
+		Set<String> matched = new HashSet<>();
+
+		try (ResultSet columns = metaData.getColumns(connection.getCatalog(), null, tableName, null))
+		{
+			while (columns.next())
+			{
+				String column = columns.getString("COLUMN_NAME");
+				String definition = spec.columns().get(column.toLowerCase(Locale.ROOT));
+				if (definition == null)
+				{
+					boolean optional = "YES".equals(columns.getString("IS_AUTOINCREMENT"))
+							|| "YES".equals(columns.getString("IS_GENERATEDCOLUMN"))
+							|| columns.getInt("NULLABLE") == DatabaseMetaData.columnNullable
+							|| columns.getString("COLUMN_DEF") != null;
+					if (!optional)
+					{
+						throw new IllegalArgumentException("column " + tableName + "." + column + " is mandatory but has no generator");
+					}
+					continue;
+				}
+				matched.add(column.toLowerCase(Locale.ROOT));
+				columnNames.add(column);
+				sqlTypes.add(columns.getInt("DATA_TYPE"));
+				generators.add(ColumnGenerator.parse(definition, connection, pools, now));
+			}
+		}
+
+		for (String column : spec.columns().keySet())
+		{
+			if (!matched.contains(column))
+			{
+				throw new IllegalArgumentException("table " + tableName + " has no column " + column);
+			}
+		}
+
+		return new TableProducer(tableName, quote + tableName + quote, columnNames.toArray(new String[0]),
+				generators.toArray(new ColumnGenerator[0]), sqlTypes.stream().mapToInt(Integer::intValue).toArray(), quote);
+	}
+
+	/**
+	 * Finds the table as the database spells it, since MySQL table names are case-sensitive on some
+	 * platforms.
+	 *
+	 * @param metaData The database metadata
+	 * @param catalog The current catalog
+	 * @param name The table name from the spec
+	 * @return the table name as stored in the database
+	 * @throws SQLException if the metadata cannot be read
+	 * @throws IllegalArgumentException if the table does not exist
+	 */
+	protected static String resolveTableName(DatabaseMetaData metaData, String catalog, String name) throws SQLException
+	{
+		try (ResultSet tables = metaData.getTables(catalog, null, null, new String[] { "TABLE" }))
+		{
+			while (tables.next())
+			{
+				String table = tables.getString("TABLE_NAME");
+				if (table.equalsIgnoreCase(name))
+				{
+					return table;
+				}
+			}
+		}
+		throw new IllegalArgumentException("table not found: " + name);
+	}
+
+	/**
+	 * Picks the parameter setter for a JDBC type.
+	 *
+	 * @param sqlType The JDBC type of the column
+	 * @return the setter
+	 */
+	protected static ParameterSetter setterFor(int sqlType)
+	{
+		switch (sqlType)
+		{
+			case Types.CHAR:
+			case Types.VARCHAR:
+			case Types.LONGVARCHAR:
+			case Types.NCHAR:
+			case Types.NVARCHAR:
+			case Types.LONGNVARCHAR:
+			case Types.CLOB:
+				return (pstmt, index, value) -> pstmt.setString(index, value.toString());
+			case Types.TINYINT:
+			case Types.SMALLINT:
+			case Types.INTEGER:
+			case Types.BIGINT:
+				return (pstmt, index, value) -> pstmt.setLong(index,
+						value instanceof Number ? ((Number) value).longValue() : Long.parseLong(value.toString()));
+			default:
+				return (pstmt, index, value) -> pstmt.setObject(index, value);
+		}
+	}
+
+	/**
+	 * Produces the values of the next row.
+	 *
+	 * @param random The random number generator of this table
+	 * @return the row values, in {@link #getColumnNames()} order
+	 */
+	public Object[] nextRow(Random random)
+	{
+		Object[] row = new Object[generators.length];
+		for (int i = 0; i < generators.length; i++)
+		{
+			row[i] = generators[i].next(random);
+		}
+		return row;
+	}
+
+	/**
+	 * Binds a row to the parameters of {@link #getInsertSql()}.
+	 *
+	 * @param pstmt The insert statement
+	 * @param row The row values
+	 * @throws SQLException if a parameter cannot be set
+	 */
+	public void bind(PreparedStatement pstmt, Object[] row) throws SQLException
+	{
+		for (int i = 0; i < row.length; i++)
+		{
+			if (row[i] == null)
+			{
+				pstmt.setNull(i + 1, sqlTypes[i]);
+			}
+			else
+			{
+				setters[i].set(pstmt, i + 1, row[i]);
+			}
+		}
+	}
+
+	/**
+	 * Formats a row as a CSV line for the reject file.
+	 *
+	 * @param row The row values
+	 * @return the quoted values.
+	 */
+	public String toRejectLine(Object[] row)
+	{
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < row.length; i++)
+		{
+			if (i > 0)
+			{
+				sb.append(',');
+			}
+			sb.append(FaultIsolatingBatchInserter.csvField(row[i] == null ? null : row[i].toString()));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Gets the table name as stored in the database.
+	 *
+	 * @return the table name.
+	 */
+	public String getTableName()
+	{
+		return tableName;
+	}
+
+	/**
+	 * Gets the table name quoted for SQL.
+	 *
+	 * @return the quoted table name.
+	 */
+	public String getQuotedTableName()
+	{
+		return quotedTableName;
+	}
+
+	/**
+	 * Gets the INSERT statement.
+	 *
+	 * @return the parameterized INSERT statement.
+	 */
+	public String getInsertSql()
+	{
+		return insertSql;
+	}
+
+	/**
+	 * Gets the inserted columns.
+	 *
+	 * @return the inserted column names, in table order.
+	 */
+	public String[] getColumnNames()
+	{
+		return columnNames.clone();
+	}
+
+	/**
+	 * Gets the most rows the generators can produce, e.g. the size of a sequential pool.
+	 *
+	 * @return the row limit, {@link Long#MAX_VALUE} if unbounded.
+	 */
+	public long getRowLimit()
+	{
+		return rowLimit;
+	}
+}
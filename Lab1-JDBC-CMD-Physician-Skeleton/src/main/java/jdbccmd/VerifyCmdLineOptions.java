@@ -0,0 +1,81 @@
+/*********************************************************************************************************
+ * File:  VerifyCmdLineOptions.java Course Materials CST8277
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 2024-09-14
+ *
+ * @description This class defines the command-line options of the verify subcommand, which checks
+ *              the physician table against the rows a seeded run generated or against a snapshot
+ *              file. The connection options are those of the main command and come before the
+ *              subcommand name, e.g. {@code -url=... verify --seed=42 -g=1000000}.
+ *
+ * @see picocli.CommandLine.Command
+ * @see picocli.CommandLine.Option
+ * @see jdbccmd.PhysicianVerifier
+ */
+package jdbccmd;
+
+import java.nio.file.Path;
+
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/**
+ * A class that holds annotated member fields representing the verify subcommand's arguments.
+ */
+@Command(name = VerifyCmdLineOptions.NAME, description = "Verify the physician table against a seeded run or a snapshot")
+public class VerifyCmdLineOptions {
+
+    /** Name of the subcommand */
+    public static final String NAME = "verify";
+
+    /** Option flag for the seed */
+    protected static final String SEED_LONGOPT = CmdLineOptions.DASHDASH + "seed";
+    /** Seed option description */
+    protected static final String SEED_USAGE = "seed the rows were generated with (see the --seed option of the main command)";
+
+    /** Option flag for the snapshot */
+    protected static final String SNAPSHOT_LONGOPT = CmdLineOptions.DASHDASH + "snapshot";
+    /** Snapshot option description */
+    protected static final String SNAPSHOT_USAGE = "snapshot file the rows were recorded to (see the --snapshot option of the main command)";
+
+    /** Short option flag for range size */
+    protected static final String RANGE_SIZE_SHORTOPT = CmdLineOptions.DASH + "r";
+    /** Long option flag for range size */
+    protected static final String RANGE_SIZE_LONGOPT = CmdLineOptions.DASHDASH + "range-size";
+    /** Range size option description */
+    protected static final String RANGE_SIZE_USAGE = "number of ids checksummed per range (default: ${DEFAULT-VALUE})";
+
+    /** Short option flag for threads */
+    protected static final String THREADS_SHORTOPT = CmdLineOptions.DASH + "t";
+    /** Long option flag for threads */
+    protected static final String THREADS_LONGOPT = CmdLineOptions.DASHDASH + "threads";
+    /** Threads option description */
+    protected static final String THREADS_USAGE = "number of ranges checked at the same time, each on its own connection (default: ${DEFAULT-VALUE})";
+
+    /** Flag indicating whether help was requested */
+    @Option(names = {CmdLineOptions.HELP_SHORTOPT, CmdLineOptions.HELP_LONGOPT}, usageHelp = true, description = CmdLineOptions.HELP_USAGE)
+    public boolean helpRequested = false;
+
+    /** The number of physicians the seeded run generated */
+    @Option(names = {CmdLineOptions.GENCOUNT_SHORTOPT, CmdLineOptions.GENCOUNT_LONGOPT}, description = CmdLineOptions.GENCOUNT_USAGE)
+    public int count = 10;
+
+    /** The seed of the run to verify against, null when verifying against a snapshot */
+    @Option(names = {SEED_LONGOPT}, description = SEED_USAGE)
+    public Long seed;
+
+    /** The snapshot to verify against, null when verifying against a seed */
+    @Option(names = {SNAPSHOT_LONGOPT}, description = SNAPSHOT_USAGE)
+    public Path snapshot;
+
+    /** The number of ids per range */
+    @Option(names = {RANGE_SIZE_SHORTOPT, RANGE_SIZE_LONGOPT}, description = RANGE_SIZE_USAGE)
+    public int rangeSize = 1_000_000;
+
+    /** The number of verification threads (and connections) */
+    @Option(names = {THREADS_SHORTOPT, THREADS_LONGOPT}, description = THREADS_USAGE)
+    public int threads = 4;
+
+}
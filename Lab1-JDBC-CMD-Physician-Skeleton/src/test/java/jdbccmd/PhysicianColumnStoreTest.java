@@ -0,0 +1,97 @@
+/*********************************************************************************************************
+ * File:  PhysicianColumnStoreTest.java Course Materials CST8277
+ *
+ * @author Robin Phillis
+ * @version 1.0
+ * @since 2024-09-14
+ *
+ * @description Round-trips the values the generator actually produces through the column store and
+ *              checks they are packed rather than kept in the on-heap overflow dictionary.
+ */
+package jdbccmd;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class PhysicianColumnStoreTest {
+
+	/** Number of generated values round-tripped per test */
+	private static final int ROWS = 10_000;
+
+	@Test
+	void generatedPhoneNumbersArePacked()
+	{
+		PhysicianColumnStore store = new PhysicianColumnStore();
+		Random random = new Random(8277);
+		String[] phoneNumbers = new String[ROWS];
+		for (int i = 0; i < ROWS; i++)
+		{
+			phoneNumbers[i] = PhysicianManufacturer.randomPhoneNumber(random);
+			store.append(0, "Doe", "Jane", null, phoneNumbers[i], null);
+		}
+		for (int i = 0; i < ROWS; i++)
+		{
+			assertEquals(phoneNumbers[i], store.getPhoneNumber(i));
+		}
+		assertEquals(0, store.overflow.size());
+	}
+
+	@Test
+	void formattedPhoneNumbersArePacked()
+	{
+		PhysicianColumnStore store = new PhysicianColumnStore();
+		Random random = new Random(8277);
+		String[] phoneNumbers = new String[ROWS];
+		for (int i = 0; i < ROWS; i++)
+		{
+			phoneNumbers[i] = GenerateRandomPhysicianRecords.formatPhoneNumber(PhysicianManufacturer.randomPhoneNumber(random));
+			store.append(0, "Doe", "Jane", null, phoneNumbers[i], null);
+		}
+		for (int i = 0; i < ROWS; i++)
+		{
+			assertEquals(phoneNumbers[i], store.getPhoneNumber(i));
+		}
+		assertEquals(0, store.overflow.size());
+	}
+
+	@Test
+	void generatedEmailsArePacked()
+	{
+		PhysicianColumnStore store = new PhysicianColumnStore();
+		Random random = new Random(8277);
+		String[] emails = new String[ROWS];
+		for (int i = 0; i < ROWS; i++)
+		{
+			emails[i] = PhysicianManufacturer.randomEmail(random);
+			store.append(0, "Doe", "Jane", emails[i], null, null);
+		}
+		for (int i = 0; i < ROWS; i++)
+		{
+			assertEquals(emails[i], store.getEmail(i));
+		}
+		assertEquals(0, store.overflow.size());
+	}
+
+	@Test
+	void otherValuesRoundTripThroughOverflow()
+	{
+		PhysicianColumnStore store = new PhysicianColumnStore();
+		String[] phoneNumbers = { "0001112222", "000-111-2222", "+1 613 555 1234", "613-5551234", "61355512345", "", null };
+		for (String phoneNumber : phoneNumbers)
+		{
+			store.append(0, "Doe", "Jane", "jane.doe@example.com", phoneNumber, null);
+		}
+		for (int i = 0; i < phoneNumbers.length; i++)
+		{
+			assertEquals(phoneNumbers[i], store.getPhoneNumber(i));
+			assertEquals("jane.doe@example.com", store.getEmail(i));
+		}
+		assertNull(store.getSpecialty(0));
+		// the email, once, and the four phone numbers that are neither ten digits nor dashed
+		assertEquals(5, store.overflow.size());
+	}
+}